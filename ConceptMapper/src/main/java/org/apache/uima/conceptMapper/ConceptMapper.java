@@ -19,22 +19,25 @@
 
 package org.apache.uima.conceptMapper;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.analysis_engine.ResultSpecification;
 import org.apache.uima.analysis_engine.annotator.AnnotatorConfigurationException;
 import org.apache.uima.analysis_engine.annotator.AnnotatorInitializationException;
 import org.apache.uima.cas.CAS;
-import org.apache.uima.cas.FSIndex;
 import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.FeatureStructure;
@@ -42,11 +45,32 @@ import org.apache.uima.cas.Type;
 import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.cas.text.AnnotationIndex;
+import org.apache.uima.conceptMapper.support.dictionaryResource.CompiledDictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryLoadListener;
 import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource;
 import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource_impl;
 import org.apache.uima.conceptMapper.support.dictionaryResource.EntryProperties;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryPropertiesRoot;
+import org.apache.uima.conceptMapper.support.dictionaryResource.FuzzyVocabulary;
+import org.apache.uima.conceptMapper.support.dictionaryResource.KeyFilter;
+import org.apache.uima.conceptMapper.support.dictionaryResource.MultisetIndex;
+import org.apache.uima.conceptMapper.support.dictionaryResource.WindowMatchCache;
+import org.apache.uima.conceptMapper.support.dictionaryResource.annotatorAdaptor.AnnotatorAdaptor;
 //import org.apache.uima.conceptMapper.support.tokens.TokenFilter;
+import org.apache.uima.conceptMapper.support.metrics.AnnotationEvent;
+import org.apache.uima.conceptMapper.support.metrics.ConceptMapperMetrics;
+import org.apache.uima.conceptMapper.support.metrics.DocumentEvent;
+import org.apache.uima.conceptMapper.support.metrics.MetricsRegistry;
+import org.apache.uima.conceptMapper.support.metrics.NoOpMetricsRegistry;
+import org.apache.uima.conceptMapper.support.metrics.SpanEvent;
+import org.apache.uima.conceptMapper.support.stemmer.Stemmer;
+import org.apache.uima.conceptMapper.support.tokenizer.OffsetTokenizer;
+import org.apache.uima.conceptMapper.support.tokens.NormalizationChain;
+import org.apache.uima.conceptMapper.support.tokens.TokenCountWindow;
 import org.apache.uima.conceptMapper.support.tokens.TokenNormalizer;
+import org.apache.uima.conceptMapper.support.tokens.TokenRange;
+import org.apache.uima.conceptMapper.support.tokens.TokenWindow;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.descriptor.ExternalResource;
@@ -54,6 +78,7 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,6 +92,52 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
     @ExternalResource(key = DICT_KEY)
     private DictionaryResource dict;
 
+    /**
+     * Configuration parameter key/label for the resource keys of additional
+     * dictionaries, matched in the same pass over the tokens as the dictionary
+     * bound to {@link #DICT_KEY}. A dictionary resource must be bound to each
+     * key.
+     */
+    public static final String PARAM_ADDITIONAL_DICTIONARY_KEYS = "additionalDictionaryKeys";
+    @ConfigurationParameter(name = PARAM_ADDITIONAL_DICTIONARY_KEYS, mandatory = false)
+    private String[] additionalDictionaryKeys;
+
+    /**
+     * Configuration parameter key/label for the names of the annotation types
+     * created for matches of the additional dictionaries, one for each of
+     * {@link #PARAM_ADDITIONAL_DICTIONARY_KEYS}
+     */
+    public static final String PARAM_ADDITIONAL_ANNOTATION_NAMES = "additionalResultingAnnotationNames";
+    @ConfigurationParameter(name = PARAM_ADDITIONAL_ANNOTATION_NAMES, mandatory = false)
+    private String[] additionalResultingAnnotationNames;
+
+    /**
+     * the dictionary looked up while matching: {@link #dict}, or all
+     * dictionaries merged if there are additional dictionaries
+     */
+    private DictionaryResource lookupDictionary;
+
+    /**
+     * index of the dictionary (0 for {@link #dict}) of the entries with each
+     * properties root, null if there is a single dictionary
+     */
+    private IdentityHashMap<EntryPropertiesRoot, Integer> dictionaryTags;
+
+    /** result annotation type and features for the matches of each dictionary */
+    private ResultType[] resultTypes;
+
+    /**
+     * token at which each dictionary continues matching within the current
+     * span, as dictionaries advance past their own matches
+     */
+    private int[] dictionaryNextStart;
+
+    /**
+     * dictionaries which have found a match at the current token, or which
+     * skip it
+     */
+    private boolean[] dictionaryDone;
+
     public static final String PARAM_DICT_LANGUAGE = "dictLanguage";
     @ConfigurationParameter(name = PARAM_DICT_LANGUAGE, mandatory = false, defaultValue = "en")
     private String dictLanguage;
@@ -105,6 +176,26 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
     private String resultMatchedTextFeatureName;
     private Feature resultMatchedTextFeature;
 
+    /**
+     * Configuration parameter for name of integer feature in result
+     * annotations to contain the ID of the matched dictionary entry
+     */
+    public static final String PARAM_ENTRYIDFEATURENAME = "resultEntryIdFeatureName";
+    @ConfigurationParameter(name = PARAM_ENTRYIDFEATURENAME, mandatory = false)
+    private String resultEntryIdFeatureName;
+    private Feature resultEntryIdFeature;
+
+    /**
+     * Configuration parameter key/label to indicate that only the entry ID
+     * (see {@link #PARAM_ENTRYIDFEATURENAME}) should be written to result
+     * annotations, instead of one string feature per attribute. The entry
+     * properties can then be resolved from the side table written by the
+     * dictionary compiler.
+     */
+    public static final String PARAM_ENTRYIDONLY = "entryIdOnly";
+    @ConfigurationParameter(name = PARAM_ENTRYIDONLY, mandatory = false, defaultValue = "false")
+    private boolean entryIdOnly;
+
     /** Configuration parameter key/label for the attribute list */
     public static final String PARAM_ATTRIBUTE_LIST = "attributeNames";
     @ConfigurationParameter(name = PARAM_ATTRIBUTE_LIST, mandatory = true)
@@ -167,6 +258,24 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
     @ConfigurationParameter(name = PARAM_ORDERINDEPENDENTLOOKUP, mandatory = false, defaultValue = "false")
     private boolean orderIndependentLookup;
 
+    /**
+     * Configuration parameter key/label to match order independent entries
+     * with the contiguous match strategy through an index on the multiset of
+     * their tokens, which finds the entries matching a window of tokens by
+     * its hash instead of looking up and sorting each window. Only used with
+     * {@link #PARAM_ORDERINDEPENDENTLOOKUP}; replaces the window lookup
+     * cache.
+     */
+    public static final String PARAM_ORDER_INDEPENDENT_INDEX = "orderIndependentIndex";
+    @ConfigurationParameter(name = PARAM_ORDER_INDEPENDENT_INDEX, mandatory = false, defaultValue = "false")
+    private boolean orderIndependentIndex;
+
+    /** entries by the multiset of their tokens, if enabled */
+    private MultisetIndex multisetIndex;
+
+    /** window hashes of the tokens being matched against the multiset index */
+    private MultisetIndex.Matcher multisetMatcher;
+
     // private boolean sortElements;
 
     public final static int PARAMVALUE_CONTIGUOUSMATCH = 1;
@@ -191,11 +300,138 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
     @ConfigurationParameter(name = PARAM_FINDALLMATCHES, mandatory = false, defaultValue = "false")
     private boolean findAllMatches;
 
+    /**
+     * Configuration parameter key/label for the maximum number of consecutive
+     * tokens, starting with the first matched token, over which the tokens of
+     * an entry may be spread with the SkipAnyMatch search strategies. 0 (the
+     * default) allows them anywhere in the rest of the span.
+     */
+    public static final String PARAM_SKIP_ANY_MAX_WINDOW = "skipAnyMaxWindow";
+    @ConfigurationParameter(name = PARAM_SKIP_ANY_MAX_WINDOW, mandatory = false, defaultValue = "0")
+    private int skipAnyMaxWindow;
+
     /** Configuration parameter key/label for the case matching string */
     public static final String PARAM_CASE_MATCH = "caseMatch";
     @ConfigurationParameter(name = PARAM_CASE_MATCH, mandatory = false)
     private String caseMatch;
 
+    /**
+     * Configuration parameter key/label for the class of the stemmer applied
+     * to tokens after case folding, both for dictionary entries and documents
+     */
+    public static final String PARAM_STEMMER_CLASS = "Stemmer";
+    @ConfigurationParameter(name = PARAM_STEMMER_CLASS, mandatory = false)
+    private String stemmerClassName;
+
+    /**
+     * Configuration parameter key/label for the maximum number of normalized
+     * token forms cached per document, 0 (the default) to disable caching
+     */
+    public static final String PARAM_NORMALIZATION_CACHE_SIZE = "normalizationCacheSize";
+    @ConfigurationParameter(name = PARAM_NORMALIZATION_CACHE_SIZE, mandatory = false, defaultValue = "0")
+    private int normalizationCacheSize;
+
+    /**
+     * Configuration parameter key/label for the maximum number of edits
+     * (insertions, deletions, substitutions and transpositions of adjacent
+     * characters) by which a normalized token not occurring in any dictionary
+     * entry may differ from a dictionary token it is matched as. 0 (the
+     * default) disables fuzzy matching.
+     */
+    public static final String PARAM_FUZZY_MAX_EDITS = "fuzzyMaxEdits";
+    @ConfigurationParameter(name = PARAM_FUZZY_MAX_EDITS, mandatory = false, defaultValue = "0")
+    private int fuzzyMaxEdits;
+
+    /**
+     * Configuration parameter key/label for the length of the shortest
+     * normalized token matched fuzzily, as short tokens are close to too many
+     * others
+     */
+    public static final String PARAM_FUZZY_MIN_TOKEN_LENGTH = "fuzzyMinTokenLength";
+    @ConfigurationParameter(name = PARAM_FUZZY_MIN_TOKEN_LENGTH, mandatory = false, defaultValue = "4")
+    private int fuzzyMinTokenLength;
+
+    /** tokens of the dictionary entries, if fuzzy matching is enabled */
+    private FuzzyVocabulary fuzzyVocabulary;
+
+    /**
+     * Configuration parameter key/label for the maximum number of token
+     * windows whose matching dictionary entries are cached across documents,
+     * for the contiguous match strategy. 0 (the default) disables the cache
+     * unless {@link #PARAM_LOOKUP_CACHE_MAX_BYTES} is set.
+     */
+    public static final String PARAM_LOOKUP_CACHE_SIZE = "lookupCacheSize";
+    @ConfigurationParameter(name = PARAM_LOOKUP_CACHE_SIZE, mandatory = false, defaultValue = "0")
+    private int lookupCacheSize;
+
+    /**
+     * Configuration parameter key/label for the maximum estimated size in
+     * bytes of the window lookup cache; overrides
+     * {@link #PARAM_LOOKUP_CACHE_SIZE}
+     */
+    public static final String PARAM_LOOKUP_CACHE_MAX_BYTES = "lookupCacheMaxBytes";
+    @ConfigurationParameter(name = PARAM_LOOKUP_CACHE_MAX_BYTES, mandatory = false, defaultValue = "0")
+    private int lookupCacheMaxBytes;
+
+    /**
+     * filters rejecting tokens which are no key of the compiled dictionaries
+     * looked up, one per dictionary; null unless all dictionaries have one
+     */
+    private KeyFilter[] keyFilters;
+
+    /** matches of recently looked up token windows, if enabled */
+    private WindowMatchCache windowMatchCache;
+
+    /**
+     * Configuration parameter key/label for the normalization steps applied to
+     * tokens, e.g. {"accentfold", "stem", "digitmask"}. If not given, the steps
+     * follow from caseMatch and Stemmer.
+     */
+    public static final String PARAM_NORMALIZATION_STEPS = "normalizationSteps";
+    @ConfigurationParameter(name = PARAM_NORMALIZATION_STEPS, mandatory = false)
+    private String[] normalizationSteps;
+
+    /**
+     * Configuration parameter key/label for the name under which runtime
+     * metrics are collected and published as a JMX MBean. Instances using the
+     * same name share the metrics.
+     */
+    public static final String PARAM_METRICS_NAME = "metricsName";
+    @ConfigurationParameter(name = PARAM_METRICS_NAME, mandatory = false)
+    private String metricsName;
+
+    /**
+     * Configuration parameter key/label for the class of a custom
+     * {@link MetricsRegistry} to report runtime metrics to, instead of the JMX
+     * registry given by {@link #PARAM_METRICS_NAME}
+     */
+    public static final String PARAM_METRICS_REGISTRY_CLASS = "metricsRegistryClass";
+    @ConfigurationParameter(name = PARAM_METRICS_REGISTRY_CLASS, mandatory = false)
+    private String metricsRegistryClassName;
+
+    /**
+     * Configuration parameter key/label for the class of a
+     * {@link DictionaryLoadListener} notified of the progress and stage
+     * timings of dictionary loading, in addition to the log
+     */
+    public static final String PARAM_DICTIONARY_LOAD_LISTENER_CLASS = "dictionaryLoadListenerClass";
+    @ConfigurationParameter(name = PARAM_DICTIONARY_LOAD_LISTENER_CLASS, mandatory = false)
+    private String dictionaryLoadListenerClassName;
+
+    /** receives runtime metrics, a no-op registry if metrics are disabled */
+    private MetricsRegistry metrics = NoOpMetricsRegistry.INSTANCE;
+
+    private boolean metricsEnabled;
+
+    /** dictionary entries compared against the document so far, for flight recorder events */
+    private long candidatesScanned;
+
+    /** annotations created for the document so far, for flight recorder events */
+    private int matchesFound;
+
+    /** true once a match of an entry without entry ID has been reported */
+    private boolean warnedMissingEntryID;
+
     /** object used to stem/case normalize text */
     private TokenNormalizer tokenNormalizer;
 
@@ -211,13 +447,24 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
     protected Feature features[];
 
     /**
-     * type of annotation that defines a block for processing, e.g. a sentence
+     * type of annotation that defines a block for processing, e.g. a sentence;
+     * required unless {@link #PARAM_SLIDING_WINDOW} is set
      */
     public static final String PARAM_DATA_BLOCK_FS = "spanFeatureStructureName";
-    @ConfigurationParameter(name = PARAM_DATA_BLOCK_FS, mandatory = true)
+    @ConfigurationParameter(name = PARAM_DATA_BLOCK_FS, mandatory = false)
     private String spanFeatureStructureName;
     private Type spanFeatureStructureType;
 
+    /**
+     * Configuration parameter key/label to match over the token index of the
+     * whole document instead of within spans, holding only a window of tokens
+     * as long as the longest dictionary entry starting at the current token.
+     * Only supported with {@link #PARAMVALUE_CONTIGUOUSMATCH}.
+     */
+    public static final String PARAM_SLIDING_WINDOW = "slidingWindow";
+    @ConfigurationParameter(name = PARAM_SLIDING_WINDOW, mandatory = false, defaultValue = "false")
+    private boolean slidingWindow;
+
     private JCas jcas;
 
     private TypeSystem mLastTypeSystem;
@@ -245,22 +492,206 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
                 orderIndependentLookup = true;
             }
 
+            if (skipAnyMaxWindow < 0) {
+                throw new Exception(PARAM_SKIP_ANY_MAX_WINDOW + " must not be negative");
+            }
+
             if (featureNames.length != attributeNames.length) {
                 throw new Exception("AttributeList and FeatureList are inconsistent");
             }
 
+            if (entryIdOnly && ((resultEntryIdFeatureName == null) || (resultEntryIdFeatureName.equals("")))) {
+                throw new Exception(PARAM_ENTRYIDONLY + " requires " + PARAM_ENTRYIDFEATURENAME + " to be set");
+            }
+
+            if (slidingWindow) {
+                if (searchStrategy != PARAMVALUE_CONTIGUOUSMATCH) {
+                    throw new Exception(PARAM_SLIDING_WINDOW + " requires " + PARAM_SEARCHSTRATEGY + " "
+                            + PARAMVALUE_CONTIGUOUSMATCH);
+                }
+            } else if ((spanFeatureStructureName == null) || (spanFeatureStructureName.equals(""))) {
+                throw new Exception(PARAM_DATA_BLOCK_FS + " must be set unless " + PARAM_SLIDING_WINDOW + " is set");
+            }
+
             tokenNormalizer = new TokenNormalizer(caseMatch);
+            if ((stemmerClassName != null) && (!stemmerClassName.equals(""))) {
+                Stemmer stemmer = newInstance(stemmerClassName, Stemmer.class);
+                tokenNormalizer.setStemmer(stemmer);
+            }
+            if ((normalizationSteps != null) && (normalizationSteps.length > 0)) {
+                tokenNormalizer.setNormalizationSteps(normalizationSteps);
+            }
+            tokenNormalizer.setCacheSize(normalizationCacheSize);
+            if (Arrays.asList(tokenNormalizer.getChain().getStepNames()).contains(NormalizationChain.STEP_STEM)
+                    && tokenizerStems(tokenizerDescriptorPath)) {
+                throw new Exception("tokens would be stemmed twice: both the tokenizer '" + tokenizerDescriptorPath
+                        + "' and this annotator are configured with a " + PARAM_STEMMER_CLASS);
+            }
+
+            if ((metricsRegistryClassName != null) && (!metricsRegistryClassName.equals(""))) {
+                metrics = newInstance(metricsRegistryClassName, MetricsRegistry.class);
+            } else if ((metricsName != null) && (!metricsName.equals(""))) {
+                metrics = ConceptMapperMetrics.getShared(metricsName);
+            }
+            metricsEnabled = (metrics != NoOpMetricsRegistry.INSTANCE);
 
             // we load the reasource here...
-            dict.loadDictionaryContents(tokenNormalizer, tokenAnnotationName, tokenTextFeatureName,
-                    tokenizerDescriptorPath, attributeNames, orderIndependentLookup, dictLanguage, dumpDictionary);
+            loadDictionary(dict);
             LOG.info("dictionary successfully loaded: " + dict.isLoaded());
 
+            int numAdditional = (additionalDictionaryKeys == null) ? 0 : additionalDictionaryKeys.length;
+            if (numAdditional != ((additionalResultingAnnotationNames == null) ? 0
+                    : additionalResultingAnnotationNames.length)) {
+                throw new Exception(PARAM_ADDITIONAL_DICTIONARY_KEYS + " and " + PARAM_ADDITIONAL_ANNOTATION_NAMES
+                        + " are inconsistent");
+            }
+            lookupDictionary = dict;
+            dictionaryTags = null;
+            if (numAdditional > 0) {
+                DictionaryResource[] dictionaries = new DictionaryResource[numAdditional + 1];
+                dictionaries[0] = dict;
+                for (int i = 0; i < numAdditional; i++) {
+                    Object resource = uimaContext.getResourceObject(additionalDictionaryKeys[i]);
+                    if (!(resource instanceof DictionaryResource)) {
+                        throw new Exception("no dictionary resource bound to " + PARAM_ADDITIONAL_DICTIONARY_KEYS
+                                + "[" + i + "] '" + additionalDictionaryKeys[i] + "'");
+                    }
+                    dictionaries[i + 1] = (DictionaryResource) resource;
+                    loadDictionary(dictionaries[i + 1]);
+                    LOG.info("dictionary '" + additionalDictionaryKeys[i] + "' successfully loaded: "
+                            + dictionaries[i + 1].isLoaded());
+                }
+                dictionaryTags = new IdentityHashMap<EntryPropertiesRoot, Integer>();
+                lookupDictionary = DictionaryResource_impl.getSharedMerge(dictionaries, dictionaryTags);
+                keyFilters = getKeyFilters(dictionaries);
+            } else {
+                keyFilters = getKeyFilters(new DictionaryResource[] { dict });
+            }
+            dictionaryNextStart = new int[numAdditional + 1];
+            dictionaryDone = new boolean[numAdditional + 1];
+
+            fuzzyVocabulary = (fuzzyMaxEdits > 0) ? FuzzyVocabulary.getShared(lookupDictionary) : null;
+            windowMatchCache = ((lookupCacheSize > 0) || (lookupCacheMaxBytes > 0)) ? WindowMatchCache.getShared(
+                    lookupDictionary, lookupCacheSize, lookupCacheMaxBytes) : null;
+            multisetIndex = null;
+            multisetMatcher = null;
+            if (orderIndependentIndex && orderIndependentLookup) {
+                multisetIndex = MultisetIndex.getShared(lookupDictionary);
+                multisetMatcher = multisetIndex.newMatcher();
+            }
+
         } catch (Exception e) {
             throw new ResourceInitializationException(e);
         }
     }
 
+    /**
+     * @return the key filters of compiled dictionaries, or null if some
+     *         dictionary has none
+     */
+    private static KeyFilter[] getKeyFilters(DictionaryResource[] dictionaries) {
+        KeyFilter[] filters = new KeyFilter[dictionaries.length];
+        for (int i = 0; i < dictionaries.length; i++) {
+            if (dictionaries[i] instanceof CompiledDictionaryResource_impl) {
+                filters[i] = ((CompiledDictionaryResource_impl) dictionaries[i]).getKeyFilter();
+            }
+            if (filters[i] == null) {
+                return null;
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * @return a new instance of a configured class, created with its no-arg
+     *         constructor
+     * @throws ClassCastException
+     *             if the class is not of the expected type
+     */
+    private static <T> T newInstance(String className, Class<T> type) throws Exception {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (InvocationTargetException e) {
+            // report what the constructor threw
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private void loadDictionary(DictionaryResource dictionary) throws Exception {
+        if ((dictionaryLoadListenerClassName != null) && (!dictionaryLoadListenerClassName.equals(""))
+                && (dictionary instanceof DictionaryResource_impl)) {
+            ((DictionaryResource_impl) dictionary).addLoadListener(newInstance(dictionaryLoadListenerClassName,
+                    DictionaryLoadListener.class));
+        }
+        dictionary.loadDictionaryContents(tokenNormalizer, tokenAnnotationName, tokenTextFeatureName,
+                tokenizerDescriptorPath, attributeNames, orderIndependentLookup, dictLanguage, dumpDictionary);
+    }
+
+    /**
+     * Result annotation type, and its features written for each match.
+     */
+    private static class ResultType {
+        Type type;
+
+        Feature enclosingSpan;
+
+        Feature matchedText;
+
+        Feature matchedTokens;
+
+        Feature entryId;
+
+        Feature[] features;
+    }
+
+    /**
+     * The tokens of a span, all of which can be accessed.
+     */
+    private static class SpanTokens implements TokenRange {
+        private final List<AnnotationFS> tokens;
+
+        SpanTokens(List<AnnotationFS> tokens) {
+            this.tokens = tokens;
+        }
+
+        public int getStart() {
+            return 0;
+        }
+
+        public int getEnd() {
+            return tokens.size();
+        }
+
+        public AnnotationFS get(int position) {
+            return tokens.get(position);
+        }
+    }
+
+    /**
+     * @return true if a tokenizer descriptor is a primitive analysis engine
+     *         configured to stem tokens itself, e.g. an {@link OffsetTokenizer}
+     *         with a stemmer; the descriptor is found the same way as when it
+     *         is used to tokenize the dictionary
+     */
+    private boolean tokenizerStems(String tokenizerDescriptor) throws Exception {
+        if ((tokenizerDescriptor == null) || tokenizerDescriptor.equals("")) {
+            return false;
+        }
+        ResourceSpecifier specifier = AnnotatorAdaptor.parseDescriptor(tokenizerDescriptor);
+        if (specifier == null) {
+            LOG.warn("tokenizer descriptor '" + tokenizerDescriptor
+                    + "' not found, cannot check that tokens are not stemmed twice");
+            return false;
+        }
+        if (!(specifier instanceof AnalysisEngineDescription)
+                || (!((AnalysisEngineDescription) specifier).isPrimitive())) {
+            return false;
+        }
+        Object stemmer = ((AnalysisEngineDescription) specifier).getAnalysisEngineMetaData()
+                .getConfigurationParameterSettings().getParameterValue(OffsetTokenizer.PARAM_STEMMER_CLASS);
+        return (stemmer instanceof String) && (!((String) stemmer).equals(""));
+    }
+
     /**
      * Perform local type system initialization.
      * 
@@ -303,64 +734,100 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
             tokenClassWriteBackFeatures = null;
         }
 
-        spanFeatureStructureType = typeSystem.getType(spanFeatureStructureName);
-        if (spanFeatureStructureType == null) {
+        spanFeatureStructureType = slidingWindow ? null : typeSystem.getType(spanFeatureStructureName);
+        if ((spanFeatureStructureType == null) && (!slidingWindow)) {
             LOG.error(PARAM_DATA_BLOCK_FS + " '" + spanFeatureStructureName
                     + "' specified, but does not exist for type: " + tokenType.getName());
             throw new AnnotatorInitializationException();
         }
 
-        resultAnnotationType = typeSystem.getType(resultingAnnotationName);
-        if (resultAnnotationType == null) {
-            LOG.error(PARAM_ANNOTATION_NAME + " '" + resultingAnnotationName + "' specified, but does not exist");
+        int numAdditional = (additionalResultingAnnotationNames == null) ? 0
+                : additionalResultingAnnotationNames.length;
+        resultTypes = new ResultType[numAdditional + 1];
+        resultTypes[0] = initResultType(typeSystem, resultingAnnotationName);
+        for (int i = 0; i < numAdditional; i++) {
+            resultTypes[i + 1] = initResultType(typeSystem, additionalResultingAnnotationNames[i]);
+        }
+        resultAnnotationType = resultTypes[0].type;
+        resultEnclosingSpan = resultTypes[0].enclosingSpan;
+        resultMatchedTextFeature = resultTypes[0].matchedText;
+        matchedTokensFeature = resultTypes[0].matchedTokens;
+        resultEntryIdFeature = resultTypes[0].entryId;
+        features = resultTypes[0].features;
+    }
+
+    /**
+     * Look up a result annotation type and the features written for each
+     * match.
+     */
+    private ResultType initResultType(TypeSystem typeSystem, String typeName) throws AnnotatorInitializationException {
+        ResultType result = new ResultType();
+        Type type = typeSystem.getType(typeName);
+        if (type == null) {
+            LOG.error(PARAM_ANNOTATION_NAME + " '" + typeName + "' specified, but does not exist");
             throw new AnnotatorInitializationException();
         }
+        result.type = type;
 
         if ((resultEnclosingSpanName == null) || (resultEnclosingSpanName.equals(""))) {
-            resultEnclosingSpan = null;
+            result.enclosingSpan = null;
         } else {
-            resultEnclosingSpan = resultAnnotationType.getFeatureByBaseName(resultEnclosingSpanName);
-            if (resultEnclosingSpan == null) {
+            result.enclosingSpan = type.getFeatureByBaseName(resultEnclosingSpanName);
+            if (result.enclosingSpan == null) {
                 LOG.error(PARAM_ENCLOSINGSPAN + " '" + resultEnclosingSpanName
-                        + "' specified, but does not exist for type: " + resultAnnotationType.getName());
+                        + "' specified, but does not exist for type: " + type.getName());
                 throw new AnnotatorInitializationException();
             }
         }
 
         if ((resultMatchedTextFeatureName == null) || (resultMatchedTextFeatureName.equals(""))) {
-            resultMatchedTextFeature = null;
+            result.matchedText = null;
         } else {
-            resultMatchedTextFeature = resultAnnotationType.getFeatureByBaseName(resultMatchedTextFeatureName);
-            if (resultMatchedTextFeature == null) {
+            result.matchedText = type.getFeatureByBaseName(resultMatchedTextFeatureName);
+            if (result.matchedText == null) {
                 LOG.error(PARAM_MATCHEDFEATURE + " '" + resultMatchedTextFeatureName
-                        + "' specified, but does not exist for type: " + resultAnnotationType.getName());
+                        + "' specified, but does not exist for type: " + type.getName());
                 throw new AnnotatorInitializationException();
             }
         }
 
         if ((matchedTokensFeatureName == null) || (matchedTokensFeatureName.equals(""))) {
-            matchedTokensFeature = null;
+            result.matchedTokens = null;
         } else {
-            matchedTokensFeature = resultAnnotationType.getFeatureByBaseName(matchedTokensFeatureName);
-            if (matchedTokensFeature == null) {
+            result.matchedTokens = type.getFeatureByBaseName(matchedTokensFeatureName);
+            if (result.matchedTokens == null) {
                 LOG.error(PARAM_MATCHEDTOKENSFEATURENAME + " '" + matchedTokensFeatureName
-                        + "' specified, but does not exist for type: " + resultAnnotationType.getName());
+                        + "' specified, but does not exist for type: " + type.getName());
+                throw new AnnotatorInitializationException();
+            }
+        }
+
+        if ((resultEntryIdFeatureName == null) || (resultEntryIdFeatureName.equals(""))) {
+            result.entryId = null;
+        } else {
+            result.entryId = type.getFeatureByBaseName(resultEntryIdFeatureName);
+            if (result.entryId == null) {
+                LOG.error(PARAM_ENTRYIDFEATURENAME + " '" + resultEntryIdFeatureName
+                        + "' specified, but does not exist for type: " + type.getName());
                 throw new AnnotatorInitializationException();
             }
         }
 
-        int numFeatures = featureNames.length;
-        features = new Feature[numFeatures];
+        // in entry ID only mode the attribute features are never written, so
+        // they need not exist in the result type
+        int numFeatures = entryIdOnly ? 0 : featureNames.length;
+        result.features = new Feature[numFeatures];
 
         for (int i = 0; i < numFeatures; i++) {
-            features[i] = resultAnnotationType.getFeatureByBaseName(featureNames[i]);
-            if (features[i] == null) {
+            result.features[i] = type.getFeatureByBaseName(featureNames[i]);
+            if (result.features[i] == null) {
                 LOG.error(PARAM_FEATURE_LIST + "[" + i + "] '" + featureNames[i]
-                        + "' specified, but does not exist for type: " + resultAnnotationType.getName());
+                        + "' specified, but does not exist for type: " + type.getName());
                 throw new AnnotatorInitializationException();
             }
 
         }
+        return result;
     }
 
     /**
@@ -378,6 +845,13 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
      */
     public void process(JCas jCas) throws AnalysisEngineProcessException {
         CAS tcas = jCas.getCas();
+        long startTime = metricsEnabled ? System.nanoTime() : 0L;
+        DocumentEvent documentEvent = new DocumentEvent();
+        documentEvent.begin();
+        candidatesScanned = 0;
+        matchesFound = 0;
+        int spanCount = 0;
+        int tokenCount = 0;
 
         AnnotationFS token;
 
@@ -395,37 +869,74 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
             // referenced
             // logger.setupDocument (getJCas ());
 
-            FSIndex dbIndex = tcas.getAnnotationIndex(spanFeatureStructureType);
-            FSIterator spanIterator = dbIndex.iterator();
+            tokenNormalizer.clearCache();
 
             AnnotationIndex tokenIndex = (AnnotationIndex) tcas.getAnnotationIndex(tokenType);
 
-            while (spanIterator.hasNext()) {
-                ArrayList<AnnotationFS> tokens = new ArrayList<AnnotationFS>(2048);
+            if (slidingWindow) {
+                tokenCount = processTokenWindow(findAllMatches, tcas, new TokenWindow(tokenIndex.iterator()),
+                        (Annotation) jCas.getDocumentAnnotationFs());
+                metrics.spanProcessed(tokenCount);
+                spanCount = 1;
+            } else {
+                FSIterator spanIterator = tcas.getAnnotationIndex(spanFeatureStructureType).iterator();
 
-                Annotation spanAnnotation = (Annotation) spanIterator.next();
+                while (spanIterator.hasNext()) {
+                    ArrayList<AnnotationFS> tokens = new ArrayList<AnnotationFS>(2048);
 
-                FSIterator tokenIter = tokenIndex.subiterator(spanAnnotation);
+                    Annotation spanAnnotation = (Annotation) spanIterator.next();
+                    SpanEvent spanEvent = new SpanEvent();
+                    spanEvent.begin();
+                    long spanCandidates = candidatesScanned;
+                    int spanMatches = matchesFound;
 
-                // get all tokens for the specified block
-                while (tokenIter.hasNext()) {
-                    token = (AnnotationFS) tokenIter.next();
-                    tokens.add(token);
-                }
+                    FSIterator tokenIter = tokenIndex.subiterator(spanAnnotation);
 
-                switch (searchStrategy) {
-                case PARAMVALUE_SKIPANYMATCH:
-                case PARAMVALUE_SKIPANYMATCHALLOWOVERLAP:
-                    processTokenListSkipAny(searchStrategy, findAllMatches, tcas, tokens, spanAnnotation);
-                    break;
-                case PARAMVALUE_CONTIGUOUSMATCH:
-                    processTokenList(searchStrategy, findAllMatches, tcas, tokens, spanAnnotation);
-                    break;
-                default:
-                    processTokenList(searchStrategy, findAllMatches, tcas, tokens, spanAnnotation);
-                    break;
-                }
+                    // get all tokens for the specified block
+                    while (tokenIter.hasNext()) {
+                        token = (AnnotationFS) tokenIter.next();
+                        tokens.add(token);
+                    }
+                    metrics.spanProcessed(tokens.size());
+                    spanCount++;
+                    tokenCount += tokens.size();
+
+                    switch (searchStrategy) {
+                    case PARAMVALUE_SKIPANYMATCH:
+                    case PARAMVALUE_SKIPANYMATCHALLOWOVERLAP:
+                        processTokenListSkipAny(searchStrategy, findAllMatches, tcas, tokens, spanAnnotation);
+                        break;
+                    case PARAMVALUE_CONTIGUOUSMATCH:
+                        processTokenList(searchStrategy, findAllMatches, tcas, tokens, spanAnnotation);
+                        break;
+                    default:
+                        processTokenList(searchStrategy, findAllMatches, tcas, tokens, spanAnnotation);
+                        break;
+                    }
 
+                    spanEvent.end();
+                    if (spanEvent.shouldCommit()) {
+                        spanEvent.spanBegin = spanAnnotation.getBegin();
+                        spanEvent.spanEnd = spanAnnotation.getEnd();
+                        spanEvent.spanLength = tokens.size();
+                        spanEvent.candidatesScanned = candidatesScanned - spanCandidates;
+                        spanEvent.matchesFound = matchesFound - spanMatches;
+                        spanEvent.commit();
+                    }
+                }
+            }
+            if (metricsEnabled) {
+                metrics.documentProcessed(System.nanoTime() - startTime);
+            }
+            documentEvent.end();
+            if (documentEvent.shouldCommit()) {
+                String documentText = tcas.getDocumentText();
+                documentEvent.documentLength = (documentText == null) ? 0 : documentText.length();
+                documentEvent.spans = spanCount;
+                documentEvent.tokens = tokenCount;
+                documentEvent.candidatesScanned = candidatesScanned;
+                documentEvent.matchesFound = matchesFound;
+                documentEvent.commit();
             }
         } catch (Exception e) {
             throw new AnalysisEngineProcessException(e);
@@ -471,17 +982,17 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
             token = tokens.get(whichToken);
             String tokenText = getTokenText(token);
 
-            String word = tokenNormalizer.normalize(tokenText);
+            String word = normalize(tokenText);
             normalizedTokens.add(word);
         }
 
         findMatchesSkipAnyToken(searchStrategy, findAllMatches, tcas, tokens, normalizedTokens,
-                findPotentialEntries(normalizedTokens, dict), spanAnnotation);
+                findPotentialEntries(normalizedTokens), spanAnnotation);
     }
 
-    private Map<String, Collection<DictEntry>> findPotentialEntries(ArrayList<String> normalizedTokens,
-            DictionaryResource dict) {
+    private Map<String, Collection<DictEntry>> findPotentialEntries(ArrayList<String> normalizedTokens) {
         HashMap<String, Collection<DictEntry>> potentialEntries = new HashMap<String, Collection<DictEntry>>();
+        HashSet<String> spanTokens = new HashSet<String>(normalizedTokens);
 
         Iterator<String> tokenIter = normalizedTokens.iterator();
         while (tokenIter.hasNext()) {
@@ -491,7 +1002,7 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
             if (entries == null) {
                 entries = new ArrayList<DictEntry>();
             }
-            DictionaryResource.DictEntriesByLength entriesByLength = dict.getEntries(word);
+            DictionaryResource.DictEntriesByLength entriesByLength = lookupEntries(word);
             if (entriesByLength != null) {
                 int shortest = entriesByLength.getShortest().intValue();
                 int longest = entriesByLength.getLongest().intValue();
@@ -499,10 +1010,12 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
                     DictionaryResource.DictEntries dictEntries = entriesByLength.getEntries(currentLength);
                     if (dictEntries != null) {
                         ArrayList<DictEntry> entryItems = dictEntries.getEntries();
+                        metrics.candidatesExamined(entryItems.size());
+                        candidatesScanned += entryItems.size();
                         Iterator<DictEntry> entryIter = entryItems.iterator();
                         while (entryIter.hasNext()) {
                             DictionaryResource.DictEntry entry = (DictionaryResource.DictEntry) entryIter.next();
-                            if ((containsAll(normalizedTokens, entry.getElements())) && (!entries.contains(entry))) {
+                            if ((containsAll(spanTokens, entry.getElements())) && (!entries.contains(entry))) {
                                 entries.add(entry);
                             }
                         }
@@ -516,7 +1029,7 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
         return potentialEntries;
     }
 
-    private boolean containsAll(List<String> container, String[] contained) {
+    private boolean containsAll(Collection<String> container, String[] contained) {
         for (String item : contained) {
             if (!container.contains(item)) {
                 return false;
@@ -542,37 +1055,86 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
         int whichToken = 0; // use index instead of iterator to simplify walking
         // through parallel arrays (tokens/normalizedTokens)
 
+        // counts of the tokens an entry may be spread over; without a bound
+        // the window reaches to the end of the span, so that a repeated token
+        // must occur as often as in the entry either way
+        TokenCountWindow window = new TokenCountWindow(normalizedTokens,
+                (skipAnyMaxWindow > 0) ? skipAnyMaxWindow : Math.max(1, normalizedTokens.size()));
+
+        Arrays.fill(dictionaryNextStart, 0);
         while (whichToken < normalizedTokens.size()) {
+            int pending = startPosition(whichToken);
             Collection<DictEntry> entries = potentialEntries.get(normalizedTokens.get(whichToken));
-            if (entries == null) {
-                whichToken += 1;
-            } else {
+            if (entries != null) {
+                window.moveTo(whichToken);
                 Iterator<DictEntry> entryIter = entries.iterator();
-                boolean foundMatch = false;
-                while ((entryIter.hasNext() && (!foundMatch))) {
+                while ((entryIter.hasNext() && (pending > 0))) {
                     DictionaryResource.DictEntry entry = entryIter.next();
+                    int dictionary = dictionaryIndex(entry.getProperties());
 
-                    if (containsAll(normalizedTokens.subList(whichToken, normalizedTokens.size()),
-                            entry.getElements())) {
+                    if ((!dictionaryDone[dictionary])
+                            && window.containsAll(entry.getElements())) {
                         int lengthOfMatch = processMatch(tcas, tokens, normalizedTokens, spanAnnotation, whichToken,
                                 entry);
                         if (!findAllMatches) {
-                            foundMatch = true;
+                            dictionaryDone[dictionary] = true;
+                            pending--;
                             if (searchStrategy == PARAMVALUE_SKIPANYMATCHALLOWOVERLAP) {
-                                whichToken += 1;
+                                dictionaryNextStart[dictionary] = whichToken + 1;
                             } else {
-                                whichToken += lengthOfMatch;
+                                dictionaryNextStart[dictionary] = whichToken + lengthOfMatch;
                             }
                         }
                     }
                 }
-                if (!foundMatch) {
-                    whichToken += 1;
-                }
             }
+            whichToken = nextPosition();
         }
     }
 
+    /**
+     * Start matching at a token: dictionaries which have not matched beyond
+     * it look for matches here, and continue at the next token unless they
+     * find one.
+     *
+     * @return number of dictionaries looking for matches at the token
+     */
+    private int startPosition(int whichToken) {
+        int pending = 0;
+        for (int dictionary = 0; dictionary < dictionaryNextStart.length; dictionary++) {
+            if (dictionaryNextStart[dictionary] <= whichToken) {
+                dictionaryNextStart[dictionary] = whichToken + 1;
+                dictionaryDone[dictionary] = false;
+                pending++;
+            } else {
+                dictionaryDone[dictionary] = true;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return the next token at which any dictionary looks for matches
+     */
+    private int nextPosition() {
+        int next = dictionaryNextStart[0];
+        for (int dictionary = 1; dictionary < dictionaryNextStart.length; dictionary++) {
+            next = Math.min(next, dictionaryNextStart[dictionary]);
+        }
+        return next;
+    }
+
+    /**
+     * @return index of the dictionary an entry comes from, 0 for {@link #dict}
+     */
+    private int dictionaryIndex(EntryProperties properties) {
+        if (dictionaryTags == null) {
+            return 0;
+        }
+        Integer dictionary = dictionaryTags.get(properties.getEntryPropertiesRoot());
+        return (dictionary == null) ? 0 : dictionary.intValue();
+    }
+
     /**
      * @param tcas
      * @param tokens
@@ -655,63 +1217,246 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
      */
     protected void processTokenList(int searchStrategy, boolean findAllMatches, CAS tcas,
             ArrayList<AnnotationFS> tokens, Annotation spanAnnotation) {
+        TokenRange spanTokens = new SpanTokens(tokens);
+        if (multisetIndex != null) {
+            processTokensIndexed(findAllMatches, tcas, spanTokens, spanAnnotation);
+            return;
+        }
         AnnotationFS token;
         // iterate over vector of tokens
 
         int whichToken = 0;
         int entryLength = 0;
 
+        Arrays.fill(dictionaryNextStart, 0);
         while (whichToken < tokens.size()) {
             token = tokens.get(whichToken);
             String tokenText = getTokenText(token);
-            entryLength = 0;
+            int pending = startPosition(whichToken);
 
-            String word = tokenNormalizer.normalize(tokenText);
+            String word = normalize(tokenText);
 
-            DictionaryResource.DictEntriesByLength entriesByLength = dict.getEntries(word);
+            DictionaryResource.DictEntriesByLength entriesByLength = lookupEntries(word);
             if (entriesByLength != null) {
                 entryLength = Math.min(entriesByLength.getLongest().intValue(), (tokens.size() - whichToken));
-                entryLength = defaultMatcher(findAllMatches, tcas, tokens, spanAnnotation, whichToken, entryLength,
-                        token.getBegin(), entriesByLength, entriesByLength.getShortest().intValue());
+                defaultMatcher(findAllMatches, tcas, spanTokens, spanAnnotation, whichToken, entryLength,
+                        token.getBegin(), entriesByLength, entriesByLength.getShortest().intValue(), pending);
+
+            }
+            whichToken = nextPosition();
+        }
+    }
+
+    /**
+     * Same as {@link #processTokenList} with the contiguous match strategy,
+     * reading the tokens of the whole document through a window which only
+     * holds the tokens a match starting at the current token can span.
+     *
+     * @return number of tokens processed
+     */
+    private int processTokenWindow(boolean findAllMatches, CAS tcas, TokenWindow tokens,
+            Annotation documentAnnotation) {
+        if (multisetIndex != null) {
+            return processTokensIndexed(findAllMatches, tcas, tokens, documentAnnotation);
+        }
+        int whichToken = 0;
+
+        Arrays.fill(dictionaryNextStart, 0);
+        while (tokens.fill(whichToken + 1) > whichToken) {
+            tokens.release(whichToken);
+            AnnotationFS token = tokens.get(whichToken);
+            int pending = startPosition(whichToken);
+
+            String word = normalize(getTokenText(token));
+
+            DictionaryResource.DictEntriesByLength entriesByLength = lookupEntries(word);
+            if (entriesByLength != null) {
+                int longest = entriesByLength.getLongest().intValue();
+                int entryLength = Math.min(longest, tokens.fill(whichToken + longest) - whichToken);
+                defaultMatcher(findAllMatches, tcas, tokens, documentAnnotation, whichToken, entryLength,
+                        token.getBegin(), entriesByLength, entriesByLength.getShortest().intValue(), pending);
+            }
+            whichToken = nextPosition();
+        }
+        return tokens.getEnd();
+    }
 
+    /**
+     * Same as {@link #processTokenList} with the contiguous match strategy and
+     * order independent lookup, finding the entries matching each window of
+     * tokens in the multiset index. The tokens are either a span or a
+     * {@link TokenWindow} over the document.
+     *
+     * @return number of tokens processed
+     */
+    private int processTokensIndexed(boolean findAllMatches, CAS tcas, TokenRange tokens,
+            Annotation spanAnnotation) {
+        TokenWindow window = (tokens instanceof TokenWindow) ? (TokenWindow) tokens : null;
+        MultisetIndex.Matcher matcher = multisetMatcher;
+        ArrayList<DictEntry> resultEntries = new ArrayList<DictEntry>();
+        int whichToken = 0;
+
+        matcher.reset();
+        Arrays.fill(dictionaryNextStart, 0);
+        while (fill(matcher, tokens, whichToken + 1) > whichToken) {
+            if (window != null) {
+                window.release(whichToken);
             }
-            whichToken += entryLength + 1;
+            int pending = startPosition(whichToken);
+            int longest = matcher.getMaxLength(whichToken);
+            metrics.dictionaryLookup(longest > 0);
+            if (longest > 0) {
+                int entryLength = Math.min(longest, fill(matcher, tokens, whichToken + longest) - whichToken);
+                int start = tokens.get(whichToken).getBegin();
+                // search through all entry lengths, as necessary
+                while ((pending > 0) && (entryLength >= multisetIndex.getShortest())) {
+                    resultEntries.clear();
+                    int examined = matcher.match(whichToken, entryLength, resultEntries);
+                    if (examined > 0) {
+                        metrics.candidatesExamined(examined);
+                        candidatesScanned += examined;
+                    }
+                    if (!resultEntries.isEmpty()) {
+                        pending = emitMatches(findAllMatches, tcas, tokens, spanAnnotation, whichToken, entryLength,
+                                start, resultEntries, pending);
+                    }
+                    entryLength--;
+                }
+            }
+            whichToken = nextPosition();
+        }
+        return tokens.getEnd();
+    }
+
+    /**
+     * Add the normalized tokens up to a position to a matcher, reading them
+     * into the window first if the tokens are a {@link TokenWindow}.
+     *
+     * @return number of tokens available, at least the position unless the
+     *         tokens end before it
+     */
+    private int fill(MultisetIndex.Matcher matcher, TokenRange tokens, int position) {
+        int available = (tokens instanceof TokenWindow) ? ((TokenWindow) tokens).fill(position) : tokens.getEnd();
+        int end = Math.min(position, available);
+        while (matcher.size() < end) {
+            matcher.add(normalize(getTokenText(tokens.get(matcher.size()))));
         }
+        return available;
     }
 
-    private int defaultMatcher(boolean findAllMatches, CAS tcas, ArrayList<AnnotationFS> tokens,
+    /**
+     * Find the longest entries starting at a token, for each dictionary
+     * looking for matches there, and advance those dictionaries past their
+     * matches.
+     *
+     * @param pending
+     *            number of dictionaries looking for matches at the token
+     */
+    private void defaultMatcher(boolean findAllMatches, CAS tcas, TokenRange tokens,
             Annotation spanAnnotation, int whichToken, int entryLength, int start,
-            DictionaryResource.DictEntriesByLength lengthEntries, int minLength) {
-        boolean entryFound = false;
+            DictionaryResource.DictEntriesByLength lengthEntries, int minLength, int pending) {
+        if (windowMatchCache != null) {
+            cachedMatcher(findAllMatches, tcas, tokens, spanAnnotation, whichToken, entryLength, start,
+                    lengthEntries, minLength, pending);
+            return;
+        }
         // search through all entry lengths, as necessary
-        while ((!entryFound) && (entryLength >= minLength)) {
+        while ((pending > 0) && (entryLength >= minLength)) {
             String[] tokensToMatch = buildTokensToMatchArray(tokens, whichToken, entryLength, orderIndependentLookup);
             DictionaryResource.DictEntries entriesByLength = lengthEntries.getEntries(entryLength);
             if (entriesByLength != null) {
-                ArrayList<DictionaryResource.DictEntry> entries = entriesByLength.getEntries();
+                ArrayList<DictionaryResource.DictEntry> entries = entriesByLength.getCandidates(tokensToMatch);
+                metrics.candidatesExamined(entries.size());
+                candidatesScanned += entries.size();
                 Collection<DictionaryResource.DictEntry> resultEntries = findMatchingEntry(entries, tokensToMatch);
-                Iterator<DictionaryResource.DictEntry> resultEntriesIterator = resultEntries.iterator();
-                AnnotationFS endToken = tokens.get(whichToken + entryLength - 1);
-
-                // we only want the first synonym from a found entry
-                while ((!entryFound) && resultEntriesIterator.hasNext()) {
-                    DictionaryResource.DictEntry dictEntry = resultEntriesIterator.next();
-                    makeAnnotation(tcas, start, endToken.getEnd(), dictEntry.getProperties(), spanAnnotation,
-                            dictEntry.getUnsorted(), tokens.subList(whichToken, whichToken + entryLength));
-
-                    updateTokenAnnotations(tokens, whichToken, entryLength, dictEntry);
+                pending = emitMatches(findAllMatches, tcas, tokens, spanAnnotation, whichToken, entryLength, start,
+                        resultEntries, pending);
+            }
+            entryLength--;
+        }
+    }
 
-                    if (!findAllMatches) {
-                        entryFound = true;
-                    }
+    /**
+     * Same as {@link #defaultMatcher}, looking up the entries matching each
+     * length in the window match cache first. The cache is keyed by the
+     * normalized tokens of that length only, so that a phrase is found in the
+     * cache whatever tokens follow it.
+     */
+    private void cachedMatcher(boolean findAllMatches, CAS tcas, TokenRange tokens,
+            Annotation spanAnnotation, int whichToken, int entryLength, int start,
+            DictionaryResource.DictEntriesByLength lengthEntries, int minLength, int pending) {
+        String[] window = buildTokensToMatchArray(tokens, whichToken, entryLength, false);
+        while ((pending > 0) && (entryLength >= minLength)) {
+            DictionaryResource.DictEntries entriesByLength = lengthEntries.getEntries(entryLength);
+            if (entriesByLength != null) {
+                String[] tokensToMatch = Arrays.copyOf(window, entryLength);
+                if (orderIndependentLookup) {
+                    Arrays.sort(tokensToMatch);
+                }
+                WindowMatchCache.Window key = new WindowMatchCache.Window(tokensToMatch, orderIndependentLookup);
+                DictEntry[] matches = windowMatchCache.get(key);
+                metrics.lookupCacheAccess(matches != null);
+                if (matches == null) {
+                    ArrayList<DictionaryResource.DictEntry> entries = entriesByLength.getCandidates(tokensToMatch);
+                    metrics.candidatesExamined(entries.size());
+                    candidatesScanned += entries.size();
+                    Collection<DictEntry> resultEntries = findMatchingEntry(entries, tokensToMatch);
+                    matches = resultEntries.isEmpty() ? WindowMatchCache.NO_MATCHES
+                            : resultEntries.toArray(new DictEntry[resultEntries.size()]);
+                    windowMatchCache.put(key, matches);
+                }
+                if (matches.length > 0) {
+                    pending = emitMatches(findAllMatches, tcas, tokens, spanAnnotation, whichToken, entryLength,
+                            start, Arrays.asList(matches), pending);
                 }
             }
             entryLength--;
         }
-        if (!entryFound) {
-            entryLength = 0;
+    }
+
+    /**
+     * Annotate the entries matching the tokens from a position on, for each
+     * dictionary looking for matches there, and advance those dictionaries
+     * past their matches.
+     *
+     * @return number of dictionaries still looking for matches at the token
+     */
+    private int emitMatches(boolean findAllMatches, CAS tcas, TokenRange tokens, Annotation spanAnnotation,
+            int whichToken, int entryLength, int start, Collection<DictionaryResource.DictEntry> resultEntries,
+            int pending) {
+        Iterator<DictionaryResource.DictEntry> resultEntriesIterator = resultEntries.iterator();
+        AnnotationFS endToken = tokens.get(whichToken + entryLength - 1);
+
+        // we only want the first synonym from a found entry, per dictionary
+        while ((pending > 0) && resultEntriesIterator.hasNext()) {
+            DictionaryResource.DictEntry dictEntry = resultEntriesIterator.next();
+            int dictionary = dictionaryIndex(dictEntry.getProperties());
+            if (dictionaryDone[dictionary]) {
+                continue;
+            }
+            makeAnnotation(tcas, start, endToken.getEnd(), dictEntry.getProperties(), spanAnnotation,
+                    dictEntry.getUnsorted(), matchedTokens(tokens, whichToken, entryLength));
+
+            updateTokenAnnotations(tokens, whichToken, entryLength, dictEntry);
+
+            if (!findAllMatches) {
+                dictionaryDone[dictionary] = true;
+                dictionaryNextStart[dictionary] = whichToken + entryLength;
+                pending--;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return the tokens of a match
+     */
+    private static List<AnnotationFS> matchedTokens(TokenRange tokens, int whichToken, int entryLength) {
+        List<AnnotationFS> matched = new ArrayList<AnnotationFS>(entryLength);
+        for (int i = whichToken; i < whichToken + entryLength; i++) {
+            matched.add(tokens.get(i));
         }
-        return entryLength;
+        return matched;
     }
 
     /**
@@ -723,7 +1468,7 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
      * @param entryLength
      * @param dictEntry
      */
-    private void updateTokenAnnotations(ArrayList<AnnotationFS> tokens, int whichToken, int entryLength,
+    private void updateTokenAnnotations(TokenRange tokens, int whichToken, int entryLength,
             DictEntry dictEntry) {
         if (tokenClassWriteBackFeatures != null) {
             for (int feature = 0; feature < tokenClassWriteBackFeatures.length; feature++) {
@@ -747,34 +1492,58 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
      */
     protected void makeAnnotation(CAS tcas, int start, int end, EntryProperties properties, Annotation spanAnnotation,
             String matchedText, Collection<AnnotationFS> matched) {
-        AnnotationFS annotation = tcas.createAnnotation(resultAnnotationType, start, end);
-        if (resultEnclosingSpan != null) {
-            annotation.setFeatureValue(resultEnclosingSpan, spanAnnotation);
+        AnnotationEvent annotationEvent = new AnnotationEvent();
+        annotationEvent.begin();
+        ResultType resultType = resultTypes[dictionaryIndex(properties)];
+        AnnotationFS annotation = tcas.createAnnotation(resultType.type, start, end);
+        if (resultType.enclosingSpan != null) {
+            annotation.setFeatureValue(resultType.enclosingSpan, spanAnnotation);
         }
 
-        if (resultMatchedTextFeature != null) {
-            annotation.setStringValue(resultMatchedTextFeature, matchedText);
+        if (resultType.matchedText != null) {
+            annotation.setStringValue(resultType.matchedText, matchedText);
         }
 
-        if (matchedTokensFeature != null) {
+        if (resultType.matchedTokens != null) {
             FSArray matchedTokens = new FSArray(getJCas(), matched.size());
             FeatureStructure[] featureStructArray = new FeatureStructure[matched.size()];
             matched.toArray(featureStructArray);
             matchedTokens.copyFromArray(featureStructArray, 0, 0, featureStructArray.length);
-            annotation.setFeatureValue(matchedTokensFeature, matchedTokens);
+            annotation.setFeatureValue(resultType.matchedTokens, matchedTokens);
+        }
+
+        if (resultType.entryId != null) {
+            if ((properties.getEntryID() < 0) && (!warnedMissingEntryID)) {
+                LOG.warn("dictionary entry '" + matchedText + "' has no entry ID, e.g. because the dictionary was"
+                        + " compiled by an older version; " + PARAM_ENTRYIDFEATURENAME + " is set to -1");
+                warnedMissingEntryID = true;
+            }
+            annotation.setIntValue(resultType.entryId, properties.getEntryID());
         }
 
+        Feature[] features = resultType.features;
         for (int featIndex = 0; featIndex < features.length; featIndex++) {
             if (features[featIndex] != null) {
                 annotation.setStringValue(features[featIndex],
                         properties.getProperty(attributeNames[featIndex], UNKNOWN_VALUE));
             } else {
-                String message = "Feature '" + featIndex + "' not found in type '" + resultingAnnotationName + "'";
+                String message = "Feature '" + featIndex + "' not found in type '" + resultType.type.getName() + "'";
                 LOG.warn(message);
             }
         }
 
         tcas.getIndexRepository().addFS(annotation);
+        metrics.matchEmitted(searchStrategy);
+        matchesFound++;
+        annotationEvent.end();
+        if (annotationEvent.shouldCommit()) {
+            annotationEvent.begin = start;
+            annotationEvent.end = end;
+            annotationEvent.matchedTokens = matched.size();
+            annotationEvent.entryId = properties.getEntryID();
+            annotationEvent.searchStrategy = searchStrategy;
+            annotationEvent.commit();
+        }
     }
 
     /**
@@ -813,12 +1582,12 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
      * @param length
      * @return
      */
-    private String[] buildTokensToMatchArray(ArrayList<AnnotationFS> tokens, int startIndex, int length,
+    private String[] buildTokensToMatchArray(TokenRange tokens, int startIndex, int length,
             boolean sortElements) {
         String[] elements = new String[length];
         for (int i = startIndex; i < length + startIndex; i++) {
             AnnotationFS token = tokens.get(i);
-            elements[i - startIndex] = tokenNormalizer.normalize(getTokenText(token));
+            elements[i - startIndex] = normalize(getTokenText(token));
         }
 
         if (sortElements) {
@@ -828,11 +1597,56 @@ public class ConceptMapper extends JCasAnnotator_ImplBase {
         return elements;
     }
 
+    /**
+     * @return the dictionary entries keyed on a normalized token, or null if
+     *         it is no key; the key filters of compiled dictionaries, if any,
+     *         are checked first
+     */
+    private DictionaryResource.DictEntriesByLength lookupEntries(String word) {
+        DictionaryResource.DictEntriesByLength entriesByLength = null;
+        if (mightBeKey(word)) {
+            entriesByLength = lookupDictionary.getEntries(word);
+        }
+        metrics.dictionaryLookup(entriesByLength != null);
+        return entriesByLength;
+    }
+
+    /**
+     * @return false if no dictionary looked up has the token as a key
+     */
+    private boolean mightBeKey(String word) {
+        if (keyFilters == null) {
+            return true;
+        }
+        for (KeyFilter filter : keyFilters) {
+            if (filter.mightContain(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the normalized form of a token's text, replaced by the closest
+     *         dictionary token if fuzzy matching is enabled and it does not
+     *         occur in the dictionary
+     */
+    private String normalize(String tokenText) {
+        String word = tokenNormalizer.normalize(tokenText);
+        if ((fuzzyVocabulary == null) || (word.length() < fuzzyMinTokenLength)) {
+            return word;
+        }
+        return fuzzyVocabulary.correct(word, fuzzyMaxEdits);
+    }
+
     private String getTokenText(AnnotationFS token) {
         if (tokenTextFeature == null) {
             return token.getCoveredText();
         } else {
-            return token.getStringValue(tokenTextFeature);
+            String text = token.getStringValue(tokenTextFeature);
+            // tokenizers may leave the text feature unset for tokens whose
+            // text equals their covered text
+            return (text == null) ? token.getCoveredText() : text;
         }
     }
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.batch;
+
+/**
+ * A document of a batch run: its identifier, written with its results, and its text.
+ */
+public class BatchDocument {
+
+  /** marks the end of the input in the work queue */
+  static final BatchDocument END = new BatchDocument(null, null);
+
+  private final String id;
+
+  private final String text;
+
+  public BatchDocument(String id, String text) {
+    super();
+    this.id = id;
+    this.text = text;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getText() {
+    return text;
+  }
+}
@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.batch;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.conceptMapper.ConceptMapper;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.resource.metadata.ConfigurationParameterSettings;
+import org.apache.uima.util.XMLInputSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs an analysis engine, typically an aggregate of a tokenizer and ConceptMapper, over a batch
+ * of documents with several threads.
+ *
+ * Each thread has its own engine instance and reuses a single CAS. All engines are produced with
+ * one resource manager, so they share the dictionary resources, which are loaded once. A reader
+ * thread feeds the documents through a bounded queue, so reading blocks while the workers are
+ * busy, and a writer thread writes the results of each document, in the order in which documents
+ * are finished, to a tab separated results file. Progress and throughput are logged periodically.
+ * A worker thread that dies, e.g. of an {@link Error}, is logged; if all of them die, the run is
+ * aborted.
+ *
+ * The results file starts with a line per result type, <code>#</code>, the type name and the
+ * names of its features. Each result annotation then gives a line with the document identifier,
+ * begin and end offset, short type name, covered text and the values of the features. Tabs, line
+ * breaks and backslashes in values are escaped with backslashes.
+ */
+public class BatchRunner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BatchRunner.class);
+
+  /** input argument reading a JSON Lines stream from standard input */
+  public static final String STDIN = "-";
+
+  public static final int DEFAULT_REPORT_INTERVAL = 10000;
+
+  /** documents queued per worker thread, limiting how far reading runs ahead */
+  private static final int QUEUE_SLOTS_PER_THREAD = 4;
+
+  /** milliseconds between checks for live workers while the work queue is full */
+  private static final long WORKER_CHECK_INTERVAL = 100;
+
+  /** marks the end of the results in the result queue */
+  private static final String END_OF_RESULTS = new String("");
+
+  private final AnalysisEngineDescription description;
+
+  private final int numThreads;
+
+  private final String[] resultTypeNames;
+
+  private long reportInterval = DEFAULT_REPORT_INTERVAL;
+
+  private final AtomicLong documents = new AtomicLong();
+
+  private final AtomicLong characters = new AtomicLong();
+
+  private final AtomicLong annotations = new AtomicLong();
+
+  private final AtomicLong failures = new AtomicLong();
+
+  /** workers whose thread has not ended yet */
+  private final AtomicInteger liveWorkers = new AtomicInteger();
+
+  /** workers whose thread ended with an error */
+  private final AtomicInteger deadWorkers = new AtomicInteger();
+
+  /** the error that ended the last worker thread to die, if any */
+  private volatile Throwable workerError;
+
+  private BlockingQueue<BatchDocument> workQueue;
+
+  private BlockingQueue<String> resultQueue;
+
+  /**
+   * @param description
+   *          the engine run over each document
+   * @param numThreads
+   *          number of worker threads and engine instances
+   * @param resultTypeNames
+   *          names of the annotation types written to the results, or null for the result types
+   *          of all ConceptMapper annotators in the engine
+   */
+  public BatchRunner(AnalysisEngineDescription description, int numThreads, String[] resultTypeNames)
+          throws Exception {
+    super();
+    if (numThreads <= 0) {
+      throw new IllegalArgumentException("number of threads must be positive: " + numThreads);
+    }
+    this.description = description;
+    this.numThreads = numThreads;
+    if (resultTypeNames == null) {
+      Set<String> names = new LinkedHashSet<String>();
+      findResultTypes(description, UIMAFramework.newDefaultResourceManager(), names);
+      if (names.isEmpty()) {
+        throw new IllegalArgumentException("no ConceptMapper annotator found in "
+                + description.getAnalysisEngineMetaData().getName());
+      }
+      resultTypeNames = names.toArray(new String[names.size()]);
+    }
+    this.resultTypeNames = resultTypeNames;
+  }
+
+  /**
+   * @param reportInterval
+   *          milliseconds between progress reports, 0 for none
+   */
+  public void setReportInterval(long reportInterval) {
+    this.reportInterval = reportInterval;
+  }
+
+  /**
+   * Process all documents of a source, writing the results.
+   *
+   * @return the number of documents which failed
+   */
+  public long run(DocumentSource source, Writer output) throws Exception {
+    ResourceManager resourceManager = UIMAFramework.newDefaultResourceManager();
+    List<AnalysisEngine> engines = new ArrayList<AnalysisEngine>(numThreads);
+    long startTime = System.currentTimeMillis();
+    for (int i = 0; i < numThreads; i++) {
+      engines.add(UIMAFramework.produceAnalysisEngine(description, resourceManager, null));
+    }
+    LOG.info("initialized " + numThreads + " engines in " + (System.currentTimeMillis() - startTime)
+            + " ms");
+
+    workQueue = new ArrayBlockingQueue<BatchDocument>(numThreads * QUEUE_SLOTS_PER_THREAD);
+    resultQueue = new ArrayBlockingQueue<String>(numThreads * QUEUE_SLOTS_PER_THREAD);
+    documents.set(0);
+    characters.set(0);
+    annotations.set(0);
+    failures.set(0);
+    liveWorkers.set(numThreads);
+    deadWorkers.set(0);
+    workerError = null;
+
+    List<Worker> workers = new ArrayList<Worker>(numThreads);
+    for (AnalysisEngine engine : engines) {
+      workers.add(new Worker(engine));
+    }
+    output.write(workers.get(0).header());
+    ResultWriter writer = new ResultWriter(output);
+    writer.start();
+    List<Thread> threads = new ArrayList<Thread>(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      Thread thread = new Thread(workers.get(i), "BatchRunner-worker-" + i);
+      thread.start();
+      threads.add(thread);
+    }
+
+    startTime = System.currentTimeMillis();
+    long lastReport = startTime;
+    try {
+      BatchDocument document;
+      while ((document = source.next()) != null) {
+        if (!enqueue(document)) {
+          throw new IllegalStateException("all " + numThreads + " worker threads died", workerError);
+        }
+        long now = System.currentTimeMillis();
+        if ((reportInterval > 0) && (now - lastReport >= reportInterval)) {
+          LOG.info(progress(now - startTime));
+          lastReport = now;
+        }
+      }
+    } finally {
+      source.close();
+      // not taken if no worker is left, in which case the threads have ended
+      enqueue(BatchDocument.END);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      workQueue.clear();
+      resultQueue.put(END_OF_RESULTS);
+      writer.join();
+      for (AnalysisEngine engine : engines) {
+        engine.destroy();
+      }
+    }
+    output.flush();
+    if (writer.error != null) {
+      throw writer.error;
+    }
+    if (deadWorkers.get() == numThreads) {
+      // after the last document was queued, so that documents may be left unprocessed
+      throw new IllegalStateException("all " + numThreads + " worker threads died", workerError);
+    }
+    LOG.info("done: " + progress(System.currentTimeMillis() - startTime));
+    return failures.get();
+  }
+
+  /**
+   * Hand a document to the workers, waiting while the work queue is full.
+   *
+   * @return false if all workers have died, so that the document will not be processed
+   */
+  private boolean enqueue(BatchDocument document) throws InterruptedException {
+    while (!workQueue.offer(document, WORKER_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+      if (liveWorkers.get() == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return counts and throughput after some time of processing
+   */
+  private String progress(long elapsed) {
+    long docs = documents.get();
+    double seconds = Math.max(elapsed, 1) / 1000.0;
+    return docs + " documents, " + characters.get() + " characters, " + annotations.get()
+            + " annotations, " + failures.get() + " failed in " + elapsed + " ms ("
+            + String.format("%.1f", docs / seconds) + " documents/s, "
+            + String.format("%.1f", characters.get() / seconds / 1000.0) + " kchars/s), "
+            + workQueue.size() + " queued";
+  }
+
+  /**
+   * Collect the result types of the ConceptMapper annotators of an engine.
+   */
+  private static void findResultTypes(AnalysisEngineDescription description,
+          ResourceManager resourceManager, Set<String> names) throws Exception {
+    if (description.isPrimitive()) {
+      if (ConceptMapper.class.getName().equals(description.getAnnotatorImplementationName())) {
+        ConfigurationParameterSettings settings = description.getAnalysisEngineMetaData()
+                .getConfigurationParameterSettings();
+        Object name = settings.getParameterValue(ConceptMapper.PARAM_ANNOTATION_NAME);
+        if (name != null) {
+          names.add((String) name);
+        }
+        String[] additional = (String[]) settings
+                .getParameterValue(ConceptMapper.PARAM_ADDITIONAL_ANNOTATION_NAMES);
+        if (additional != null) {
+          for (String additionalName : additional) {
+            names.add(additionalName);
+          }
+        }
+      }
+    } else {
+      for (ResourceSpecifier delegate : description.getDelegateAnalysisEngineSpecifiers(
+              resourceManager).values()) {
+        if (delegate instanceof AnalysisEngineDescription) {
+          findResultTypes((AnalysisEngineDescription) delegate, resourceManager, names);
+        }
+      }
+    }
+  }
+
+  private static void appendEscaped(StringBuilder out, String value) {
+    if (value == null) {
+      return;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '\t':
+        out.append("\\t");
+        break;
+      case '\n':
+        out.append("\\n");
+        break;
+      case '\r':
+        out.append("\\r");
+        break;
+      case '\\':
+        out.append("\\\\");
+        break;
+      default:
+        out.append(c);
+        break;
+      }
+    }
+  }
+
+  /**
+   * Processes documents from the work queue with its own engine and CAS until the end of the
+   * input.
+   */
+  private class Worker implements Runnable {
+    private final AnalysisEngine engine;
+
+    private final CAS cas;
+
+    private final Type[] resultTypes;
+
+    /** primitive features written for each result type */
+    private final Feature[][] resultFeatures;
+
+    Worker(AnalysisEngine engine) throws Exception {
+      this.engine = engine;
+      cas = engine.newCAS();
+      resultTypes = new Type[resultTypeNames.length];
+      resultFeatures = new Feature[resultTypeNames.length][];
+      for (int i = 0; i < resultTypeNames.length; i++) {
+        resultTypes[i] = cas.getTypeSystem().getType(resultTypeNames[i]);
+        if (resultTypes[i] == null) {
+          throw new IllegalArgumentException("result type '" + resultTypeNames[i] + "' does not exist");
+        }
+        List<Feature> features = new ArrayList<Feature>();
+        for (Feature feature : resultTypes[i].getFeatures()) {
+          if (feature.getRange().isPrimitive() && (!feature.equals(cas.getBeginFeature()))
+                  && (!feature.equals(cas.getEndFeature()))) {
+            features.add(feature);
+          }
+        }
+        resultFeatures[i] = features.toArray(new Feature[features.size()]);
+      }
+    }
+
+    String header() {
+      StringBuilder header = new StringBuilder();
+      for (int i = 0; i < resultTypes.length; i++) {
+        header.append('#').append(resultTypes[i].getName());
+        for (Feature feature : resultFeatures[i]) {
+          header.append('\t').append(feature.getShortName());
+        }
+        header.append('\n');
+      }
+      return header.toString();
+    }
+
+    public void run() {
+      try {
+        BatchDocument document;
+        while ((document = workQueue.take()) != BatchDocument.END) {
+          try {
+            resultQueue.put(process(document));
+          } catch (Exception e) {
+            failures.incrementAndGet();
+            LOG.error("failed to process document " + document.getId(), e);
+          }
+          documents.incrementAndGet();
+          characters.addAndGet(document.getText().length());
+        }
+        // leave the end marker for the other workers
+        workQueue.put(BatchDocument.END);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Throwable t) {
+        LOG.error("worker thread " + Thread.currentThread().getName() + " died", t);
+        workerError = t;
+        deadWorkers.incrementAndGet();
+      } finally {
+        liveWorkers.decrementAndGet();
+      }
+    }
+
+    private String process(BatchDocument document) throws Exception {
+      cas.reset();
+      cas.setDocumentText(document.getText());
+      engine.process(cas);
+      StringBuilder results = new StringBuilder();
+      for (int i = 0; i < resultTypes.length; i++) {
+        FSIterator<AnnotationFS> iter = cas.getAnnotationIndex(resultTypes[i]).iterator();
+        while (iter.hasNext()) {
+          AnnotationFS annotation = iter.next();
+          appendEscaped(results, document.getId());
+          results.append('\t').append(annotation.getBegin()).append('\t').append(annotation.getEnd())
+                  .append('\t').append(resultTypes[i].getShortName()).append('\t');
+          appendEscaped(results, annotation.getCoveredText());
+          for (Feature feature : resultFeatures[i]) {
+            results.append('\t');
+            appendEscaped(results, annotation.getFeatureValueAsString(feature));
+          }
+          results.append('\n');
+          annotations.incrementAndGet();
+        }
+      }
+      return results.toString();
+    }
+  }
+
+  /**
+   * Writes the results of each document from the result queue.
+   */
+  private class ResultWriter extends Thread {
+    private final Writer output;
+
+    private volatile Exception error;
+
+    ResultWriter(Writer output) {
+      super("BatchRunner-writer");
+      this.output = output;
+    }
+
+    public void run() {
+      try {
+        String results;
+        while ((results = resultQueue.take()) != END_OF_RESULTS) {
+          // keep draining the queue after an error, so that workers do not block
+          if (error == null) {
+            try {
+              output.write(results);
+            } catch (Exception e) {
+              error = e;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if ((args.length < 3) || (args.length > 4)) {
+      usage();
+      System.exit(17);
+    }
+    int numThreads = (args.length == 4) ? Integer.parseInt(args[3]) : Runtime.getRuntime()
+            .availableProcessors();
+    AnalysisEngineDescription description = UIMAFramework.getXMLParser()
+            .parseAnalysisEngineDescription(new XMLInputSource(args[0]));
+    Charset utf8 = Charset.forName("UTF-8");
+    DocumentSource source;
+    if (STDIN.equals(args[1])) {
+      source = new JsonLinesReader(new InputStreamReader(System.in, utf8));
+    } else if (new File(args[1]).isDirectory()) {
+      source = new DirectorySource(new File(args[1]).toPath(), utf8);
+    } else {
+      source = new JsonLinesReader(new InputStreamReader(new FileInputStream(args[1]), utf8));
+    }
+    Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[2]), utf8),
+            1 << 16);
+    long failed;
+    try {
+      failed = new BatchRunner(description, numThreads, null).run(source, output);
+    } finally {
+      output.close();
+    }
+    // engines may leave non-daemon threads behind, see CompileDictionary
+    System.exit((failed == 0) ? 0 : 1);
+  }
+
+  public static void usage() {
+    System.out.println("USAGE: " + BatchRunner.class.getName()
+            + ": <pathToDescriptor> <inputDirectory>|<inputFile.jsonl>|" + STDIN
+            + " <outputFileName> [<numThreads>]");
+  }
+}
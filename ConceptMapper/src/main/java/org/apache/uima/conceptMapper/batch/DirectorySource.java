@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.batch;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads each regular file below a directory as one document, in path order. The identifier of a
+ * document is its path relative to the directory.
+ */
+public class DirectorySource implements DocumentSource {
+
+  private final Path directory;
+
+  private final Charset charset;
+
+  private final Iterator<Path> files;
+
+  public DirectorySource(Path directory, Charset charset) throws IOException {
+    super();
+    this.directory = directory;
+    this.charset = charset;
+    List<Path> paths = new ArrayList<Path>();
+    Stream<Path> walk = Files.walk(directory);
+    try {
+      Iterator<Path> iter = walk.iterator();
+      while (iter.hasNext()) {
+        Path path = iter.next();
+        if (Files.isRegularFile(path)) {
+          paths.add(path);
+        }
+      }
+    } finally {
+      walk.close();
+    }
+    Collections.sort(paths);
+    files = paths.iterator();
+  }
+
+  public BatchDocument next() throws IOException {
+    if (!files.hasNext()) {
+      return null;
+    }
+    Path path = files.next();
+    return new BatchDocument(directory.relativize(path).toString(), new String(Files.readAllBytes(path),
+            charset));
+  }
+
+  public void close() {
+    // nothing to do
+  }
+}
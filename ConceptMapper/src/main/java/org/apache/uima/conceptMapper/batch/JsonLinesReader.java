@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads documents from a JSON Lines stream: one JSON object per line, with the document text in
+ * the <code>"text"</code> member and an optional identifier in the <code>"id"</code> member,
+ * which defaults to the line number. Other members are ignored; empty lines are skipped. Members
+ * whose value is <code>null</code> are treated as missing.
+ *
+ * Only the subset of JSON needed for this is parsed: the top level object's string, number,
+ * boolean and null members are read, nested objects and arrays are skipped.
+ */
+public class JsonLinesReader implements DocumentSource {
+
+  public static final String ID_MEMBER = "id";
+
+  public static final String TEXT_MEMBER = "text";
+
+  private final BufferedReader reader;
+
+  private int lineNumber;
+
+  /** current line and position while parsing it */
+  private String line;
+
+  private int pos;
+
+  public JsonLinesReader(Reader reader) {
+    super();
+    this.reader = (reader instanceof BufferedReader) ? (BufferedReader) reader
+            : new BufferedReader(reader, 1 << 16);
+  }
+
+  /**
+   * @return the next document, or null at the end of the stream
+   * @throws ParseException
+   *           if a line is not a JSON object or has no text
+   */
+  public BatchDocument next() throws IOException, ParseException {
+    String next;
+    do {
+      next = reader.readLine();
+      if (next == null) {
+        return null;
+      }
+      lineNumber++;
+    } while (next.trim().length() == 0);
+    Map<String, String> members = parseObject(next);
+    String text = members.get(TEXT_MEMBER);
+    if (text == null) {
+      throw new ParseException("line " + lineNumber + ": no \"" + TEXT_MEMBER + "\" member", 0);
+    }
+    String id = members.get(ID_MEMBER);
+    return new BatchDocument((id == null) ? String.valueOf(lineNumber) : id, text);
+  }
+
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  /**
+   * @return the scalar members of the object on a line, numbers and booleans as written; null
+   *         members are left out
+   */
+  private Map<String, String> parseObject(String text) throws ParseException {
+    line = text;
+    pos = 0;
+    Map<String, String> members = new HashMap<String, String>();
+    expect('{');
+    skipWhitespace();
+    if (peek() == '}') {
+      return members;
+    }
+    while (true) {
+      skipWhitespace();
+      String name = parseString();
+      expect(':');
+      skipWhitespace();
+      char c = peek();
+      if (c == '"') {
+        members.put(name, parseString());
+      } else if ((c == '{') || (c == '[')) {
+        skipNested();
+      } else {
+        int start = pos;
+        while ((pos < line.length()) && (",}".indexOf(line.charAt(pos)) < 0)
+                && (!Character.isWhitespace(line.charAt(pos)))) {
+          pos++;
+        }
+        String value = line.substring(start, pos);
+        if (!value.equals("null")) {
+          members.put(name, value);
+        }
+      }
+      skipWhitespace();
+      if (peek() == ',') {
+        pos++;
+      } else {
+        expect('}');
+        return members;
+      }
+    }
+  }
+
+  private String parseString() throws ParseException {
+    expect('"');
+    StringBuilder result = null;
+    int start = pos;
+    while (true) {
+      char c = nextChar();
+      if (c == '"') {
+        if (result == null) {
+          return line.substring(start, pos - 1);
+        }
+        return result.toString();
+      }
+      if (c == '\\') {
+        if (result == null) {
+          result = new StringBuilder(line.substring(start, pos - 1));
+        }
+        char escaped = nextChar();
+        switch (escaped) {
+        case 'b':
+          result.append('\b');
+          break;
+        case 'f':
+          result.append('\f');
+          break;
+        case 'n':
+          result.append('\n');
+          break;
+        case 'r':
+          result.append('\r');
+          break;
+        case 't':
+          result.append('\t');
+          break;
+        case 'u':
+          if (pos + 4 > line.length()) {
+            throw error("truncated \\u escape");
+          }
+          try {
+            result.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+          } catch (NumberFormatException e) {
+            throw error("invalid \\u escape");
+          }
+          pos += 4;
+          break;
+        default:
+          result.append(escaped);
+          break;
+        }
+      } else if (result != null) {
+        result.append(c);
+      }
+    }
+  }
+
+  /** skip a nested object or array, including any strings in it */
+  private void skipNested() throws ParseException {
+    int depth = 0;
+    do {
+      char c = peek();
+      if (c == '"') {
+        parseString();
+        continue;
+      }
+      pos++;
+      if ((c == '{') || (c == '[')) {
+        depth++;
+      } else if ((c == '}') || (c == ']')) {
+        depth--;
+      }
+    } while (depth > 0);
+  }
+
+  private void skipWhitespace() {
+    while ((pos < line.length()) && Character.isWhitespace(line.charAt(pos))) {
+      pos++;
+    }
+  }
+
+  private void expect(char c) throws ParseException {
+    skipWhitespace();
+    if (nextChar() != c) {
+      throw error("expected '" + c + "'");
+    }
+  }
+
+  private char peek() throws ParseException {
+    if (pos >= line.length()) {
+      throw error("unexpected end of line");
+    }
+    return line.charAt(pos);
+  }
+
+  private char nextChar() throws ParseException {
+    char c = peek();
+    pos++;
+    return c;
+  }
+
+  private ParseException error(String message) {
+    return new ParseException("line " + lineNumber + ", column " + (pos + 1) + ": " + message, pos);
+  }
+}
@@ -18,18 +18,77 @@
  */
 package org.apache.uima.conceptMapper.dictionaryCompiler;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.conceptMapper.support.dictionaryResource.CompactDictionary;
+import org.apache.uima.conceptMapper.support.dictionaryResource.CompiledDictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource;
 import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryStatistics;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryPropertiesTable;
+import org.apache.uima.conceptMapper.support.dictionaryResource.KeyFilter;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.apache.uima.resource.metadata.ExternalResourceBinding;
+import org.apache.uima.resource.metadata.ResourceManagerConfiguration;
 import org.apache.uima.util.XMLInputSource;
 
 public class CompileDictionary {
   private static final String DICTIONARY_RESOURCE_NAME = "/DictionaryFile";
 
+  /** suffix of the entry ID to properties side table written next to the compiled dictionary */
+  public static final String ENTRY_PROPERTIES_TABLE_SUFFIX = ".entries";
+
+  /** suffix of the normalization settings file written next to the compiled dictionary */
+  public static final String SETTINGS_SUFFIX = ".settings";
+
+  /** subcommand printing structure and memory statistics instead of compiling */
+  public static final String STATS_COMMAND = "stats";
+
+  /**
+   * subcommand compiling through sorted runs on disk, within a memory budget, instead of loading
+   * the whole dictionary
+   */
+  public static final String STREAM_COMMAND = "stream";
+
+  /** subcommand converting a compiled dictionary into the compact format */
+  public static final String COMPACT_COMMAND = "compact";
+
+  /**
+   * subcommand combining compiled dictionaries with equal normalization settings, without
+   * tokenizing their entries again
+   */
+  public static final String MERGE_COMMAND = "merge";
+
+  /**
+   * System property setting the false positive rate of the key filter written with the compiled
+   * dictionary (default 0.01); 0 writes no filter
+   */
+  public static final String KEY_FILTER_FALSE_POSITIVE_RATE_PROPERTY = "conceptMapper.keyFilterFalsePositiveRate";
+
   public static void main(String[] args) throws Exception {
+    if ((args.length > 0) && STATS_COMMAND.equals(args[0])) {
+      stats(args);
+      return;
+    }
+    if ((args.length > 0) && STREAM_COMMAND.equals(args[0])) {
+      stream(args);
+      return;
+    }
+    if ((args.length > 0) && COMPACT_COMMAND.equals(args[0])) {
+      compact(args);
+      return;
+    }
+    if ((args.length > 0) && MERGE_COMMAND.equals(args[0])) {
+      merge(args);
+      return;
+    }
     String dictionaryResourceName = DICTIONARY_RESOURCE_NAME;
     if (args.length == 2) {
       // do nothing
@@ -46,14 +105,190 @@ public class CompileDictionary {
     		dictionaryResourceName);
 
     FileOutputStream output = new FileOutputStream(args[1]);
-    dict.serializeEntries(output);
+    dict.serializeEntries(output, getKeyFilterFalsePositiveRate());
     output.close();
+
+    writeEntryPropertiesTable(dict, args[1]);
+    writeSettings(dict.getNormalizationSettings(), args[1]);
     ae.destroy();
     // for some reason JVM won't exit normally,
     // probably because CPM threads are alive?
     System.exit(0);
   }
   
+  private static double getKeyFilterFalsePositiveRate() {
+    String rate = System.getProperty(KEY_FILTER_FALSE_POSITIVE_RATE_PROPERTY);
+    return (rate == null) ? KeyFilter.DEFAULT_FALSE_POSITIVE_RATE : Double.parseDouble(rate);
+  }
+
+  private static void stream(String[] args) throws Exception {
+    String dictionaryResourceName = DICTIONARY_RESOURCE_NAME;
+    if (args.length == 4) {
+      // do nothing
+    } else if (args.length == 5) {
+      dictionaryResourceName = args[4];
+    } else {
+      usage();
+      System.exit(17);
+    }
+    long memoryBudget = Long.parseLong(args[1]) << 20;
+    AnalysisEngineDescription conceptMapperDesc = UIMAFramework.getXMLParser()
+            .parseAnalysisEngineDescription(new XMLInputSource(args[2]));
+    spoolDictionaryResource(conceptMapperDesc, dictionaryResourceName);
+
+    ExternalSortCompiler compiler = new ExternalSortCompiler(new File(args[3]), memoryBudget,
+            getKeyFilterFalsePositiveRate());
+    AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(conceptMapperDesc,
+            new SpoolingResourceManager(compiler), null);
+    DictionaryResource dict = (DictionaryResource) ae.getResourceManager().getResource(
+            dictionaryResourceName);
+    compiler.finish(dict.getEntryPropertiesRoot());
+    writeSettings(((DictionaryResource_impl) dict).getNormalizationSettings(), args[3]);
+    ae.destroy();
+    System.exit(0);
+  }
+
+  /**
+   * Convert a compiled dictionary, in any format, into the compact format, which is decoded key by
+   * key at lookup time.
+   */
+  private static void compact(String[] args) throws Exception {
+    if (args.length != 3) {
+      usage();
+      System.exit(17);
+    }
+    CompiledDictionaryResource_impl dict = new CompiledDictionaryResource_impl();
+    dict.read(new FileInputStream(args[1]));
+
+    FileOutputStream output = new FileOutputStream(args[2]);
+    CompactDictionary.write(dict, output, getKeyFilterFalsePositiveRate());
+    output.close();
+
+    writeEntryPropertiesTable(dict, args[2]);
+    writeSettings(readSettings(args[1]), args[2]);
+  }
+
+  /**
+   * Merge compiled dictionaries, in any format, into a new compiled dictionary.
+   */
+  private static void merge(String[] args) throws Exception {
+    if (args.length < 4) {
+      usage();
+      System.exit(17);
+    }
+    DictionaryMerger merger = new DictionaryMerger();
+    for (int i = 2; i < args.length; i++) {
+      CompiledDictionaryResource_impl dict = new CompiledDictionaryResource_impl();
+      dict.read(new FileInputStream(args[i]));
+      Properties settings = readSettings(args[i]);
+      if (settings == null) {
+        System.err.println("no normalization settings found for " + args[i]
+                + ", cannot check that it is compatible");
+      }
+      merger.add(dict, settings);
+    }
+    DictionaryResource_impl merged = merger.merge();
+    System.out.println("merged " + (args.length - 2) + " dictionaries, dropped "
+            + merger.getDuplicates() + " duplicate entries");
+
+    FileOutputStream output = new FileOutputStream(args[1]);
+    merged.serializeEntries(output, getKeyFilterFalsePositiveRate());
+    output.close();
+
+    writeEntryPropertiesTable(merged, args[1]);
+    writeSettings(merger.getSettings(), args[1]);
+  }
+
+  /**
+   * Write the entry properties table of a compiled dictionary next to it, unless its entries have
+   * no unique IDs, e.g. if it was compiled before entry IDs were introduced.
+   */
+  private static void writeEntryPropertiesTable(DictionaryResource dict, String compiledDictionary)
+          throws IOException {
+    if (!EntryPropertiesTable.hasUniqueEntryIDs(dict)) {
+      System.err.println("entries of " + compiledDictionary
+              + " have no unique entry IDs, no entry properties table written");
+      return;
+    }
+    FileOutputStream tableOutput = new FileOutputStream(compiledDictionary
+            + ENTRY_PROPERTIES_TABLE_SUFFIX);
+    EntryPropertiesTable.write(dict, tableOutput);
+    tableOutput.close();
+  }
+
+  /**
+   * Write the normalization settings of a compiled dictionary next to it.
+   *
+   * @param settings
+   *          the settings, or null to write none
+   */
+  private static void writeSettings(Properties settings, String compiledDictionary)
+          throws IOException {
+    if (settings != null) {
+      FileOutputStream output = new FileOutputStream(compiledDictionary + SETTINGS_SUFFIX);
+      settings.store(output, "ConceptMapper dictionary normalization settings");
+      output.close();
+    }
+  }
+
+  /**
+   * @return the normalization settings written next to a compiled dictionary, or null if there
+   *         are none, e.g. for dictionaries compiled by earlier versions
+   */
+  private static Properties readSettings(String compiledDictionary) throws IOException {
+    File file = new File(compiledDictionary + SETTINGS_SUFFIX);
+    if (!file.exists()) {
+      return null;
+    }
+    Properties settings = new Properties();
+    FileInputStream input = new FileInputStream(file);
+    settings.load(input);
+    input.close();
+    return settings;
+  }
+
+  /**
+   * Replace the implementation of the dictionary resource bound to a key by the
+   * {@link SpoolingDictionaryResource}.
+   */
+  private static void spoolDictionaryResource(AnalysisEngineDescription desc, String resourceName) {
+    String key = resourceName.startsWith("/") ? resourceName.substring(1) : resourceName;
+    ResourceManagerConfiguration config = desc.getResourceManagerConfiguration();
+    if (config != null) {
+      for (ExternalResourceBinding binding : config.getExternalResourceBindings()) {
+        if (binding.getKey().equals(key)) {
+          for (ExternalResourceDescription resource : config.getExternalResources()) {
+            if (resource.getName().equals(binding.getResourceName())) {
+              resource.setImplementationName(SpoolingDictionaryResource.class.getName());
+              return;
+            }
+          }
+        }
+      }
+    }
+    throw new IllegalArgumentException("no dictionary resource bound to " + resourceName);
+  }
+
+  private static void stats(String[] args) throws Exception {
+    String dictionaryResourceName = DICTIONARY_RESOURCE_NAME;
+    if (args.length == 2) {
+      // do nothing
+    } else if (args.length == 3) {
+      dictionaryResourceName = args[2];
+    } else {
+      usage();
+      System.exit(17);
+    }
+    AnalysisEngineDescription conceptMapperDesc = UIMAFramework.getXMLParser()
+            .parseAnalysisEngineDescription(new XMLInputSource(args[1]));
+    AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(conceptMapperDesc);
+    DictionaryResource dict = (DictionaryResource) ae.getResourceManager().getResource(
+            dictionaryResourceName);
+    System.out.print(new DictionaryStatistics(dict));
+    ae.destroy();
+    System.exit(0);
+  }
+
   public static class ClassNameFinder extends SecurityManager{
     public String getClassName(){
       return getClassContext()[1].getName();
@@ -67,5 +302,12 @@ public class CompileDictionary {
   public static void usage ()
   {
     System.out.println("USAGE: " + getCurClassName() + ": <pathToDescriptor> <outputFileName> [<resourceName>]");
+    System.out.println("       " + getCurClassName() + ": " + STATS_COMMAND + " <pathToDescriptor> [<resourceName>]");
+    System.out.println("       " + getCurClassName() + ": " + STREAM_COMMAND
+            + " <memoryMegabytes> <pathToDescriptor> <outputFileName> [<resourceName>]");
+    System.out.println("       " + getCurClassName() + ": " + COMPACT_COMMAND
+            + " <compiledDictionary> <outputFileName>");
+    System.out.println("       " + getCurClassName() + ": " + MERGE_COMMAND
+            + " <outputFileName> <compiledDictionary> <compiledDictionary>...");
   }
 }
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.dictionaryCompiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntries;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryProperties;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryPropertiesRoot;
+
+/**
+ * Combines compiled dictionaries into one, from their already tokenized and normalized entries.
+ *
+ * The dictionaries must have been compiled with the same normalization settings. Entries equal in
+ * tokens and property values to an entry of a previously added dictionary, or to another entry of
+ * the same dictionary, are dropped. The entry IDs of each dictionary are shifted past the largest
+ * ID of the dictionaries added before it, so the IDs of the first dictionary are kept. Entries of a
+ * dictionary whose IDs do not identify its entries, e.g. one compiled before IDs were assigned,
+ * have no ID in the merged dictionary. The merged dictionary has the properties of all
+ * dictionaries, in order of first appearance.
+ */
+public class DictionaryMerger {
+
+  private final List<DictionaryResource> dictionaries = new ArrayList<DictionaryResource>();
+
+  private final List<String> propertyNames = new ArrayList<String>();
+
+  /** settings of the added dictionaries, null once one without settings is added */
+  private Properties settings;
+
+  private int duplicates;
+
+  /**
+   * @param dictionary
+   *          a loaded dictionary
+   * @param dictionarySettings
+   *          the settings the dictionary was normalized with, as returned by
+   *          {@link DictionaryResource_impl#getNormalizationSettings()}, or null if unknown
+   * @throws IllegalArgumentException
+   *           if the settings differ from those of a previously added dictionary
+   */
+  public void add(DictionaryResource dictionary, Properties dictionarySettings) {
+    if (dictionaries.isEmpty()) {
+      settings = dictionarySettings;
+    } else if ((settings != null) && (dictionarySettings != null)) {
+      TreeSet<String> names = new TreeSet<String>(settings.stringPropertyNames());
+      names.addAll(dictionarySettings.stringPropertyNames());
+      for (String name : names) {
+        String value = settings.getProperty(name);
+        String other = dictionarySettings.getProperty(name);
+        if ((value == null) ? (other != null) : (!value.equals(other))) {
+          throw new IllegalArgumentException("dictionary " + dictionaries.size()
+                  + " was compiled with different normalization settings: " + name + "=" + other
+                  + " instead of " + value);
+        }
+      }
+    } else {
+      settings = null;
+    }
+    for (String name : dictionary.getEntryPropertiesRoot().propertyNames()) {
+      if (!propertyNames.contains(name)) {
+        propertyNames.add(name);
+      }
+    }
+    dictionaries.add(dictionary);
+  }
+
+  /**
+   * @return the normalization settings shared by the added dictionaries, null if those of some
+   *         are unknown
+   */
+  public Properties getSettings() {
+    return settings;
+  }
+
+  /**
+   * @return the number of entries dropped as duplicates by the last merge
+   */
+  public int getDuplicates() {
+    return duplicates;
+  }
+
+  /**
+   * @return a dictionary holding the distinct entries of all added dictionaries
+   */
+  public DictionaryResource_impl merge() {
+    EntryPropertiesRoot root = new EntryPropertiesRoot(propertyNames.toArray(new String[propertyNames
+            .size()]));
+    DictionaryResource_impl merged = new DictionaryResource_impl();
+    Map<List<String>, EntryProperties> distinct = new HashMap<List<String>, EntryProperties>();
+    duplicates = 0;
+    int idOffset = 0;
+    for (DictionaryResource dictionary : dictionaries) {
+      String[] names = dictionary.getEntryPropertiesRoot().propertyNames();
+      int[] propertyIDs = new int[names.length];
+      for (int i = 0; i < names.length; i++) {
+        propertyIDs[i] = root.getPropertyID(names[i]);
+      }
+      // entry IDs identify entries only if every entry has one of its own; dictionaries compiled
+      // before IDs were assigned, or filled without them, share one ID among all entries
+      boolean uniqueIDs = hasUniqueEntryIDs(dictionary, propertyIDs, root);
+      // merged properties by original properties and, if unique, by original entry ID, null for
+      // dropped entries; an entry is stored under several keys for order independent lookup
+      Map<EntryProperties, EntryProperties> sameProps = new IdentityHashMap<EntryProperties, EntryProperties>();
+      Map<Integer, EntryProperties> renumbered = new HashMap<Integer, EntryProperties>();
+      // merged properties created for entries of this dictionary
+      Map<EntryProperties, Boolean> created = new IdentityHashMap<EntryProperties, Boolean>();
+      // merged properties of other dictionaries duplicated by entries of this dictionary
+      Map<EntryProperties, Boolean> duplicated = new IdentityHashMap<EntryProperties, Boolean>();
+      int maxID = -1;
+      List<String> keys = Collections.list(dictionary.keys());
+      // sorted, so that the same duplicates are dropped on every run
+      Collections.sort(keys);
+      for (String key : keys) {
+        DictEntriesByLength entriesByLength = dictionary.getEntries(key);
+        int longest = entriesByLength.getLongest().intValue();
+        for (int length = entriesByLength.getShortest().intValue(); length <= longest; length++) {
+          DictEntries entries = entriesByLength.getEntries(length);
+          if (entries == null) {
+            continue;
+          }
+          for (DictEntry entry : entries.getEntries()) {
+            EntryProperties props = entry.getProperties();
+            int entryID = props.getEntryID();
+            maxID = Math.max(maxID, entryID);
+            EntryProperties mergedProps;
+            if (sameProps.containsKey(props)) {
+              mergedProps = sameProps.get(props);
+            } else if (uniqueIDs && renumbered.containsKey(Integer.valueOf(entryID))) {
+              mergedProps = renumbered.get(Integer.valueOf(entryID));
+            } else {
+              List<String> identity = identity(entry, propertyIDs, root);
+              mergedProps = distinct.get(identity);
+              if (mergedProps == null) {
+                mergedProps = root.newEntryProperties();
+                mergedProps.setEntryID(uniqueIDs ? idOffset + entryID : -1);
+                for (int i = 0; i < names.length; i++) {
+                  mergedProps.setProperty(propertyIDs[i], props.getProperty(i));
+                }
+                distinct.put(identity, mergedProps);
+                created.put(mergedProps, Boolean.TRUE);
+              } else if (uniqueIDs || (!created.containsKey(mergedProps))) {
+                // without IDs, copies of an entry within its dictionary are indistinguishable from
+                // the entry itself
+                if (uniqueIDs || (duplicated.put(mergedProps, Boolean.TRUE) == null)) {
+                  duplicates++;
+                }
+                mergedProps = null;
+              }
+              if (uniqueIDs) {
+                renumbered.put(Integer.valueOf(entryID), mergedProps);
+              }
+            }
+            sameProps.put(props, mergedProps);
+            if (mergedProps != null) {
+              merged.putEntry(key, entry.getElements(), entry.getUnsorted(), length, mergedProps);
+            }
+          }
+        }
+      }
+      if (uniqueIDs) {
+        idOffset += maxID + 1;
+      }
+    }
+    merged.finishEntries(root);
+    return merged;
+  }
+
+  /**
+   * @return true if every entry of a dictionary has an ID, which no other entry has; an entry
+   *         stored under several keys may be read as several copies with the same ID
+   */
+  private static boolean hasUniqueEntryIDs(DictionaryResource dictionary, int[] propertyIDs,
+          EntryPropertiesRoot root) {
+    Map<Integer, List<String>> entriesByID = new HashMap<Integer, List<String>>();
+    Map<EntryProperties, Boolean> seen = new IdentityHashMap<EntryProperties, Boolean>();
+    Enumeration<String> keys = dictionary.keys();
+    while (keys.hasMoreElements()) {
+      DictEntriesByLength entriesByLength = dictionary.getEntries(keys.nextElement());
+      int longest = entriesByLength.getLongest().intValue();
+      for (int length = entriesByLength.getShortest().intValue(); length <= longest; length++) {
+        DictEntries entries = entriesByLength.getEntries(length);
+        if (entries == null) {
+          continue;
+        }
+        for (DictEntry entry : entries.getEntries()) {
+          EntryProperties props = entry.getProperties();
+          if (seen.put(props, Boolean.TRUE) != null) {
+            continue;
+          }
+          if (props.getEntryID() < 0) {
+            return false;
+          }
+          List<String> identity = identity(entry, propertyIDs, root);
+          List<String> other = entriesByID.put(Integer.valueOf(props.getEntryID()), identity);
+          if ((other != null) && (!other.equals(identity))) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the tokens and property values of an entry, by merged property ID
+   */
+  private static List<String> identity(DictEntry entry, int[] propertyIDs, EntryPropertiesRoot root) {
+    String[] elements = entry.getElements();
+    String[] values = new String[root.propertyNames().length];
+    for (int i = 0; i < propertyIDs.length; i++) {
+      values[propertyIDs[i]] = entry.getProperties().getProperty(i);
+    }
+    List<String> identity = new ArrayList<String>(elements.length + values.length + 2);
+    identity.add(String.valueOf(elements.length));
+    identity.addAll(Arrays.asList(elements));
+    identity.add(entry.getUnsorted());
+    identity.addAll(Arrays.asList(values));
+    return identity;
+  }
+}
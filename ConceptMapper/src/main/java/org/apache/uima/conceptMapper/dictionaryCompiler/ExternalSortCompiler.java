@@ -0,0 +1,436 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.dictionaryCompiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryProperties;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryPropertiesRoot;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryPropertiesTable;
+import org.apache.uima.conceptMapper.support.dictionaryResource.KeyFilter;
+import org.apache.uima.conceptMapper.support.dictionaryResource.SortedDictionaryReader;
+import org.apache.uima.conceptMapper.support.dictionaryResource.SortedDictionaryWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles a dictionary within a memory budget, by external sorting.
+ *
+ * The tokenized entries are buffered until the buffer reaches the memory budget, then sorted by
+ * key and written to a temporary run file. At the end, the runs are merged, several passes deep
+ * if there are many, and the merged entries are written one key at a time by a
+ * {@link SortedDictionaryWriter}, followed by a key filter. Entries of a key keep the order they
+ * were added in, so the compiled dictionary matches the dictionary loaded from XML. The entry
+ * properties side table is written as entries are added, since they arrive in entry ID order.
+ */
+public class ExternalSortCompiler {
+  private static final Logger LOG = LoggerFactory.getLogger(ExternalSortCompiler.class);
+
+  /** most runs merged at once; more runs are first merged into longer runs */
+  private static final int MAX_MERGE_FAN_IN = 64;
+
+  /** estimated heap bytes of a buffered entry besides its strings */
+  private static final int ENTRY_OVERHEAD = 128;
+
+  /** estimated heap bytes of a string besides its characters */
+  private static final int STRING_OVERHEAD = 48;
+
+  private static final int IO_BUFFER_SIZE = 1 << 16;
+
+  private static final Comparator<Record> RECORD_ORDER = new Comparator<Record>() {
+    public int compare(Record left, Record right) {
+      int result = left.key.compareTo(right.key);
+      if (result == 0) {
+        result = (left.sequence < right.sequence) ? -1 : ((left.sequence == right.sequence) ? 0 : 1);
+      }
+      return result;
+    }
+  };
+
+  private final File output;
+
+  private final File tempDir;
+
+  private final long memoryBudget;
+
+  private final double keyFilterFalsePositiveRate;
+
+  private final ArrayList<Record> buffer = new ArrayList<Record>();
+
+  private long bufferBytes;
+
+  private long sequence;
+
+  private final ArrayList<File> runs = new ArrayList<File>();
+
+  private EntryPropertiesRoot entryPropertiesRoot;
+
+  private OutputStream tableOutput;
+
+  private EntryPropertiesTable.TableWriter tableWriter;
+
+  private int lastTableEntryID = -1;
+
+  /**
+   * @param output
+   *          the compiled dictionary file; the entry properties table is written next to it, and
+   *          temporary runs in the same directory
+   * @param memoryBudget
+   *          estimated heap bytes of the entries buffered before a run is written
+   * @param keyFilterFalsePositiveRate
+   *          false positive rate of the key filter, or 0 to write no filter
+   */
+  public ExternalSortCompiler(File output, long memoryBudget, double keyFilterFalsePositiveRate) {
+    if (memoryBudget <= 0) {
+      throw new IllegalArgumentException("memory budget must be positive: " + memoryBudget);
+    }
+    this.output = output;
+    this.tempDir = output.getAbsoluteFile().getParentFile();
+    this.memoryBudget = memoryBudget;
+    this.keyFilterFalsePositiveRate = keyFilterFalsePositiveRate;
+  }
+
+  /**
+   * Add an entry under a key. Entries must be added in entry ID order, an entry stored under
+   * several keys being added once for each, with the same properties.
+   */
+  public synchronized void add(String key, String[] elements, String unsorted, EntryProperties props)
+          throws IOException {
+    if (entryPropertiesRoot == null) {
+      openTable(props.getEntryPropertiesRoot());
+    }
+    if (props.getEntryID() > lastTableEntryID) {
+      tableWriter.write(props);
+      lastTableEntryID = props.getEntryID();
+    }
+    Record record = new Record(key, sequence++, new DictionaryResource_impl.DictEntryImpl(elements,
+            unsorted, props));
+    buffer.add(record);
+    bufferBytes += record.estimateBytes();
+    if (bufferBytes >= memoryBudget) {
+      runs.add(writeRun(sortedBuffer()));
+      buffer.clear();
+      bufferBytes = 0;
+    }
+  }
+
+  /**
+   * Merge the runs and write the compiled dictionary.
+   *
+   * @param root
+   *          the property names of the entries, used if no entry was added
+   * @return number of keys written
+   */
+  public synchronized int finish(EntryPropertiesRoot root) throws IOException {
+    if (entryPropertiesRoot == null) {
+      openTable(root);
+    }
+    tableWriter.flush();
+    tableOutput.close();
+    try {
+      while (runs.size() > MAX_MERGE_FAN_IN) {
+        mergePass();
+      }
+      List<RecordSource> sources = new ArrayList<RecordSource>();
+      for (File run : runs) {
+        sources.add(new RunReader(run, entryPropertiesRoot));
+      }
+      if (!buffer.isEmpty()) {
+        sources.add(new BufferSource(sortedBuffer()));
+      }
+      LOG.info("merging " + sequence + " entries from " + sources.size() + " sorted runs");
+      return writeDictionary(new MergingSource(sources));
+    } finally {
+      buffer.clear();
+      for (File run : runs) {
+        run.delete();
+      }
+      runs.clear();
+    }
+  }
+
+  private void openTable(EntryPropertiesRoot root) throws IOException {
+    entryPropertiesRoot = root;
+    tableOutput = new FileOutputStream(output.getPath() + CompileDictionary.ENTRY_PROPERTIES_TABLE_SUFFIX);
+    tableWriter = new EntryPropertiesTable.TableWriter(tableOutput, root);
+  }
+
+  private List<Record> sortedBuffer() {
+    Collections.sort(buffer, RECORD_ORDER);
+    return buffer;
+  }
+
+  /**
+   * Merge the oldest runs into one, reducing the number of runs by up to
+   * <code>MAX_MERGE_FAN_IN - 1</code>.
+   */
+  private void mergePass() throws IOException {
+    List<File> merged = new ArrayList<File>(runs.subList(0, MAX_MERGE_FAN_IN));
+    List<RecordSource> sources = new ArrayList<RecordSource>();
+    for (File run : merged) {
+      sources.add(new RunReader(run, entryPropertiesRoot));
+    }
+    File run = writeRun(new MergingSource(sources));
+    for (File mergedRun : merged) {
+      mergedRun.delete();
+    }
+    runs.subList(0, MAX_MERGE_FAN_IN).clear();
+    runs.add(run);
+  }
+
+  private File writeRun(List<Record> records) throws IOException {
+    return writeRun(new BufferSource(records));
+  }
+
+  private File writeRun(RecordSource records) throws IOException {
+    File run = File.createTempFile("conceptMapperRun", ".tmp", tempDir);
+    run.deleteOnExit();
+    int numProperties = entryPropertiesRoot.propertyNames().length;
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run),
+            IO_BUFFER_SIZE));
+    try {
+      long count = 0;
+      Record record;
+      while ((record = records.next()) != null) {
+        out.writeBoolean(true);
+        SortedDictionaryWriter.writeString(out, record.key);
+        out.writeLong(record.sequence);
+        SortedDictionaryWriter.writeEntry(out, record.entry, numProperties);
+        count++;
+      }
+      out.writeBoolean(false);
+      LOG.info("wrote sorted run of " + count + " entries");
+    } finally {
+      out.close();
+      records.close();
+    }
+    return run;
+  }
+
+  /**
+   * Write the merged entries grouped by key, then the key filter, built from the keys spooled to
+   * a temporary file while writing.
+   */
+  private int writeDictionary(RecordSource records) throws IOException {
+    File keysFile = File.createTempFile("conceptMapperKeys", ".tmp", tempDir);
+    keysFile.deleteOnExit();
+    SortedDictionaryWriter writer = new SortedDictionaryWriter(new FileOutputStream(output),
+            entryPropertiesRoot);
+    try {
+      DataOutputStream keys = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+              keysFile), IO_BUFFER_SIZE));
+      try {
+        String key = null;
+        List<DictEntry> entries = new ArrayList<DictEntry>();
+        Record record;
+        while ((record = records.next()) != null) {
+          if ((key != null) && (!key.equals(record.key))) {
+            writer.writeKey(key, entries);
+            SortedDictionaryWriter.writeString(keys, key);
+            entries.clear();
+          }
+          key = record.key;
+          entries.add(record.entry);
+        }
+        if (key != null) {
+          writer.writeKey(key, entries);
+          SortedDictionaryWriter.writeString(keys, key);
+        }
+      } finally {
+        keys.close();
+        records.close();
+      }
+
+      KeyFilter keyFilter = null;
+      if (keyFilterFalsePositiveRate > 0.0) {
+        keyFilter = KeyFilter.create(writer.getNumKeys(), keyFilterFalsePositiveRate);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(keysFile),
+                IO_BUFFER_SIZE));
+        try {
+          for (int i = 0; i < writer.getNumKeys(); i++) {
+            keyFilter.add(SortedDictionaryReader.readString(in));
+          }
+        } finally {
+          in.close();
+        }
+      }
+      writer.finish(keyFilter);
+      LOG.info("wrote " + writer.getNumKeys() + " keys to " + output);
+      return writer.getNumKeys();
+    } finally {
+      keysFile.delete();
+    }
+  }
+
+  /**
+   * An entry under a key, with the position it was added at.
+   */
+  private static class Record {
+    final String key;
+
+    final long sequence;
+
+    final DictEntry entry;
+
+    Record(String key, long sequence, DictEntry entry) {
+      this.key = key;
+      this.sequence = sequence;
+      this.entry = entry;
+    }
+
+    long estimateBytes() {
+      long bytes = ENTRY_OVERHEAD + stringBytes(key) + stringBytes(entry.getUnsorted());
+      for (String element : entry.getElements()) {
+        bytes += 8 + stringBytes(element);
+      }
+      EntryProperties props = entry.getProperties();
+      int numProperties = props.getEntryPropertiesRoot().propertyNames().length;
+      for (int i = 0; i < numProperties; i++) {
+        bytes += 8 + stringBytes(props.getProperty(i));
+      }
+      return bytes;
+    }
+
+    private static long stringBytes(String s) {
+      return (s == null) ? 0 : STRING_OVERHEAD + s.length();
+    }
+  }
+
+  /**
+   * Records in sort order.
+   */
+  private interface RecordSource {
+    /**
+     * @return the next record, or null after the last one
+     */
+    Record next() throws IOException;
+
+    void close() throws IOException;
+  }
+
+  private static class BufferSource implements RecordSource {
+    private final List<Record> records;
+
+    private int next;
+
+    BufferSource(List<Record> records) {
+      this.records = records;
+    }
+
+    public Record next() {
+      return (next < records.size()) ? records.get(next++) : null;
+    }
+
+    public void close() {
+    }
+  }
+
+  private static class RunReader implements RecordSource {
+    private final DataInputStream in;
+
+    private final EntryPropertiesRoot root;
+
+    RunReader(File run, EntryPropertiesRoot root) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), IO_BUFFER_SIZE));
+      this.root = root;
+    }
+
+    public Record next() throws IOException {
+      if (!in.readBoolean()) {
+        return null;
+      }
+      String key = SortedDictionaryReader.readString(in);
+      long sequence = in.readLong();
+      return new Record(key, sequence, SortedDictionaryReader.readEntry(in, root));
+    }
+
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * Merges sorted sources, taking the smallest of their next records.
+   */
+  private static class MergingSource implements RecordSource {
+    private final List<RecordSource> sources;
+
+    private final PriorityQueue<Head> heads;
+
+    MergingSource(List<RecordSource> sources) throws IOException {
+      this.sources = sources;
+      heads = new PriorityQueue<Head>(Math.max(1, sources.size()), new Comparator<Head>() {
+        public int compare(Head left, Head right) {
+          return RECORD_ORDER.compare(left.record, right.record);
+        }
+      });
+      for (RecordSource source : sources) {
+        Record record = source.next();
+        if (record != null) {
+          heads.add(new Head(source, record));
+        }
+      }
+    }
+
+    public Record next() throws IOException {
+      Head head = heads.poll();
+      if (head == null) {
+        return null;
+      }
+      Record record = head.record;
+      head.record = head.source.next();
+      if (head.record != null) {
+        heads.add(head);
+      }
+      return record;
+    }
+
+    public void close() throws IOException {
+      for (RecordSource source : sources) {
+        source.close();
+      }
+    }
+  }
+
+  private static class Head {
+    final RecordSource source;
+
+    Record record;
+
+    Head(RecordSource source, Record record) {
+      this.source = source;
+      this.record = record;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.dictionaryCompiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryProperties;
+
+/**
+ * Dictionary resource which passes the entries read from an XML dictionary to an
+ * {@link ExternalSortCompiler} instead of holding them.
+ *
+ * Used by {@link CompileDictionary} in place of {@link DictionaryResource_impl}, so that the
+ * dictionary is tokenized and normalized with the settings of the descriptor, but not kept in
+ * memory. As resources are created by the framework, the compiler is handed over by the
+ * {@link SpoolingResourceManager} of the analysis engine, before the dictionary is loaded.
+ */
+public class SpoolingDictionaryResource extends DictionaryResource_impl {
+
+  private ExternalSortCompiler compiler;
+
+  public SpoolingDictionaryResource() {
+    super(1);
+  }
+
+  /**
+   * @param compiler
+   *          receives the entries of this resource
+   */
+  void setCompiler(ExternalSortCompiler compiler) {
+    this.compiler = compiler;
+  }
+
+  public void putEntry(String key, String[] elements, String unsorted, int length, EntryProperties props) {
+    if (compiler == null) {
+      throw new IllegalStateException("no compiler set for " + getClass().getName());
+    }
+    try {
+      compiler.add(key, elements, unsorted, props);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public void putEntry(String[] keys, String[] elements, String unsorted, int length,
+          EntryProperties props) {
+    for (String key : keys) {
+      putEntry(key, elements, unsorted, length, props);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.dictionaryCompiler;
+
+import java.util.Map;
+
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.impl.ResourceManager_impl;
+import org.apache.uima.resource.metadata.ResourceManagerConfiguration;
+
+/**
+ * Resource manager handing an {@link ExternalSortCompiler} to the
+ * {@link SpoolingDictionaryResource} objects it creates, so that they receive the entries of the
+ * dictionary when the annotator loads it.
+ */
+class SpoolingResourceManager extends ResourceManager_impl {
+
+  private final ExternalSortCompiler compiler;
+
+  /**
+   * @param compiler
+   *          receives the entries of the spooling dictionary resources
+   */
+  SpoolingResourceManager(ExternalSortCompiler compiler) {
+    super();
+    this.compiler = compiler;
+  }
+
+  @Override
+  public synchronized void initializeExternalResources(ResourceManagerConfiguration configuration,
+          String qualifiedContextName, Map<String, Object> additionalParams)
+          throws ResourceInitializationException {
+    super.initializeExternalResources(configuration, qualifiedContextName, additionalParams);
+    for (Object resource : mResourceMap.values()) {
+      if (resource instanceof SpoolingDictionaryResource) {
+        ((SpoolingDictionaryResource) resource).setCompiler(compiler);
+      }
+    }
+  }
+}
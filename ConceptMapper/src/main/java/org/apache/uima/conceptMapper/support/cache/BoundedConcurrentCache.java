@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size bounded cache that can be used from several threads.
+ *
+ * The cache is split into independently locked segments, selected by key hash,
+ * so that threads working on different keys rarely contend. Each segment
+ * evicts its least recently used entries once it is full. The size is limited
+ * either in entries or, with a {@link Weigher}, in the total weight of the
+ * entries, e.g. their estimated size in bytes. Hit, miss and eviction counts
+ * are kept for monitoring.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class BoundedConcurrentCache<K, V> {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    /**
+     * smallest number of entries per segment; small caches use fewer segments
+     * so that uneven key distribution does not cause early evictions
+     */
+    private static final int MIN_SEGMENT_CAPACITY = 64;
+
+    /**
+     * Computes the weight of cache entries, which is accounted against the
+     * maximum weight of the cache.
+     */
+    public interface Weigher<K, V> {
+        /**
+         * @return the weight of an entry, not negative
+         */
+        public int weigh(K key, V value);
+    }
+
+    private final Segment<K, V>[] segments;
+
+    private final int segmentMask;
+
+    private final long maxWeight;
+
+    /** null if each entry weighs 1, i.e. the size is limited in entries */
+    private final Weigher<K, V> weigher;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries
+     *            maximum number of entries held by the cache
+     */
+    public BoundedConcurrentCache(int maxEntries) {
+        this(maxEntries, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * @param maxEntries
+     *            maximum number of entries held by the cache
+     * @param concurrencyLevel
+     *            expected number of threads using the cache concurrently,
+     *            rounded up to a power of two segments, limited so that each
+     *            segment holds at least 64 entries
+     */
+    public BoundedConcurrentCache(int maxEntries, int concurrencyLevel) {
+        this(maxEntries, concurrencyLevel, null);
+    }
+
+    /**
+     * @param maxWeight
+     *            maximum total weight of the entries held by the cache
+     * @param concurrencyLevel
+     *            expected number of threads using the cache concurrently
+     * @param weigher
+     *            computes the weight of each entry, or null to weigh each
+     *            entry as 1
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedConcurrentCache(long maxWeight, int concurrencyLevel, Weigher<K, V> weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("cache size must be positive: " + maxWeight);
+        }
+        int numSegments = 1;
+        while ((numSegments < concurrencyLevel) && ((numSegments << 1) * (long) MIN_SEGMENT_CAPACITY <= maxWeight)) {
+            numSegments <<= 1;
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        segmentMask = numSegments - 1;
+        segments = (Segment<K, V>[]) new Segment<?, ?>[numSegments];
+        long perSegment = (maxWeight + numSegments - 1) / numSegments;
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment<K, V>(perSegment, weigher, evictions);
+        }
+    }
+
+    /**
+     * @return the cached value, or null if the key is not in the cache
+     */
+    public V get(K key) {
+        V value = segmentFor(key).getValue(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        segmentFor(key).putValue(key, value);
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clearAll();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.count();
+        }
+        return size;
+    }
+
+    /**
+     * @return the maximum number of entries, or the maximum weight if there is
+     *         a weigher
+     */
+    public int getMaxEntries() {
+        return (int) Math.min(maxWeight, Integer.MAX_VALUE);
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return the total weight of the entries, their number if there is no
+     *         weigher
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment<K, V> segment : segments) {
+            weight += segment.totalWeight();
+        }
+        return weight;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return fraction of lookups that were hits, 0 if there were none
+     */
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return (total == 0) ? 0.0 : ((double) hitCount / total);
+    }
+
+    public String toString() {
+        return "size=" + size() + ((weigher == null) ? "/" + maxWeight : ", weight=" + getWeight() + "/" + maxWeight)
+                + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount();
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        // spread the high bits, as the low bits of String hashes cluster
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    /**
+     * One independently locked part of the cache: an access ordered map which
+     * drops its eldest entries when it grows beyond its capacity.
+     */
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final long capacity;
+
+        private final Weigher<K, V> weigher;
+
+        private final LongAdder evictions;
+
+        private long weight;
+
+        Segment(long capacity, Weigher<K, V> weigher, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.weigher = weigher;
+            this.evictions = evictions;
+        }
+
+        private int weigh(K key, V value) {
+            return (weigher == null) ? 1 : weigher.weigh(key, value);
+        }
+
+        synchronized V getValue(K key) {
+            return get(key);
+        }
+
+        synchronized void putValue(K key, V value) {
+            V previous = put(key, value);
+            weight += weigh(key, value);
+            if (previous != null) {
+                weight -= weigh(key, previous);
+            }
+            if (weight > capacity) {
+                Iterator<Map.Entry<K, V>> eldest = entrySet().iterator();
+                while ((weight > capacity) && eldest.hasNext()) {
+                    Map.Entry<K, V> entry = eldest.next();
+                    weight -= weigh(entry.getKey(), entry.getValue());
+                    eldest.remove();
+                    evictions.increment();
+                }
+            }
+        }
+
+        synchronized void clearAll() {
+            clear();
+            weight = 0;
+        }
+
+        synchronized int count() {
+            return size();
+        }
+
+        synchronized long totalWeight() {
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+import org.apache.uima.conceptMapper.support.cache.BoundedConcurrentCache;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntries;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+
+/**
+ * A compiled dictionary in a compact binary encoding, which is kept in memory
+ * as is and decoded key by key as keys are looked up.
+ *
+ * All tokens (keys, entry elements and the tokens of unsorted entry texts)
+ * are stored once, in a {@link FrontCodedStrings} vocabulary, and referred to
+ * by their position in it. Each distinct entry is stored once, even if it is
+ * found under several keys (order independent lookup), as variable length
+ * integers: its entry ID, the token IDs of its elements and of its unsorted
+ * text, and for each property the ID of its value in a per property
+ * dictionary of distinct values. Each key refers to its entries by number,
+ * grouped by length.
+ *
+ * Looking up a key decodes its entries into the same structure as that of
+ * other dictionaries; the most recently decoded keys are cached, as document
+ * tokens are highly skewed.
+ */
+public class CompactDictionary {
+
+    /** first bytes of a compact compiled dictionary, "CMCD" */
+    public static final int MAGIC = 0x434d4344;
+
+    public static final int VERSION = 1;
+
+    /** number of keys whose decoded entries are cached */
+    public static final int DECODED_CACHE_SIZE = 8192;
+
+    private final EntryPropertiesRoot entryPropertiesRoot;
+
+    private final FrontCodedStrings tokens;
+
+    /** distinct values of each property */
+    private final FrontCodedStrings[] propertyValues;
+
+    private final byte[] entryData;
+
+    /** offset of each entry in entryData */
+    private final int[] entryOffsets;
+
+    private final byte[] keyData;
+
+    /** token IDs of the keys, ascending */
+    private final int[] keyTokens;
+
+    /** offset in keyData of the entries of each token, -1 for tokens which are no key */
+    private final int[] keyOffsets;
+
+    private final KeyFilter keyFilter;
+
+    private final BoundedConcurrentCache<String, DictEntriesByLength> decoded = new BoundedConcurrentCache<String, DictEntriesByLength>(
+            DECODED_CACHE_SIZE);
+
+    private CompactDictionary(EntryPropertiesRoot entryPropertiesRoot, FrontCodedStrings tokens,
+            FrontCodedStrings[] propertyValues, byte[] entryData, int numEntries, byte[] keyData, int numKeys,
+            KeyFilter keyFilter) {
+        this.entryPropertiesRoot = entryPropertiesRoot;
+        this.tokens = tokens;
+        this.propertyValues = propertyValues;
+        this.entryData = entryData;
+        this.keyData = keyData;
+        this.keyFilter = keyFilter;
+
+        entryOffsets = new int[numEntries];
+        VarIntCursor cursor = new VarIntCursor(entryData, 0);
+        for (int i = 0; i < numEntries; i++) {
+            entryOffsets[i] = cursor.getPosition();
+            cursor.next();
+            skip(cursor, cursor.next());
+            int unsorted = cursor.next();
+            skip(cursor, (unsorted == 0) ? 0 : unsorted - 1);
+            skip(cursor, propertyValues.length);
+        }
+
+        keyTokens = new int[numKeys];
+        keyOffsets = new int[tokens.size()];
+        Arrays.fill(keyOffsets, -1);
+        cursor = new VarIntCursor(keyData, 0);
+        int token = 0;
+        for (int i = 0; i < numKeys; i++) {
+            token += cursor.next();
+            keyTokens[i] = token;
+            keyOffsets[token] = cursor.getPosition();
+            int numLengths = cursor.next();
+            for (int j = 0; j < numLengths; j++) {
+                cursor.next();
+                skip(cursor, cursor.next());
+            }
+        }
+    }
+
+    private static void skip(VarIntCursor cursor, int count) {
+        for (int i = 0; i < count; i++) {
+            cursor.next();
+        }
+    }
+
+    /**
+     * @return the entries of a key, or null if it is no key
+     */
+    public DictEntriesByLength getEntries(String key) {
+        DictEntriesByLength entries = decoded.get(key);
+        if (entries != null) {
+            return entries;
+        }
+        int token = tokens.indexOf(key);
+        if ((token < 0) || (keyOffsets[token] < 0)) {
+            return null;
+        }
+        entries = decodeKey(keyOffsets[token]);
+        decoded.put(key, entries);
+        return entries;
+    }
+
+    private DictEntriesByLength decodeKey(int offset) {
+        DictionaryResource_impl.DictEntriesByLength_impl entries = new DictionaryResource_impl.DictEntriesByLength_impl();
+        VarIntCursor cursor = new VarIntCursor(keyData, offset);
+        int numLengths = cursor.next();
+        for (int i = 0; i < numLengths; i++) {
+            int length = cursor.next();
+            int count = cursor.next();
+            for (int j = 0; j < count; j++) {
+                DictEntry entry = decodeEntry(cursor.next());
+                entries.putEntry(length, entry.getElements(), entry.getUnsorted(), entry.getProperties());
+            }
+        }
+        DictionaryResource_impl.buildPhraseIndexes(entries, DictionaryResource_impl.DEFAULT_PHRASE_INDEX_THRESHOLD);
+        return entries;
+    }
+
+    private DictEntry decodeEntry(int entry) {
+        VarIntCursor cursor = new VarIntCursor(entryData, entryOffsets[entry]);
+        EntryProperties props = entryPropertiesRoot.newEntryProperties();
+        props.setEntryID(cursor.next() - 1);
+        String[] elements = new String[cursor.next()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = tokens.get(cursor.next());
+        }
+        String unsorted = null;
+        int unsortedTokens = cursor.next();
+        if (unsortedTokens > 0) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 1; i < unsortedTokens; i++) {
+                if (i > 1) {
+                    text.append(' ');
+                }
+                text.append(tokens.get(cursor.next()));
+            }
+            unsorted = text.toString();
+        }
+        for (int i = 0; i < propertyValues.length; i++) {
+            int value = cursor.next();
+            if (value > 0) {
+                props.setProperty(i, propertyValues[i].get(value - 1));
+            }
+        }
+        return new DictionaryResource_impl.DictEntryImpl(elements, unsorted, props);
+    }
+
+    /**
+     * @return the keys, in ascending order
+     */
+    public Enumeration<String> keys() {
+        return new Enumeration<String>() {
+            private int next;
+
+            public boolean hasMoreElements() {
+                return next < keyTokens.length;
+            }
+
+            public String nextElement() {
+                if (next >= keyTokens.length) {
+                    throw new NoSuchElementException();
+                }
+                return tokens.get(keyTokens[next++]);
+            }
+        };
+    }
+
+    public int getNumKeys() {
+        return keyTokens.length;
+    }
+
+    public int getNumEntries() {
+        return entryOffsets.length;
+    }
+
+    public EntryPropertiesRoot getEntryPropertiesRoot() {
+        return entryPropertiesRoot;
+    }
+
+    /**
+     * @return filter over the keys, or null if the dictionary was written
+     *         without one
+     */
+    public KeyFilter getKeyFilter() {
+        return keyFilter;
+    }
+
+    /**
+     * @return the cache of decoded keys, e.g. to read its hit rate
+     */
+    public BoundedConcurrentCache<String, DictEntriesByLength> getDecodedCache() {
+        return decoded;
+    }
+
+    /**
+     * @return estimated heap bytes of the encoded dictionary, without the
+     *         cache of decoded keys
+     */
+    public long estimateBytes() {
+        long bytes = tokens.estimateBytes() + 16 + entryData.length + 16 + 4L * entryOffsets.length + 16
+                + keyData.length + 16 + 4L * keyTokens.length + 16 + 4L * keyOffsets.length;
+        for (FrontCodedStrings values : propertyValues) {
+            bytes += values.estimateBytes();
+        }
+        return bytes;
+    }
+
+    public String toString() {
+        return "CompactDictionary(keys=" + getNumKeys() + ", entries=" + getNumEntries() + ", tokens="
+                + tokens.size() + ", bytes=" + estimateBytes() + ", decoded=" + decoded + ")";
+    }
+
+    /**
+     * Read a dictionary written by
+     * {@link #write(DictionaryResource, OutputStream, double)}.
+     *
+     * @param input
+     *            stream positioned at the magic number, not closed
+     */
+    public static CompactDictionary read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a compact compiled dictionary");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported compact compiled dictionary version " + version);
+        }
+        String[] propertyNames = new String[in.readInt()];
+        for (int i = 0; i < propertyNames.length; i++) {
+            propertyNames[i] = SortedDictionaryReader.readString(in);
+        }
+        EntryPropertiesRoot root = new EntryPropertiesRoot(propertyNames);
+        FrontCodedStrings tokens = FrontCodedStrings.read(in);
+        FrontCodedStrings[] propertyValues = new FrontCodedStrings[propertyNames.length];
+        for (int i = 0; i < propertyValues.length; i++) {
+            propertyValues[i] = FrontCodedStrings.read(in);
+        }
+        int numEntries = in.readInt();
+        byte[] entryData = new byte[in.readInt()];
+        in.readFully(entryData);
+        int numKeys = in.readInt();
+        byte[] keyData = new byte[in.readInt()];
+        in.readFully(keyData);
+        KeyFilter keyFilter = in.readBoolean() ? KeyFilter.read(in) : null;
+        return new CompactDictionary(root, tokens, propertyValues, entryData, numEntries, keyData, numKeys,
+                keyFilter);
+    }
+
+    /**
+     * Write a dictionary in the compact encoding.
+     *
+     * @param keyFilterFalsePositiveRate
+     *            false positive rate of the key filter, or 0 to write no filter
+     */
+    public static void write(DictionaryResource dict, OutputStream output, double keyFilterFalsePositiveRate)
+            throws IOException {
+        EntryPropertiesRoot root = dict.getEntryPropertiesRoot();
+        String[] propertyNames = root.propertyNames();
+        ArrayList<String> keys = Collections.list(dict.keys());
+        Collections.sort(keys);
+
+        // collect the tokens, property values and distinct entries
+        TreeSet<String> vocabulary = new TreeSet<String>(keys);
+        List<TreeSet<String>> values = new ArrayList<TreeSet<String>>();
+        for (int i = 0; i < propertyNames.length; i++) {
+            values.add(new TreeSet<String>());
+        }
+        ArrayList<DictEntry> entries = new ArrayList<DictEntry>();
+        // entries stored under several keys are usually one object; copies,
+        // e.g. decoded from a compiled dictionary key by key, are equal
+        IdentityHashMap<DictEntry, Integer> entryIndexes = new IdentityHashMap<DictEntry, Integer>();
+        HashMap<EntryContent, Integer> entryIndexesByContent = new HashMap<EntryContent, Integer>();
+        for (String key : keys) {
+            for (DictEntry entry : entriesOf(dict.getEntries(key))) {
+                if (entryIndexes.containsKey(entry)) {
+                    continue;
+                }
+                EntryContent content = new EntryContent(entry);
+                Integer index = entryIndexesByContent.get(content);
+                if (index == null) {
+                    index = Integer.valueOf(entries.size());
+                    entries.add(entry);
+                    entryIndexesByContent.put(content, index);
+                    vocabulary.addAll(Arrays.asList(entry.getElements()));
+                    if (entry.getUnsorted() != null) {
+                        vocabulary.addAll(Arrays.asList(entry.getUnsorted().split(" ", -1)));
+                    }
+                    for (int i = 0; i < propertyNames.length; i++) {
+                        String value = entry.getProperties().getProperty(i);
+                        if (value != null) {
+                            values.get(i).add(value);
+                        }
+                    }
+                }
+                entryIndexes.put(entry, index);
+            }
+        }
+        FrontCodedStrings tokens = FrontCodedStrings.build(new ArrayList<String>(vocabulary));
+        FrontCodedStrings[] propertyValues = new FrontCodedStrings[propertyNames.length];
+        for (int i = 0; i < propertyNames.length; i++) {
+            propertyValues[i] = FrontCodedStrings.build(new ArrayList<String>(values.get(i)));
+        }
+
+        ByteArrayOutputStream entryData = new ByteArrayOutputStream();
+        for (DictEntry entry : entries) {
+            EntryProperties props = entry.getProperties();
+            VarIntCursor.write(entryData, props.getEntryID() + 1);
+            VarIntCursor.write(entryData, entry.getElements().length);
+            for (String element : entry.getElements()) {
+                VarIntCursor.write(entryData, tokens.indexOf(element));
+            }
+            if (entry.getUnsorted() == null) {
+                VarIntCursor.write(entryData, 0);
+            } else {
+                String[] unsortedTokens = entry.getUnsorted().split(" ", -1);
+                VarIntCursor.write(entryData, unsortedTokens.length + 1);
+                for (String token : unsortedTokens) {
+                    VarIntCursor.write(entryData, tokens.indexOf(token));
+                }
+            }
+            for (int i = 0; i < propertyNames.length; i++) {
+                String value = props.getProperty(i);
+                VarIntCursor.write(entryData, (value == null) ? 0 : propertyValues[i].indexOf(value) + 1);
+            }
+        }
+
+        ByteArrayOutputStream keyData = new ByteArrayOutputStream();
+        KeyFilter keyFilter = (keyFilterFalsePositiveRate > 0.0) ? KeyFilter.create(keys.size(),
+                keyFilterFalsePositiveRate) : null;
+        int previousToken = 0;
+        for (String key : keys) {
+            int token = tokens.indexOf(key);
+            VarIntCursor.write(keyData, token - previousToken);
+            previousToken = token;
+            if (keyFilter != null) {
+                keyFilter.add(key);
+            }
+            DictEntriesByLength entriesByLength = dict.getEntries(key);
+            int shortest = entriesByLength.getShortest().intValue();
+            int longest = entriesByLength.getLongest().intValue();
+            int numLengths = 0;
+            for (int length = shortest; length <= longest; length++) {
+                if (entriesByLength.getEntries(length) != null) {
+                    numLengths++;
+                }
+            }
+            VarIntCursor.write(keyData, numLengths);
+            for (int length = shortest; length <= longest; length++) {
+                DictEntries lengthEntries = entriesByLength.getEntries(length);
+                if (lengthEntries != null) {
+                    VarIntCursor.write(keyData, length);
+                    VarIntCursor.write(keyData, lengthEntries.getEntries().size());
+                    for (DictEntry entry : lengthEntries.getEntries()) {
+                        VarIntCursor.write(keyData, entryIndexes.get(entry).intValue());
+                    }
+                }
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(propertyNames.length);
+        for (String propertyName : propertyNames) {
+            SortedDictionaryWriter.writeString(out, propertyName);
+        }
+        tokens.write(out);
+        for (FrontCodedStrings columnValues : propertyValues) {
+            columnValues.write(out);
+        }
+        out.writeInt(entries.size());
+        out.writeInt(entryData.size());
+        entryData.writeTo(out);
+        out.writeInt(keys.size());
+        out.writeInt(keyData.size());
+        keyData.writeTo(out);
+        out.writeBoolean(keyFilter != null);
+        if (keyFilter != null) {
+            keyFilter.write(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * @return the entries of a key, shortest first
+     */
+    private static List<DictEntry> entriesOf(DictEntriesByLength entriesByLength) {
+        List<DictEntry> entries = new ArrayList<DictEntry>();
+        int longest = entriesByLength.getLongest().intValue();
+        for (int length = entriesByLength.getShortest().intValue(); length <= longest; length++) {
+            DictEntries lengthEntries = entriesByLength.getEntries(length);
+            if (lengthEntries != null) {
+                entries.addAll(lengthEntries.getEntries());
+            }
+        }
+        return entries;
+    }
+
+    private static boolean sameEntry(DictEntry a, DictEntry b) {
+        if ((!Arrays.equals(a.getElements(), b.getElements()))
+                || ((a.getUnsorted() == null) ? (b.getUnsorted() != null) : (!a.getUnsorted().equals(b.getUnsorted())))) {
+            return false;
+        }
+        EntryProperties propsA = a.getProperties();
+        EntryProperties propsB = b.getProperties();
+        if (propsA == propsB) {
+            return true;
+        }
+        if (propsA.getEntryID() != propsB.getEntryID()) {
+            return false;
+        }
+        int numProperties = propsA.getEntryPropertiesRoot().propertyNames().length;
+        for (int i = 0; i < numProperties; i++) {
+            String valueA = propsA.getProperty(i);
+            String valueB = propsB.getProperty(i);
+            if ((valueA == null) ? (valueB != null) : (!valueA.equals(valueB))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The contents of an entry, equal for equal entries, which are written
+     * once.
+     */
+    private static final class EntryContent {
+        private final DictEntry entry;
+
+        private final int hash;
+
+        EntryContent(DictEntry entry) {
+            this.entry = entry;
+            this.hash = (Arrays.hashCode(entry.getElements()) * 31 + entry.getProperties().getEntryID()) * 31
+                    + ((entry.getUnsorted() == null) ? 0 : entry.getUnsorted().hashCode());
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof EntryContent)) {
+                return false;
+            }
+            EntryContent other = (EntryContent) obj;
+            return (hash == other.hash) && sameEntry(entry, other.entry);
+        }
+    }
+}
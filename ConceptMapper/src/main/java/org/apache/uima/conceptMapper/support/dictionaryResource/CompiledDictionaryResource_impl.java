@@ -18,11 +18,15 @@
  */
 package org.apache.uima.conceptMapper.support.dictionaryResource;
 
+import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.util.Enumeration;
 import java.util.Hashtable;
 
+import org.apache.uima.conceptMapper.support.metrics.DictionaryLoadEvent;
 import org.apache.uima.conceptMapper.support.tokens.TokenNormalizer;
 import org.apache.uima.resource.DataResource;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -38,13 +42,23 @@ public class CompiledDictionaryResource_impl implements DictionaryResource, Shar
      */
     protected Hashtable<String, DictEntriesByLength> dictImpl;
     protected EntryPropertiesRoot entryPropertiesRoot;
+    /**
+     * filter over the keys of dictImpl, null for dictionaries compiled
+     * without one
+     */
+    protected KeyFilter keyFilter;
+    /**
+     * set instead of dictImpl for dictionaries compiled in the compact
+     * format, which are decoded key by key as they are looked up
+     */
+    protected CompactDictionary compactDictionary;
 
     public DictionaryResource newDictionaryResource(int initialSize) {
         throw new UnsupportedOperationException();
     }
 
     public DictEntriesByLength getEntries(String key) {
-        return dictImpl.get(key);
+        return (compactDictionary != null) ? compactDictionary.getEntries(key) : dictImpl.get(key);
     }
 
     public boolean isLoaded() {
@@ -52,16 +66,38 @@ public class CompiledDictionaryResource_impl implements DictionaryResource, Shar
     }
 
     public Enumeration<String> keys() {
-        return dictImpl.keys();
+        return (compactDictionary != null) ? compactDictionary.keys() : dictImpl.keys();
+    }
+
+    /**
+     * @return the number of keys of the dictionary
+     */
+    public int getNumKeys() {
+        return (compactDictionary != null) ? compactDictionary.getNumKeys() : dictImpl.size();
+    }
+
+    /**
+     * @return the compact dictionary entries are decoded from, or null if the
+     *         dictionary was compiled in another format
+     */
+    public CompactDictionary getCompactDictionary() {
+        return compactDictionary;
     }
 
-    @SuppressWarnings("unchecked")
     public void load(DataResource data) throws ResourceInitializationException {
+        DictionaryLoadEvent loadEvent = new DictionaryLoadEvent();
+        loadEvent.begin();
         try {
-            ObjectInputStream ois = new ObjectInputStream(data.getInputStream());
-            entryPropertiesRoot = (EntryPropertiesRoot) ois.readObject();
-            dictImpl = (Hashtable) ois.readObject();
-            ois.close();
+            CountingInputStream input = new CountingInputStream(data.getInputStream());
+            read(input);
+            loadEvent.end();
+            if (loadEvent.shouldCommit()) {
+                loadEvent.resource = String.valueOf(data.getUri());
+                loadEvent.compiled = true;
+                loadEvent.bytesRead = input.getCount();
+                loadEvent.keys = getNumKeys();
+                loadEvent.commit();
+            }
         } catch (IOException e) {
             throw new ResourceInitializationException(e);
         } catch (ClassNotFoundException e) {
@@ -69,6 +105,73 @@ public class CompiledDictionaryResource_impl implements DictionaryResource, Shar
         }
     }
 
+    /**
+     * Read a compiled dictionary in any of the formats written by the
+     * dictionary compiler, e.g. to convert or merge compiled dictionaries.
+     *
+     * @param input
+     *            the compiled dictionary, closed when read
+     */
+    @SuppressWarnings("unchecked")
+    public void read(InputStream input) throws IOException, ClassNotFoundException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(4);
+        int magic = 0;
+        int headerLength = 0;
+        int read;
+        while ((headerLength < 4) && ((read = buffered.read()) >= 0)) {
+            magic = (magic << 8) | read;
+            headerLength++;
+        }
+        buffered.reset();
+        if ((headerLength == 4) && (magic == CompactDictionary.MAGIC)) {
+            compactDictionary = CompactDictionary.read(buffered);
+            entryPropertiesRoot = compactDictionary.getEntryPropertiesRoot();
+            keyFilter = compactDictionary.getKeyFilter();
+            dictImpl = null;
+            buffered.close();
+            return;
+        }
+        compactDictionary = null;
+        if ((headerLength == 4) && (magic == SortedDictionaryWriter.MAGIC)) {
+            // written by the streaming dictionary compiler
+            SortedDictionaryReader reader = new SortedDictionaryReader(buffered);
+            entryPropertiesRoot = reader.getEntryPropertiesRoot();
+            dictImpl = reader.readEntries();
+            keyFilter = reader.readKeyFilter();
+            buffered.close();
+        } else {
+            ObjectInputStream ois = new ObjectInputStream(buffered);
+            entryPropertiesRoot = (EntryPropertiesRoot) ois.readObject();
+            dictImpl = (Hashtable) ois.readObject();
+            keyFilter = readKeyFilter(ois);
+            ois.close();
+        }
+        // dictionaries compiled before phrase indexes were introduced
+        DictionaryResource_impl.buildPhraseIndexes(dictImpl, DictionaryResource_impl.DEFAULT_PHRASE_INDEX_THRESHOLD);
+    }
+
+    /**
+     * @return the key filter following the dictionary, or null if the
+     *         dictionary was compiled without one
+     */
+    private static KeyFilter readKeyFilter(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        try {
+            Object filter = ois.readObject();
+            return (filter instanceof KeyFilter) ? (KeyFilter) filter : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return filter over the keys of the dictionary, or null if it was
+     *         compiled without one
+     */
+    public KeyFilter getKeyFilter() {
+        return keyFilter;
+    }
+
     public void loadDictionaryContents(TokenNormalizer tokenNormalizer, String tokenAnnotationName,
             String tokenTextFeatureName, String tokenizerDescriptor, String[] attributeNames,
             boolean orderIndependentLookup, String dictLanguage, boolean dumpDictionary)
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+/**
+ * Receives progress and timing information while a dictionary is loaded.
+ *
+ * All calls are made on the loading thread. The statistics object passed is
+ * updated as loading goes on, so listeners wanting to keep values must copy
+ * them.
+ */
+public interface DictionaryLoadListener {
+
+    /**
+     * Called before the first entry is read.
+     *
+     * @param totalBytes
+     *            size of the dictionary file, or -1 if unknown
+     */
+    public void loadStarted(long totalBytes);
+
+    /**
+     * Called periodically while loading, every
+     * {@link DictionaryLoadStatistics#getProgressInterval()} entries.
+     */
+    public void loadProgress(DictionaryLoadStatistics statistics);
+
+    /**
+     * Called once all entries have been loaded.
+     */
+    public void loadFinished(DictionaryLoadStatistics statistics);
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+/**
+ * Time spent in each stage of loading a dictionary, and loading progress.
+ *
+ * XML parsing time is the time not spent in any other stage, so it includes
+ * reading the dictionary file.
+ */
+public class DictionaryLoadStatistics {
+
+    /** creation of the tokenizer used to tokenize dictionary entries */
+    public static final int STAGE_SETUP = 0;
+
+    /** XML parsing, including reading the dictionary file */
+    public static final int STAGE_PARSE = 1;
+
+    /** conversion of SGML entities in attribute values */
+    public static final int STAGE_ENTITIES = 2;
+
+    /** tokenization of entries by the tokenizer annotator */
+    public static final int STAGE_TOKENIZE = 3;
+
+    /** normalization of entry tokens */
+    public static final int STAGE_NORMALIZE = 4;
+
+    /** storing entries in the dictionary */
+    public static final int STAGE_PUT_ENTRY = 5;
+
+    /** names of the stages, indexed by stage */
+    public static final String[] STAGE_NAMES = { "tokenizer setup", "XML parsing", "entity conversion",
+            "tokenization", "normalization", "putEntry" };
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final long[] stageNanos = new long[STAGE_NAMES.length];
+
+    private final int progressInterval;
+
+    private long startNanos;
+
+    private long endNanos;
+
+    private int entries;
+
+    private long bytesRead;
+
+    private long totalBytes = -1;
+
+    /**
+     * @param progressInterval
+     *            number of entries between progress notifications
+     */
+    public DictionaryLoadStatistics(int progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    void start(long total) {
+        startNanos = System.nanoTime();
+        endNanos = 0;
+        entries = 0;
+        bytesRead = 0;
+        totalBytes = total;
+        for (int i = 0; i < stageNanos.length; i++) {
+            stageNanos[i] = 0;
+        }
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    void addStageNanos(int stage, long nanos) {
+        stageNanos[stage] += nanos;
+    }
+
+    void entryLoaded() {
+        entries++;
+    }
+
+    void setBytesRead(long bytes) {
+        bytesRead = bytes;
+    }
+
+    /** @return number of entries between progress notifications */
+    public int getProgressInterval() {
+        return progressInterval;
+    }
+
+    /** @return number of dictionary entries (variants) loaded so far */
+    public int getEntries() {
+        return entries;
+    }
+
+    /** @return number of bytes of the dictionary file read so far */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /** @return size of the dictionary file, or -1 if unknown */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /** @return time since loading started, or loading time once finished */
+    public long getElapsedNanos() {
+        return ((endNanos != 0) ? endNanos : System.nanoTime()) - startNanos;
+    }
+
+    /**
+     * @param stage
+     *            one of the <code>STAGE_</code> constants
+     * @return time spent in the stage so far
+     */
+    public long getStageNanos(int stage) {
+        if (stage != STAGE_PARSE) {
+            return stageNanos[stage];
+        }
+        long other = 0;
+        for (int i = 0; i < stageNanos.length; i++) {
+            if (i != STAGE_PARSE) {
+                other += stageNanos[i];
+            }
+        }
+        return Math.max(0, getElapsedNanos() - other);
+    }
+
+    /** @return entries loaded per second so far */
+    public double getEntriesPerSecond() {
+        long elapsed = getElapsedNanos();
+        return (elapsed <= 0) ? 0.0 : (entries * 1e9 / elapsed);
+    }
+
+    /**
+     * @return estimated remaining loading time, extrapolated from the part of
+     *         the dictionary file read so far, or -1 if the file size is
+     *         unknown
+     */
+    public long getEtaMillis() {
+        if ((totalBytes <= 0) || (bytesRead <= 0)) {
+            return -1;
+        }
+        if (endNanos != 0) {
+            return 0;
+        }
+        long elapsed = getElapsedNanos() - stageNanos[STAGE_SETUP];
+        return (long) (elapsed * ((double) (totalBytes - bytesRead) / bytesRead)) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return one line progress report
+     */
+    public String progressString() {
+        StringBuilder result = new StringBuilder();
+        result.append("processed ").append(entries).append(" entries, ")
+                .append(String.format("%.0f", getEntriesPerSecond())).append(" entries/s");
+        if (totalBytes > 0) {
+            result.append(", ").append(String.format("%.1f", 100.0 * bytesRead / totalBytes)).append("% read");
+            long eta = getEtaMillis();
+            if (eta >= 0) {
+                result.append(", ETA ").append(eta / 1000).append(" s");
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return summary of the time spent in each stage
+     */
+    public String toString() {
+        long elapsed = getElapsedNanos();
+        StringBuilder result = new StringBuilder();
+        result.append("loaded ").append(entries).append(" entries in ").append(elapsed / NANOS_PER_MILLI)
+                .append(" ms (").append(String.format("%.0f", getEntriesPerSecond())).append(" entries/s)");
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            long nanos = getStageNanos(i);
+            result.append("; ").append(STAGE_NAMES[i]).append(": ").append(nanos / NANOS_PER_MILLI).append(" ms (")
+                    .append(String.format("%.1f", (elapsed <= 0) ? 0.0 : (100.0 * nanos / elapsed))).append("%)");
+        }
+        return result.toString();
+    }
+}
@@ -63,6 +63,14 @@ public interface DictionaryResource {
      */
     ArrayList<DictEntry> getEntries();
 
+    /**
+     * @param elements
+     *          the (normalized, and if applicable sorted) tokens of a phrase
+     * @return the entries which may have exactly these elements, in list order: all entries, or
+     *         only those with the same phrase hash if the entries are indexed
+     */
+    ArrayList<DictEntry> getCandidates(String[] elements);
+
     public String toString();
   }
 
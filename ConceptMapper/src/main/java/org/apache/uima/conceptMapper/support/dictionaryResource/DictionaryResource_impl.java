@@ -18,23 +18,36 @@
  */
 package org.apache.uima.conceptMapper.support.dictionaryResource;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
 
 import org.apache.uima.conceptMapper.support.dictionaryResource.annotatorAdaptor.AnnotatorAdaptor;
+import org.apache.uima.conceptMapper.support.metrics.DictionaryLoadEvent;
+import org.apache.uima.conceptMapper.support.metrics.DictionaryVariantEvent;
 import org.apache.uima.conceptMapper.support.tokens.TokenNormalizer;
 import org.apache.uima.resource.DataResource;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -85,11 +98,23 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
 
     protected EntryPropertiesRoot entryPropertiesRoot;
 
+    /**
+     * Default minimum number of entries of the same length under a key for
+     * which a phrase index is built
+     */
+    public static final int DEFAULT_PHRASE_INDEX_THRESHOLD = 64;
+
     /** Initial size of <code>dict</code> */
     protected static final int NumOfInitialDictEntries = 500000;
 
     boolean loaded;
 
+    /**
+     * merged dictionaries by their first dictionary, shared by all annotators
+     * merging the same dictionaries
+     */
+    private static final Map<DictionaryResource, List<SharedMerge>> sharedMerges = new WeakHashMap<DictionaryResource, List<SharedMerge>>();
+
     /** Patterns to for matcher to replace SGML &amp;lt; entities */
     private static final Pattern ltPattern = Pattern.compile("&lt;");
 
@@ -114,8 +139,38 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
 
     private boolean dumpDict = false;
 
+    /** Next entry ID to be assigned, i.e. the number of entries loaded so far */
     public int entryNum = 0;
 
+    /** Default number of entries between load progress notifications */
+    public static final int DEFAULT_PROGRESS_INTERVAL = 10000;
+
+    /** Listeners notified of load progress, in addition to the log */
+    private final List<DictionaryLoadListener> loadListeners = new CopyOnWriteArrayList<DictionaryLoadListener>();
+
+    private int progressInterval = DEFAULT_PROGRESS_INTERVAL;
+
+    /** Timings of the last call to loadDictionaryContents */
+    private DictionaryLoadStatistics loadStatistics;
+
+    /** Name of the normalization setting describing the token normalizer */
+    public static final String SETTING_NORMALIZATION = "normalization";
+
+    /** Name of the normalization setting for order independent lookup */
+    public static final String SETTING_ORDER_INDEPENDENT_LOOKUP = "orderIndependentLookup";
+
+    /** Name of the normalization setting for the dictionary language */
+    public static final String SETTING_LANGUAGE = "language";
+
+    /** Name of the normalization setting for the tokenizer descriptor file name */
+    public static final String SETTING_TOKENIZER = "tokenizer";
+
+    /**
+     * Settings the keys and entries were normalized with by the last call to
+     * loadDictionaryContents, null if none was done
+     */
+    private Properties normalizationSettings;
+
     /**
      * 
      */
@@ -172,6 +227,109 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
         entry.putEntry(length, elements, unsorted, props);
     }
 
+    /**
+     * Create a new dictionary entry under several keys, e.g. each of its
+     * tokens for order independent lookup. All keys share a single entry
+     * object.
+     * 
+     * @param keys
+     *            the keys to index on
+     * @see #putEntry(String, String[], String, int, EntryProperties)
+     */
+    public void putEntry(String[] keys, String[] elements, String unsorted, int length, EntryProperties props) {
+        DictEntry entry = new DictEntryImpl(elements, unsorted, props);
+        for (String key : keys) {
+            putSharedEntry(key, entry, length);
+        }
+    }
+
+    /**
+     * Add an existing entry object under a key.
+     */
+    void putSharedEntry(String key, DictEntry entry, int length) {
+        DictEntriesByLength entriesByLength = getEntries(key);
+        if (entriesByLength == null) {
+            entriesByLength = new DictEntriesByLength_impl();
+            dictImpl.put(key, entriesByLength);
+        }
+        ((DictEntriesByLength_impl) entriesByLength).putEntry(length, entry);
+    }
+
+    /**
+     * Register a listener to be notified of the progress of subsequent calls
+     * to loadDictionaryContents. Progress and a summary are always logged.
+     */
+    public void addLoadListener(DictionaryLoadListener listener) {
+        loadListeners.add(listener);
+    }
+
+    public void removeLoadListener(DictionaryLoadListener listener) {
+        loadListeners.remove(listener);
+    }
+
+    /**
+     * @param progressInterval
+     *            number of entries between load progress notifications
+     */
+    public void setProgressInterval(int progressInterval) {
+        if (progressInterval <= 0) {
+            throw new IllegalArgumentException("progress interval must be positive: " + progressInterval);
+        }
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * @return timings of the last dictionary load, or null if none was done
+     */
+    public DictionaryLoadStatistics getLoadStatistics() {
+        return loadStatistics;
+    }
+
+    /**
+     * @return the settings the dictionary was normalized with, which must be
+     *         equal for compiled dictionaries to be merged, or null if it was
+     *         not loaded
+     */
+    public Properties getNormalizationSettings() {
+        return normalizationSettings;
+    }
+
+    private static Properties normalizationSettings(TokenNormalizer tokenNormalizer, String tokenizerDescriptor,
+            boolean orderIndependentLookup, String dictLanguage) {
+        Properties settings = new Properties();
+        settings.setProperty(SETTING_NORMALIZATION, tokenNormalizer.getDescription());
+        settings.setProperty(SETTING_ORDER_INDEPENDENT_LOOKUP, String.valueOf(orderIndependentLookup));
+        settings.setProperty(SETTING_LANGUAGE, String.valueOf(dictLanguage));
+        settings.setProperty(SETTING_TOKENIZER,
+                (tokenizerDescriptor == null) ? "" : new File(tokenizerDescriptor).getName());
+        return settings;
+    }
+
+    /**
+     * Check that an annotator sharing the already loaded dictionary would have
+     * loaded it the same way.
+     */
+    private void checkSharedSettings(Properties settings, String[] attributeNames)
+            throws ResourceInitializationException {
+        if (normalizationSettings == null) {
+            // filled by a merge or a compiled dictionary, nothing to compare
+            return;
+        }
+        if (!normalizationSettings.equals(settings)) {
+            throw new ResourceInitializationException(new IllegalStateException(
+                    "dictionary already loaded with normalization settings " + normalizationSettings
+                            + ", cannot share it with an annotator using " + settings));
+        }
+        // the root keeps its property names sorted
+        String[] sortedNames = attributeNames.clone();
+        Arrays.sort(sortedNames);
+        if (!Arrays.equals(entryPropertiesRoot.propertyNames(), sortedNames)) {
+            throw new ResourceInitializationException(new IllegalStateException(
+                    "dictionary already loaded with attributes " + Arrays.toString(entryPropertiesRoot.propertyNames())
+                            + ", cannot share it with an annotator using " + Arrays.toString(attributeNames)));
+        }
+    }
+
     public void load(DataResource data) throws ResourceInitializationException {
         try {
             dictLoader = new DictLoader(this, data);
@@ -190,32 +348,66 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
         }
     }
 
-    public void loadDictionaryContents(TokenNormalizer tokenNormalizer, String tokenAnnotationName,
+    /**
+     * Load the dictionary, unless it has been loaded before: a resource shared
+     * by several annotators, e.g. the engines of a multithreaded batch run, is
+     * loaded by the first one initialized. Later annotators must use the same
+     * normalization settings and attributes, or the dictionary would not match
+     * their tokens.
+     */
+    public synchronized void loadDictionaryContents(TokenNormalizer tokenNormalizer, String tokenAnnotationName,
             String tokenTextFeatureName, String tokenizerDescriptor, String attributeNames[],
             boolean orderIndependentLookup, String dictLanguage, boolean dumpDictionary)
             throws ResourceInitializationException {
+        if (loaded) {
+            checkSharedSettings(
+                    normalizationSettings(tokenNormalizer, tokenizerDescriptor, orderIndependentLookup, dictLanguage),
+                    attributeNames);
+            LOG.info("dictionary already loaded, sharing it");
+            return;
+        }
 
         InputStream dictStream = null;
+        DictionaryLoadEvent loadEvent = new DictionaryLoadEvent();
+        loadEvent.begin();
         try {
             sortElements = orderIndependentLookup;
             LOG.info("order independent lookup: " + sortElements);
 
             dumpDict = dumpDictionary;
+            entryNum = 0;
 
             // open input stream to data
-            dictStream = dictLoader.getInputStream();
+            CountingInputStream countingStream = new CountingInputStream(dictLoader.getInputStream());
+            dictStream = countingStream;
+            loadStatistics = new DictionaryLoadStatistics(progressInterval);
+            List<DictionaryLoadListener> listeners = new ArrayList<DictionaryLoadListener>();
+            listeners.add(new LoggingDictionaryLoadListener());
+            listeners.addAll(loadListeners);
             LOG.info("dict processing language: " + dictLanguage);
             String[] entryPropertyNames = attributeNames;
             LOG.info("dictionary attributes: " + entryPropertyNames);
 
             entryPropertiesRoot = new EntryPropertiesRoot(entryPropertyNames);
+            normalizationSettings = normalizationSettings(tokenNormalizer, tokenizerDescriptor, orderIndependentLookup,
+                    dictLanguage);
             LOG.info("Loading Dictionary...");
 
-            dictLoader.setDictionary(dictStream, NumOfInitialDictEntries, tokenAnnotationName, tokenTextFeatureName,
-                    tokenizerDescriptor, tokenNormalizer, dictLanguage, entryPropertiesRoot);
+            dictLoader.setDictionary(countingStream, NumOfInitialDictEntries, tokenAnnotationName, tokenTextFeatureName,
+                    tokenizerDescriptor, tokenNormalizer, dictLanguage, entryPropertiesRoot, loadStatistics, listeners);
             LOG.info("...done");
 
+            buildPhraseIndexes(dictImpl, DEFAULT_PHRASE_INDEX_THRESHOLD);
             setLoaded(true);
+            loadEvent.end();
+            if (loadEvent.shouldCommit()) {
+                loadEvent.resource = String.valueOf(dictLoader.dataResource.getUri());
+                loadEvent.compiled = false;
+                loadEvent.bytesRead = countingStream.getCount();
+                loadEvent.entries = loadStatistics.getEntries();
+                loadEvent.keys = dictImpl.size();
+                loadEvent.commit();
+            }
             if (dumpDict) {
                 System.err.println(toString());
             }
@@ -248,9 +440,25 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
         this.loaded = loaded;
     }
 
-    private static class DictEntriesByLength_impl implements DictEntriesByLength {
+    static class DictEntriesByLength_impl implements DictEntriesByLength {
         private static final long serialVersionUID = -8150386021246495622L;
 
+        /**
+         * Serialized form: the entries by length and the shortest length.
+         * Dictionaries compiled by earlier versions instead hold a TreeMap in
+         * <code>entries</code>, which is converted when read.
+         */
+        private static final ObjectStreamField[] serialPersistentFields = {
+                new ObjectStreamField("byLength", DictEntries[].class),
+                new ObjectStreamField("shortest", Integer.TYPE),
+                new ObjectStreamField("entries", TreeMap.class) };
+
+        private static final DictEntries[] NO_ENTRIES = new DictEntries[0];
+
+        /**
+         * Ordering of the TreeMap of dictionaries compiled by earlier versions,
+         * needed to read them.
+         */
         private static class ReverseOrderIntegerComparator implements Comparator<Integer>, Serializable {
             private static final long serialVersionUID = -805437355806223406L;
 
@@ -261,32 +469,93 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
 
         }
 
-        TreeMap<Integer, DictEntries> entries;
+        /** entries indexed by length minus the shortest length, null for lengths without entries */
+        private DictEntries[] byLength;
+
+        private int shortest;
 
         public DictEntriesByLength_impl() {
             super();
-            entries = new TreeMap<Integer, DictEntries>(new ReverseOrderIntegerComparator());
+            byLength = NO_ENTRIES;
         }
 
         public DictEntries getEntries(int length) {
-            return entries.get(Integer.valueOf(length));
+            int index = length - shortest;
+            return ((index >= 0) && (index < byLength.length)) ? byLength[index] : null;
         }
 
         public void putEntry(int length, String[] elements, String unsorted, EntryProperties props) {
+            entriesFor(length).putEntry(elements, unsorted, props);
+        }
+
+        /**
+         * Add an existing entry object, e.g. one shared with other keys.
+         */
+        void putEntry(int length, DictEntry entry) {
+            entriesFor(length).putEntry(entry);
+        }
+
+        /**
+         * @return the entries of a length, created if there are none yet
+         */
+        private DictEntriesImpl entriesFor(int length) {
             DictEntries entry = getEntries(length);
             if (entry == null) {
                 entry = new DictEntriesImpl();
-                entries.put(Integer.valueOf(length), entry);
+                if (byLength.length == 0) {
+                    byLength = new DictEntries[1];
+                    shortest = length;
+                } else if (length < shortest) {
+                    DictEntries[] grown = new DictEntries[byLength.length + shortest - length];
+                    System.arraycopy(byLength, 0, grown, shortest - length, byLength.length);
+                    byLength = grown;
+                    shortest = length;
+                } else if (length - shortest >= byLength.length) {
+                    byLength = Arrays.copyOf(byLength, length - shortest + 1);
+                }
+                byLength[length - shortest] = entry;
             }
-            entry.putEntry(elements, unsorted, props);
+            return (DictEntriesImpl) entry;
         }
 
         public Integer getLongest() {
-            return entries.firstKey();
+            if (byLength.length == 0) {
+                throw new NoSuchElementException();
+            }
+            return Integer.valueOf(shortest + byLength.length - 1);
         }
 
         public Integer getShortest() {
-            return entries.lastKey();
+            if (byLength.length == 0) {
+                throw new NoSuchElementException();
+            }
+            return Integer.valueOf(shortest);
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("byLength", byLength);
+            fields.put("shortest", shortest);
+            out.writeFields();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            ObjectInputStream.GetField fields = in.readFields();
+            byLength = (DictEntries[]) fields.get("byLength", null);
+            shortest = fields.get("shortest", 0);
+            if (byLength == null) {
+                byLength = NO_ENTRIES;
+                TreeMap<Integer, DictEntries> entries = (TreeMap<Integer, DictEntries>) fields.get("entries", null);
+                if ((entries != null) && (!entries.isEmpty())) {
+                    // reverse ordered: the first key is the longest length
+                    shortest = entries.lastKey().intValue();
+                    byLength = new DictEntries[entries.firstKey().intValue() - shortest + 1];
+                    for (Map.Entry<Integer, DictEntries> entry : entries.entrySet()) {
+                        byLength[entry.getKey().intValue() - shortest] = entry.getValue();
+                    }
+                }
+            }
         }
 
         public String toString() {
@@ -314,6 +583,9 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
     public static class DictEntriesImpl extends ArrayList<DictEntry> implements DictEntries {
         private static final long serialVersionUID = 1L;
 
+        /** index on the complete phrase, only built for large lists */
+        private PhraseIndex phraseIndex;
+
         public DictEntriesImpl() {
         }
 
@@ -326,13 +598,46 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
          *            the properties object for the phrase
          */
         public void putEntry(String[] elements, String unsorted, EntryProperties props) {
-            add(new DictEntryImpl(elements, unsorted, props));
+            putEntry(new DictEntryImpl(elements, unsorted, props));
+        }
+
+        /**
+         * Add an existing entry object, e.g. one shared with other lists.
+         */
+        public void putEntry(DictEntry entry) {
+            add(entry);
+            phraseIndex = null;
         }
 
         public ArrayList<DictEntry> getEntries() {
             return this;
         }
 
+        public ArrayList<DictEntry> getCandidates(String[] elements) {
+            PhraseIndex index = phraseIndex;
+            if ((index == null) || (index.size() != size())) {
+                return this;
+            }
+            return index.getCandidates(this, elements);
+        }
+
+        /**
+         * Build the phrase index, so that phrases can be looked up without
+         * scanning all entries.
+         */
+        public void buildPhraseIndex() {
+            phraseIndex = new PhraseIndex(this);
+        }
+
+        public boolean isIndexed() {
+            return phraseIndex != null;
+        }
+
+        /** @return estimated heap bytes used by the phrase index, 0 if none */
+        public long getPhraseIndexBytes() {
+            return (phraseIndex == null) ? 0 : phraseIndex.estimatedBytes();
+        }
+
         public String toString() {
             StringBuilder result = new StringBuilder("<DictEntries>");
             for (int i = 0; i < size(); i++) {
@@ -496,6 +801,12 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
 
         private Vector<DictionaryToken> result;
 
+        private DictionaryLoadStatistics statistics;
+
+        private List<DictionaryLoadListener> listeners;
+
+        private CountingInputStream dictStream;
+
         /**
          * Create a dictionary loader.
          * 
@@ -546,19 +857,24 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
         public void startElement(String uri, String local, String raw, Attributes attrs) throws SAXException {
 
             DictionaryToken token = null;
+            long time;
 
             if (raw.equals(token_elem)) { // starting new token entry
                 if (attrs != null) {
 
                     props = getPropertiesRoot().newEntryProperties();
                     int attrCount = attrs.getLength();
+                    time = System.nanoTime();
                     for (int i = 0; i < attrCount; i++) {
                         props.setProperty(attrs.getQName(i), convertEntities(attrs.getValue(i)));
                     }
+                    statistics.addStageNanos(DictionaryLoadStatistics.STAGE_ENTITIES, System.nanoTime() - time);
 
                 }
             } else if (raw.equals(variant_elem)) { // variant for current token
                 if (attrs != null) {
+                    DictionaryVariantEvent variantEvent = new DictionaryVariantEvent();
+                    variantEvent.begin();
                     int attrCount = attrs.getLength();
                     ArrayList<String> tokens = new ArrayList<String>();
 
@@ -570,7 +886,13 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
                         if (attrs.getQName(i).equals(key_attribute)) { // key
                                                                        // attribute?
 
-                            adaptor.runCPM(convertEntities(attrs.getValue(i)));
+                            time = System.nanoTime();
+                            String text = convertEntities(attrs.getValue(i));
+                            long converted = System.nanoTime();
+                            statistics.addStageNanos(DictionaryLoadStatistics.STAGE_ENTITIES, converted - time);
+                            adaptor.runCPM(text);
+                            time = System.nanoTime();
+                            statistics.addStageNanos(DictionaryLoadStatistics.STAGE_TOKENIZE, time - converted);
 
                             Iterator<DictionaryToken> tokenIter = result.iterator();
                             token = null;
@@ -590,8 +912,11 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
 
                                 tokens.add(tokenText);
                             }
+                            statistics.addStageNanos(DictionaryLoadStatistics.STAGE_NORMALIZE, System.nanoTime() - time);
                         } else {
+                            time = System.nanoTime();
                             variantProperties.setProperty(attrs.getQName(i), convertEntities(attrs.getValue(i)));
+                            statistics.addStageNanos(DictionaryLoadStatistics.STAGE_ENTITIES, System.nanoTime() - time);
                         }
 
                     }
@@ -605,8 +930,17 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
                         Arrays.sort(elements);
                     }
 
+                    // entry IDs follow document order of the variants, so they
+                    // are stable for a given dictionary file
+                    variantProperties.setEntryID(entryNum++);
+
                     // add to dictionary
-                    if (sortElements) {
+                    time = System.nanoTime();
+                    if (sortElements && (dict instanceof DictionaryResource_impl)) {
+                        // one entry object, stored under each of its tokens
+                        ((DictionaryResource_impl) dict).putEntry(tokens.toArray(new String[tokens.size()]),
+                                elements, unsorted, elements.length, variantProperties);
+                    } else if (sortElements) {
                         for (int i = 0; i < tokens.size(); i++) {
                             dict.putEntry((String) tokens.get(i), elements, unsorted, elements.length,
                                     variantProperties);
@@ -614,9 +948,21 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
                     } else {
                         dict.putEntry((String) tokens.get(0), elements, unsorted, elements.length, variantProperties);
                     }
+                    statistics.addStageNanos(DictionaryLoadStatistics.STAGE_PUT_ENTRY, System.nanoTime() - time);
+                    variantEvent.end();
+                    if (variantEvent.shouldCommit()) {
+                        variantEvent.entryId = variantProperties.getEntryID();
+                        variantEvent.tokens = elements.length;
+                        variantEvent.keys = sortElements ? tokens.size() : 1;
+                        variantEvent.commit();
+                    }
                     term_cnt++;
-                    if ((term_cnt % 10000) == 0) {
-                        LOG.info("processed " + term_cnt + " entries");
+                    statistics.entryLoaded();
+                    if ((term_cnt % statistics.getProgressInterval()) == 0) {
+                        statistics.setBytesRead(dictStream.getCount());
+                        for (DictionaryLoadListener listener : listeners) {
+                            listener.loadProgress(statistics);
+                        }
                     }
                 }
             }
@@ -679,14 +1025,19 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
          * 
          * @param NumOfInitialDictEntries
          *            initial size of hashtable to create
+         * @param statistics
+         *            receives the time spent in each loading stage
+         * @param listeners
+         *            notified of loading progress
          * 
          * @exception java.io.IOException
          *                if dictionary file cannot be loaded or some other
          *                initialization error occurs.
          */
-        public void setDictionary(InputStream dictStream, int initialDictEntries, String tokenAnnotationName,
+        public void setDictionary(CountingInputStream dictStream, int initialDictEntries, String tokenAnnotationName,
                 String tokenTextFeatureName, String tokenizerDescriptor, TokenNormalizer tokenNormalizer, String langID,
-                EntryPropertiesRoot entryPropertiesRoot) throws DictionaryLoaderException {
+                EntryPropertiesRoot entryPropertiesRoot, DictionaryLoadStatistics statistics,
+                List<DictionaryLoadListener> listeners) throws DictionaryLoaderException {
 
             LOG.info("loading dictionary with these settings:");
             LOG.info("token type: " + tokenAnnotationName);
@@ -695,6 +1046,9 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
             LOG.info("normalizer: " + tokenNormalizer);
 
             term_cnt = 0;
+            this.dictStream = dictStream;
+            this.statistics = statistics;
+            this.listeners = listeners;
             setTokenizerDescriptor(tokenizerDescriptor);
             setTokenNormalizer(tokenNormalizer);
             result = new Vector<DictionaryToken>();
@@ -702,10 +1056,17 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
             setEntryPropertiesRoot(entryPropertiesRoot);
 
             LOG.info("Loading dictionary");
+            long totalBytes = getInputSize();
+            for (DictionaryLoadListener listener : listeners) {
+                listener.loadStarted(totalBytes);
+            }
+            statistics.start(totalBytes);
             try {
+                long time = System.nanoTime();
                 adaptor = new AnnotatorAdaptor(getTokenizerDescriptor(), result, tokenAnnotationName,
                         tokenTextFeatureName, langID);
                 adaptor.initCPM();
+                statistics.addStageNanos(DictionaryLoadStatistics.STAGE_SETUP, System.nanoTime() - time);
 
                 parser.parse(new InputSource(dictStream));
             } catch (SAXException e) {
@@ -714,9 +1075,30 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
             } catch (IOException e) {
                 throw new DictionaryLoaderException(e);
             }
+            statistics.setBytesRead(dictStream.getCount());
+            statistics.finish();
+            for (DictionaryLoadListener listener : listeners) {
+                listener.loadFinished(statistics);
+            }
             LOG.info("Finished loading " + term_cnt + " entries");
         }
 
+        /**
+         * @return size of the dictionary file, or -1 if it cannot be
+         *         determined without reading it
+         */
+        private long getInputSize() {
+            URI dataResourceUri = dataResource.getUri();
+            if ((dataResourceUri != null) && "file".equalsIgnoreCase(dataResourceUri.getScheme())) {
+                try {
+                    return new File(dataResourceUri).length();
+                } catch (IllegalArgumentException e) {
+                    // not a hierarchical file URI
+                }
+            }
+            return -1;
+        }
+
         public InputStream getInputStream() throws IOException {
 
             // try loading from classpath first
@@ -734,6 +1116,170 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
 
     }
 
+    /**
+     * Build phrase indexes for all length buckets with at least
+     * <code>threshold</code> entries, so that the cost of looking up a phrase
+     * does not grow with the number of entries sharing its first token and
+     * length.
+     *
+     * @return number of buckets indexed
+     */
+    static int buildPhraseIndexes(Hashtable<String, DictEntriesByLength> dictImpl, int threshold) {
+        int indexed = 0;
+        for (DictEntriesByLength entriesByLength : dictImpl.values()) {
+            indexed += buildPhraseIndexes(entriesByLength, threshold);
+        }
+        return indexed;
+    }
+
+    /**
+     * Same as {@link #buildPhraseIndexes(Hashtable, int)}, for the entries of
+     * a single key.
+     */
+    static int buildPhraseIndexes(DictEntriesByLength entriesByLength, int threshold) {
+        int indexed = 0;
+        int shortest = entriesByLength.getShortest().intValue();
+        for (int length = entriesByLength.getLongest().intValue(); length >= shortest; length--) {
+            DictEntries entries = entriesByLength.getEntries(length);
+            if ((entries instanceof DictEntriesImpl) && (entries.getEntries().size() >= threshold)) {
+                DictEntriesImpl entriesImpl = (DictEntriesImpl) entries;
+                if (!entriesImpl.isIndexed()) {
+                    entriesImpl.buildPhraseIndex();
+                }
+                indexed++;
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Merge the entries of several dictionaries into a single lookup
+     * structure. Entries of the same key and length are kept in dictionary
+     * order, and in their original order within each dictionary.
+     *
+     * @param dictionaries
+     *            the loaded dictionaries to merge
+     * @param dictionaryTags
+     *            receives, for the properties root of every merged entry, the
+     *            index of the dictionary the entry comes from
+     * @return the merged dictionary
+     * @throws IllegalArgumentException
+     *             if entries of the same properties root occur in more than
+     *             one dictionary, e.g. if a dictionary is given twice
+     */
+    public static DictionaryResource_impl merge(DictionaryResource[] dictionaries,
+            Map<EntryPropertiesRoot, Integer> dictionaryTags) {
+        DictionaryResource_impl merged = new DictionaryResource_impl();
+        for (int dictionary = 0; dictionary < dictionaries.length; dictionary++) {
+            Enumeration<String> keys = dictionaries[dictionary].keys();
+            while (keys.hasMoreElements()) {
+                String key = keys.nextElement();
+                DictEntriesByLength entriesByLength = dictionaries[dictionary].getEntries(key);
+                int shortest = entriesByLength.getShortest().intValue();
+                for (int length = entriesByLength.getLongest().intValue(); length >= shortest; length--) {
+                    DictEntries entries = entriesByLength.getEntries(length);
+                    if (entries == null) {
+                        continue;
+                    }
+                    for (DictEntry entry : entries.getEntries()) {
+                        EntryProperties props = entry.getProperties();
+                        Integer tag = dictionaryTags.get(props.getEntryPropertiesRoot());
+                        if (tag == null) {
+                            dictionaryTags.put(props.getEntryPropertiesRoot(), Integer.valueOf(dictionary));
+                        } else if (tag.intValue() != dictionary) {
+                            throw new IllegalArgumentException("dictionaries " + tag + " and " + dictionary
+                                    + " share entries");
+                        }
+                        merged.putSharedEntry(key, entry, length);
+                    }
+                }
+            }
+        }
+        merged.finishEntries(dictionaries[0].getEntryPropertiesRoot());
+        return merged;
+    }
+
+    /**
+     * Same as {@link #merge(DictionaryResource[], Map)}, merging each
+     * combination of dictionaries only once: annotators passing the same
+     * dictionary resources, in the same order, share a single merged
+     * dictionary. It is kept as long as its first dictionary is reachable.
+     */
+    public static DictionaryResource_impl getSharedMerge(DictionaryResource[] dictionaries,
+            Map<EntryPropertiesRoot, Integer> dictionaryTags) {
+        synchronized (sharedMerges) {
+            List<SharedMerge> merges = sharedMerges.get(dictionaries[0]);
+            if (merges == null) {
+                merges = new ArrayList<SharedMerge>();
+                sharedMerges.put(dictionaries[0], merges);
+            }
+            SharedMerge shared = null;
+            for (SharedMerge merge : merges) {
+                if (merge.isMergeOf(dictionaries)) {
+                    shared = merge;
+                    break;
+                }
+            }
+            if (shared == null) {
+                IdentityHashMap<EntryPropertiesRoot, Integer> tags = new IdentityHashMap<EntryPropertiesRoot, Integer>();
+                shared = new SharedMerge(dictionaries, merge(dictionaries, tags), tags);
+                merges.add(shared);
+            }
+            dictionaryTags.putAll(shared.dictionaryTags);
+            return shared.merged;
+        }
+    }
+
+    /**
+     * A merged dictionary, with weak references to the dictionaries it was
+     * merged from, so that it does not keep them from being collected.
+     */
+    private static class SharedMerge {
+        private final List<WeakReference<DictionaryResource>> dictionaries;
+
+        final DictionaryResource_impl merged;
+
+        final Map<EntryPropertiesRoot, Integer> dictionaryTags;
+
+        SharedMerge(DictionaryResource[] dictionaries, DictionaryResource_impl merged,
+                Map<EntryPropertiesRoot, Integer> dictionaryTags) {
+            this.dictionaries = new ArrayList<WeakReference<DictionaryResource>>(dictionaries.length);
+            for (DictionaryResource dictionary : dictionaries) {
+                this.dictionaries.add(new WeakReference<DictionaryResource>(dictionary));
+            }
+            this.merged = merged;
+            this.dictionaryTags = dictionaryTags;
+        }
+
+        /**
+         * @return true if merged from the same dictionary objects, in the same
+         *         order
+         */
+        boolean isMergeOf(DictionaryResource[] others) {
+            if (others.length != dictionaries.size()) {
+                return false;
+            }
+            for (int i = 0; i < others.length; i++) {
+                if (dictionaries.get(i).get() != others[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Finish a dictionary whose entries were added by
+     * {@link #putEntry(String, String[], String, int, EntryProperties)} rather
+     * than loaded: set its properties root, build its phrase indexes and mark
+     * it loaded.
+     */
+    public void finishEntries(EntryPropertiesRoot entryPropertiesRoot) {
+        this.entryPropertiesRoot = entryPropertiesRoot;
+        buildPhraseIndexes(dictImpl, DEFAULT_PHRASE_INDEX_THRESHOLD);
+        setLoaded(true);
+    }
+
     public DictionaryResource newDictionaryResource(int initialDictEntries) {
         return new DictionaryResource_impl(initialDictEntries);
     }
@@ -770,9 +1316,24 @@ public class DictionaryResource_impl implements DictionaryResource, SharedResour
     }
 
     public void serializeEntries(FileOutputStream output) throws IOException {
+        serializeEntries(output, KeyFilter.DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Write the compiled dictionary, followed by a {@link KeyFilter} over its
+     * keys.
+     *
+     * @param keyFilterFalsePositiveRate
+     *            false positive rate of the key filter, or 0 to write no
+     *            filter
+     */
+    public void serializeEntries(FileOutputStream output, double keyFilterFalsePositiveRate) throws IOException {
         ObjectOutputStream oos = new ObjectOutputStream(output);
         oos.writeObject(this.entryPropertiesRoot);
         oos.writeObject(this.dictImpl);
+        if (keyFilterFalsePositiveRate > 0.0) {
+            oos.writeObject(KeyFilter.build(dictImpl.keys(), dictImpl.size(), keyFilterFalsePositiveRate));
+        }
         oos.close();
     }
 
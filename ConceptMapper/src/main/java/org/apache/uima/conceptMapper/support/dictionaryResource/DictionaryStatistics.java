@@ -0,0 +1,383 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntries;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+
+/**
+ * Structure and memory footprint statistics of a loaded dictionary, for
+ * capacity planning and for finding pathological keys.
+ *
+ * Heap sizes are estimates, assuming a 64 bit JVM with compressed object
+ * pointers and compact (Latin-1) strings where possible. Objects shared
+ * between entries, such as the element arrays and properties of entries
+ * stored under several keys, are counted once.
+ */
+public class DictionaryStatistics {
+
+    /** number of largest keys reported */
+    private static final int TOP_KEYS = 10;
+
+    private static final int OBJECT_HEADER = 12;
+
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int REFERENCE = 4;
+
+    /** estimated size of a Hashtable entry: header, hash, key, value, next */
+    private static final int HASHTABLE_ENTRY = align(OBJECT_HEADER + 4 + 3 * REFERENCE);
+
+    private int keyCount;
+
+    /** number of entry objects stored, counting entries stored under several keys repeatedly */
+    private long storedEntries;
+
+    /** number of distinct entries */
+    private long distinctEntries;
+
+    private int maxEntryLength;
+
+    private long totalEntryLength;
+
+    /** number of keys by number of entries under the key, in power of two bins */
+    private final TreeMap<Integer, Integer> bucketSizeHistogram = new TreeMap<Integer, Integer>();
+
+    /** number of entries of each length, in tokens */
+    private final TreeMap<Integer, Long> entryLengthHistogram = new TreeMap<Integer, Long>();
+
+    private int maxBucketSize;
+
+    /** number of length buckets with a phrase index */
+    private int indexedBuckets;
+
+    private final ArrayList<KeyStatistics> largestKeys = new ArrayList<KeyStatistics>();
+
+    /** distinct values by property name */
+    private final TreeMap<String, Integer> distinctPropertyValues = new TreeMap<String, Integer>();
+
+    /** estimated heap bytes by component */
+    private final TreeMap<String, Long> heapBytes = new TreeMap<String, Long>();
+
+    /**
+     * Number of entries stored under a key.
+     */
+    public static class KeyStatistics implements Comparable<KeyStatistics> {
+        private final String key;
+
+        private final int entries;
+
+        private final int lengths;
+
+        KeyStatistics(String key, int entries, int lengths) {
+            this.key = key;
+            this.entries = entries;
+            this.lengths = lengths;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /** @return number of entries stored under the key */
+        public int getEntries() {
+            return entries;
+        }
+
+        /** @return number of distinct entry lengths under the key */
+        public int getLengths() {
+            return lengths;
+        }
+
+        public int compareTo(KeyStatistics other) {
+            return (entries != other.entries) ? Integer.compare(other.entries, entries) : key.compareTo(other.key);
+        }
+
+        public String toString() {
+            return "'" + key + "': " + entries + " entries, " + lengths + " lengths";
+        }
+    }
+
+    /**
+     * Compute the statistics of a loaded dictionary.
+     */
+    public DictionaryStatistics(DictionaryResource dict) {
+        IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+        IdentityHashMap<EntryProperties, Boolean> distinct = new IdentityHashMap<EntryProperties, Boolean>();
+        EntryPropertiesRoot root = dict.getEntryPropertiesRoot();
+        String[] propertyNames = (root == null) ? new String[0] : root.propertyNames();
+        ArrayList<HashSet<String>> propertyValues = new ArrayList<HashSet<String>>();
+        for (int i = 0; i < propertyNames.length; i++) {
+            propertyValues.add(new HashSet<String>());
+        }
+
+        long keyBytes = 0;
+        long lengthIndexBytes = 0;
+        long entryListBytes = 0;
+        long entryBytes = 0;
+        long elementBytes = 0;
+        long propertyBytes = 0;
+        long phraseIndexBytes = 0;
+
+        Enumeration<String> keys = dict.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            keyCount++;
+            keyBytes += stringBytes(key);
+            DictEntriesByLength entriesByLength = dict.getEntries(key);
+            int bucketSize = 0;
+            int lengths = 0;
+            int shortest = entriesByLength.getShortest().intValue();
+            int longest = entriesByLength.getLongest().intValue();
+            // the length index: header, array reference, shortest length, and the array by length
+            lengthIndexBytes += align(OBJECT_HEADER + REFERENCE + 4)
+                    + align(ARRAY_HEADER + (longest - shortest + 1) * REFERENCE);
+            for (int length = longest; length >= shortest; length--) {
+                DictEntries dictEntries = entriesByLength.getEntries(length);
+                if (dictEntries == null) {
+                    continue;
+                }
+                lengths++;
+                ArrayList<DictEntry> entries = dictEntries.getEntries();
+                if (dictEntries instanceof DictionaryResource_impl.DictEntriesImpl) {
+                    DictionaryResource_impl.DictEntriesImpl entriesImpl = (DictionaryResource_impl.DictEntriesImpl) dictEntries;
+                    if (entriesImpl.isIndexed()) {
+                        indexedBuckets++;
+                        phraseIndexBytes += entriesImpl.getPhraseIndexBytes();
+                    }
+                }
+                entryListBytes += align(OBJECT_HEADER + 8 + REFERENCE) + align(ARRAY_HEADER + entries.size() * REFERENCE);
+                bucketSize += entries.size();
+                for (DictEntry entry : entries) {
+                    storedEntries++;
+                    entryBytes += align(OBJECT_HEADER + 3 * REFERENCE);
+                    String[] elements = entry.getElements();
+                    if (seen.put(elements, Boolean.TRUE) == null) {
+                        elementBytes += align(ARRAY_HEADER + elements.length * REFERENCE);
+                        for (String element : elements) {
+                            if (seen.put(element, Boolean.TRUE) == null) {
+                                elementBytes += stringBytes(element);
+                            }
+                        }
+                    }
+                    String unsorted = entry.getUnsorted();
+                    if ((unsorted != null) && (seen.put(unsorted, Boolean.TRUE) == null)) {
+                        elementBytes += stringBytes(unsorted);
+                    }
+                    EntryProperties props = entry.getProperties();
+                    if ((props != null) && (distinct.put(props, Boolean.TRUE) == null)) {
+                        maxEntryLength = Math.max(maxEntryLength, elements.length);
+                        totalEntryLength += elements.length;
+                        Long count = entryLengthHistogram.get(elements.length);
+                        entryLengthHistogram.put(elements.length, (count == null) ? 1L : count + 1);
+                        propertyBytes += align(OBJECT_HEADER + 4 + 2 * REFERENCE)
+                                + align(ARRAY_HEADER + propertyNames.length * REFERENCE);
+                        for (int i = 0; i < propertyNames.length; i++) {
+                            String value = props.getProperty(i);
+                            if (value != null) {
+                                propertyValues.get(i).add(value);
+                                if (seen.put(value, Boolean.TRUE) == null) {
+                                    propertyBytes += stringBytes(value);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            maxBucketSize = Math.max(maxBucketSize, bucketSize);
+            int bin = Integer.highestOneBit(Math.max(bucketSize, 1));
+            Integer keysInBin = bucketSizeHistogram.get(bin);
+            bucketSizeHistogram.put(bin, (keysInBin == null) ? 1 : keysInBin + 1);
+            addLargestKey(new KeyStatistics(key, bucketSize, lengths));
+        }
+        distinctEntries = distinct.size();
+        for (int i = 0; i < propertyNames.length; i++) {
+            distinctPropertyValues.put(propertyNames[i], propertyValues.get(i).size());
+        }
+
+        int tableSize = Integer.highestOneBit(Math.max((int) (keyCount / 0.75f), 1)) << 1;
+        heapBytes.put("key table", (long) align(ARRAY_HEADER + tableSize * REFERENCE) + (long) keyCount
+                * HASHTABLE_ENTRY);
+        heapBytes.put("keys", keyBytes);
+        heapBytes.put("length index", lengthIndexBytes);
+        heapBytes.put("entry lists", entryListBytes);
+        heapBytes.put("entries", entryBytes);
+        heapBytes.put("entry tokens", elementBytes);
+        heapBytes.put("entry properties", propertyBytes);
+        heapBytes.put("phrase indexes", phraseIndexBytes);
+    }
+
+    private void addLargestKey(KeyStatistics keyStatistics) {
+        if ((largestKeys.size() < TOP_KEYS)
+                || (keyStatistics.compareTo(largestKeys.get(largestKeys.size() - 1)) < 0)) {
+            largestKeys.add(keyStatistics);
+            Collections.sort(largestKeys);
+            if (largestKeys.size() > TOP_KEYS) {
+                largestKeys.remove(largestKeys.size() - 1);
+            }
+        }
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    private static long stringBytes(String s) {
+        boolean latin1 = true;
+        for (int i = 0; (i < s.length()) && latin1; i++) {
+            latin1 = s.charAt(i) < 256;
+        }
+        // String object (header, value, hash, coder, hashIsZero) plus its byte array
+        return align(OBJECT_HEADER + REFERENCE + 4 + 2) + align(ARRAY_HEADER + (latin1 ? 1 : 2) * s.length());
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * @return number of entry objects stored, counting entries stored under
+     *         several keys (with order independent lookup) once per key
+     */
+    public long getStoredEntries() {
+        return storedEntries;
+    }
+
+    /**
+     * @return number of distinct dictionary entries (variants)
+     */
+    public long getDistinctEntries() {
+        return distinctEntries;
+    }
+
+    /**
+     * @return number of additional entry objects created by storing entries
+     *         under each of their tokens for order independent lookup
+     */
+    public long getDuplicateEntries() {
+        return storedEntries - distinctEntries;
+    }
+
+    /** @return the length, in tokens, of the longest entry */
+    public int getMaxEntryLength() {
+        return maxEntryLength;
+    }
+
+    /** @return the mean length, in tokens, of the distinct entries */
+    public double getMeanEntryLength() {
+        return (distinctEntries == 0) ? 0.0 : ((double) totalEntryLength / distinctEntries);
+    }
+
+    /** @return number of length buckets with a phrase index */
+    public int getIndexedBuckets() {
+        return indexedBuckets;
+    }
+
+    /** @return number of entries stored under the key with most entries */
+    public int getMaxBucketSize() {
+        return maxBucketSize;
+    }
+
+    /**
+     * @return number of keys by number of entries stored under them: the key
+     *         <i>n</i> (a power of two) counts keys with <i>n</i> to 2<i>n</i>-1
+     *         entries
+     */
+    public Map<Integer, Integer> getBucketSizeHistogram() {
+        return Collections.unmodifiableMap(bucketSizeHistogram);
+    }
+
+    /** @return number of distinct entries by length in tokens */
+    public Map<Integer, Long> getEntryLengthHistogram() {
+        return Collections.unmodifiableMap(entryLengthHistogram);
+    }
+
+    /** @return the keys with the most entries, largest first */
+    public ArrayList<KeyStatistics> getLargestKeys() {
+        return new ArrayList<KeyStatistics>(largestKeys);
+    }
+
+    /** @return number of distinct values of each entry property */
+    public Map<String, Integer> getDistinctPropertyValues() {
+        return Collections.unmodifiableMap(distinctPropertyValues);
+    }
+
+    /** @return estimated heap bytes by component */
+    public Map<String, Long> getHeapBytes() {
+        return Collections.unmodifiableMap(heapBytes);
+    }
+
+    /** @return estimated total heap bytes of the dictionary */
+    public long getTotalHeapBytes() {
+        long total = 0;
+        for (Long bytes : heapBytes.values()) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * @return a human readable report of all statistics
+     */
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append("keys: ").append(keyCount).append('\n');
+        result.append("distinct entries: ").append(distinctEntries).append('\n');
+        result.append("stored entries: ").append(storedEntries).append(" (").append(getDuplicateEntries())
+                .append(" duplicates from order independent lookup)\n");
+        result.append("entry length: max ").append(maxEntryLength).append(", mean ")
+                .append(String.format("%.2f", getMeanEntryLength())).append('\n');
+        result.append("entries by length:\n");
+        for (Map.Entry<Integer, Long> bin : entryLengthHistogram.entrySet()) {
+            result.append("  ").append(bin.getKey()).append(": ").append(bin.getValue()).append('\n');
+        }
+        result.append("keys by number of entries (max ").append(maxBucketSize).append("):\n");
+        for (Map.Entry<Integer, Integer> bin : bucketSizeHistogram.entrySet()) {
+            int low = bin.getKey();
+            result.append("  ").append(low);
+            if (low > 1) {
+                result.append('-').append(2 * low - 1);
+            }
+            result.append(": ").append(bin.getValue()).append('\n');
+        }
+        result.append("length buckets with phrase index: ").append(indexedBuckets).append('\n');
+        result.append("largest keys:\n");
+        for (KeyStatistics key : largestKeys) {
+            result.append("  ").append(key).append('\n');
+        }
+        result.append("distinct property values:\n");
+        for (Map.Entry<String, Integer> property : distinctPropertyValues.entrySet()) {
+            result.append("  ").append(property.getKey()).append(": ").append(property.getValue()).append('\n');
+        }
+        result.append("estimated heap bytes: ").append(getTotalHeapBytes()).append('\n');
+        for (Map.Entry<String, Long> component : heapBytes.entrySet()) {
+            result.append("  ").append(component.getKey()).append(": ").append(component.getValue()).append('\n');
+        }
+        return result.toString();
+    }
+}
@@ -29,11 +29,19 @@ public class DictionaryToken {
 
     public DictionaryToken(AnnotationFS annotation, Feature tokenTextFeature) {
         super();
-        if (tokenTextFeature == null) {
-            this.setText(annotation.getCoveredText());
-        } else {
-            this.setText(annotation.getStringValue(tokenTextFeature));
+        String tokenText = null;
+        if (tokenTextFeature != null) {
+            tokenText = annotation.getStringValue(tokenTextFeature);
         }
+        if (tokenText == null) {
+            tokenText = annotation.getCoveredText();
+        }
+        this.setText(tokenText);
+    }
+
+    public DictionaryToken(String text) {
+        super();
+        this.setText(text);
     }
 
     public String getText() {
@@ -18,6 +18,8 @@
  */
 package org.apache.uima.conceptMapper.support.dictionaryResource;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 public class EntryProperties implements Serializable{
@@ -28,6 +30,11 @@ public class EntryProperties implements Serializable{
     private static final long serialVersionUID = 1L;
 	private String [] properties;
 	private EntryPropertiesRoot entryPropertiesRoot;
+	/**
+	 * stable ID of the dictionary entry (variant) these properties belong to,
+	 * assigned in load order by the dictionary loader; -1 if not assigned
+	 */
+	private int entryID = -1;
 
 	/**
 	 * 
@@ -70,6 +77,49 @@ public class EntryProperties implements Serializable{
 		}
 	}
 
+	/**
+	 * @param propertyID
+	 *            index of the property, as returned by
+	 *            {@link EntryPropertiesRoot#getPropertyID(String)}
+	 * @return the value of the property, or null if not set
+	 */
+	public String getProperty(int propertyID) {
+		return properties[propertyID];
+	}
+
+	public EntryPropertiesRoot getEntryPropertiesRoot() {
+		return entryPropertiesRoot;
+	}
+
+	public int getEntryID() {
+		return entryID;
+	}
+
+	public void setEntryID(int entryID) {
+		this.entryID = entryID;
+	}
+
+	/**
+	 * @param propertyID
+	 *            index of the property, as returned by
+	 *            {@link EntryPropertiesRoot#getPropertyID(String)}
+	 */
+	public void setProperty(int propertyID, String propertyValue) {
+		properties[propertyID] = propertyValue;
+	}
+
+	/**
+	 * Dictionaries compiled before entry IDs were introduced have no
+	 * <code>entryID</code> field, which would be read as 0 for every entry;
+	 * mark their entries as having no ID instead.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		properties = (String[]) fields.get("properties", null);
+		entryPropertiesRoot = (EntryPropertiesRoot) fields.get("entryPropertiesRoot", null);
+		entryID = fields.defaulted("entryID") ? -1 : fields.get("entryID", -1);
+	}
+
 	public void setProperty(String propertyName, String propertyValue) {
 		int propertyID = entryPropertiesRoot.getPropertyID (propertyName);
 		if (propertyID < 0)
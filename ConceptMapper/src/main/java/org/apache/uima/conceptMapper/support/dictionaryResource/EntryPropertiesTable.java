@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.TreeMap;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntries;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+
+/**
+ * Side table mapping dictionary entry IDs to their properties.
+ *
+ * When ConceptMapper is run with only the entry ID written to the resulting
+ * annotations, consumers of the output can use this table to look up the
+ * entry properties on demand. The table is a UTF-8 text file with one line per
+ * entry: the entry ID followed by the property values, separated by tabs, in
+ * the order given by the header line. Tabs, newlines and backslashes inside
+ * values are escaped, and unset values are written as <code>\N</code>.
+ */
+public class EntryPropertiesTable {
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final String HEADER_PREFIX = "#entryID";
+
+    private static final String NULL_VALUE = "\\N";
+
+    private EntryPropertiesRoot entryPropertiesRoot;
+
+    /** properties indexed by entry ID, null where no entry has that ID */
+    private ArrayList<EntryProperties> entries;
+
+    /**
+     * Read a table previously written by
+     * {@link #write(DictionaryResource, OutputStream)}.
+     *
+     * @param input
+     *            stream to read the table from, not closed by this method
+     * @throws IOException
+     *             if the table cannot be read or is malformed
+     */
+    public EntryPropertiesTable(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, ENCODING));
+        String header = reader.readLine();
+        if ((header == null) || (!header.startsWith(HEADER_PREFIX))) {
+            throw new IOException("missing entry properties table header");
+        }
+        String[] headerFields = header.split("\t", -1);
+        String[] propertyNames = new String[headerFields.length - 1];
+        System.arraycopy(headerFields, 1, propertyNames, 0, propertyNames.length);
+        entryPropertiesRoot = new EntryPropertiesRoot(propertyNames);
+        entries = new ArrayList<EntryProperties>();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != headerFields.length) {
+                throw new IOException("malformed entry properties line: " + line);
+            }
+            EntryProperties props = entryPropertiesRoot.newEntryProperties();
+            int entryID;
+            try {
+                entryID = Integer.parseInt(fields[0]);
+            } catch (NumberFormatException e) {
+                throw new IOException("malformed entry ID in entry properties line: " + line);
+            }
+            if (entryID < 0) {
+                throw new IOException("negative entry ID in entry properties line: " + line);
+            }
+            props.setEntryID(entryID);
+            for (int i = 0; i < propertyNames.length; i++) {
+                props.setProperty(propertyNames[i], unescape(fields[i + 1]));
+            }
+            while (entries.size() <= entryID) {
+                entries.add(null);
+            }
+            entries.set(entryID, props);
+        }
+    }
+
+    /**
+     * @param entryID
+     *            the ID of the dictionary entry
+     * @return the properties of the entry, or null if unknown
+     */
+    public EntryProperties getEntryProperties(int entryID) {
+        if ((entryID < 0) || (entryID >= entries.size())) {
+            return null;
+        }
+        return entries.get(entryID);
+    }
+
+    /**
+     * @param entryID
+     *            the ID of the dictionary entry
+     * @param propertyName
+     *            the property to look up
+     * @return the value of the property, or null if the entry or the property
+     *         is unknown
+     */
+    public String getProperty(int entryID, String propertyName) {
+        EntryProperties props = getEntryProperties(entryID);
+        if (props == null) {
+            return null;
+        }
+        return props.getProperty(propertyName);
+    }
+
+    public EntryPropertiesRoot getEntryPropertiesRoot() {
+        return entryPropertiesRoot;
+    }
+
+    /**
+     * Write the properties of every entry in the dictionary, ordered by entry
+     * ID. Entries stored under several keys (order independent lookup) are
+     * written only once.
+     *
+     * @param dict
+     *            the dictionary to write the entries of
+     * @param output
+     *            stream to write the table to, flushed but not closed by this
+     *            method
+     * @throws IOException
+     *             if the entries have no unique IDs, see
+     *             {@link #hasUniqueEntryIDs(DictionaryResource)}
+     */
+    public static void write(DictionaryResource dict, OutputStream output) throws IOException {
+        TreeMap<Integer, EntryProperties> byID = collectEntryProperties(dict);
+        if (byID == null) {
+            throw new IOException("dictionary entries have no unique entry IDs, cannot write their properties table");
+        }
+        TableWriter writer = new TableWriter(output, dict.getEntryPropertiesRoot());
+        for (EntryProperties props : byID.values()) {
+            writer.write(props);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes a table one entry at a time, e.g. while a dictionary is compiled
+     * without holding all its entries in memory.
+     */
+    public static class TableWriter {
+        private final Writer writer;
+
+        private final int numProperties;
+
+        /**
+         * Write the header line.
+         *
+         * @param output
+         *            stream to write the table to, flushed but not closed
+         * @param root
+         *            the property names of the entries
+         */
+        public TableWriter(OutputStream output, EntryPropertiesRoot root) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(output, ENCODING));
+            String[] propertyNames = root.propertyNames();
+            numProperties = propertyNames.length;
+            writer.write(HEADER_PREFIX);
+            for (String propertyName : propertyNames) {
+                writer.write('\t');
+                writer.write(propertyName);
+            }
+            writer.write('\n');
+        }
+
+        /**
+         * Write the line of an entry. Entries should be written ordered by
+         * entry ID, each once.
+         */
+        public void write(EntryProperties props) throws IOException {
+            writer.write(Integer.toString(props.getEntryID()));
+            for (int i = 0; i < numProperties; i++) {
+                writer.write('\t');
+                writer.write(escape(props.getProperty(i)));
+            }
+            writer.write('\n');
+        }
+
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * @return true if every entry of the dictionary has an entry ID which no
+     *         entry with other properties has, so that a table can be written;
+     *         dictionaries compiled before entry IDs were introduced, and
+     *         those merged from them, have none
+     */
+    public static boolean hasUniqueEntryIDs(DictionaryResource dict) {
+        return collectEntryProperties(dict) != null;
+    }
+
+    /**
+     * @return the properties of the entries by entry ID, or null if some entry
+     *         has no ID or shares it with an entry with other properties
+     */
+    private static TreeMap<Integer, EntryProperties> collectEntryProperties(DictionaryResource dict) {
+        TreeMap<Integer, EntryProperties> byID = new TreeMap<Integer, EntryProperties>();
+        Enumeration<String> keys = dict.keys();
+        while (keys.hasMoreElements()) {
+            DictEntriesByLength entriesByLength = dict.getEntries(keys.nextElement());
+            int shortest = entriesByLength.getShortest().intValue();
+            for (int length = entriesByLength.getLongest().intValue(); length >= shortest; length--) {
+                DictEntries dictEntries = entriesByLength.getEntries(length);
+                if (dictEntries != null) {
+                    for (DictEntry entry : dictEntries.getEntries()) {
+                        EntryProperties props = entry.getProperties();
+                        if (props.getEntryID() < 0) {
+                            return null;
+                        }
+                        // an entry stored under several keys may have been
+                        // read as several copies
+                        EntryProperties other = byID.put(Integer.valueOf(props.getEntryID()), props);
+                        if ((other != null) && (other != props) && (!sameProperties(other, props))) {
+                            return null;
+                        }
+                    }
+                }
+            }
+        }
+        return byID;
+    }
+
+    private static boolean sameProperties(EntryProperties props, EntryProperties other) {
+        int numProperties = props.getEntryPropertiesRoot().propertyNames().length;
+        for (int i = 0; i < numProperties; i++) {
+            String value = props.getProperty(i);
+            if ((value == null) ? (other.getProperty(i) != null) : (!value.equals(other.getProperty(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return NULL_VALUE;
+        }
+        StringBuilder result = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = null;
+            switch (c) {
+            case '\t':
+                replacement = "\\t";
+                break;
+            case '\n':
+                replacement = "\\n";
+                break;
+            case '\r':
+                replacement = "\\r";
+                break;
+            case '\\':
+                replacement = "\\\\";
+                break;
+            default:
+                break;
+            }
+            if ((replacement != null) && (result == null)) {
+                result = new StringBuilder(value.length() + 8);
+                result.append(value, 0, i);
+            }
+            if (result != null) {
+                if (replacement != null) {
+                    result.append(replacement);
+                } else {
+                    result.append(c);
+                }
+            }
+        }
+        return (result == null) ? value : result.toString();
+    }
+
+    private static String unescape(String value) {
+        if (value.equals(NULL_VALUE)) {
+            return null;
+        }
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c == '\\') && (i + 1 < value.length())) {
+                i++;
+                switch (value.charAt(i)) {
+                case 't':
+                    result.append('\t');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                default:
+                    result.append(value.charAt(i));
+                    break;
+                }
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A sorted set of strings, front coded: within blocks of 16 strings, each
+ * string is stored as the length of the prefix it shares with the previous
+ * one and the remaining characters. Strings are identified by their position
+ * in sort order. A string is found by a binary search over the first strings
+ * of the blocks, which are kept decoded, and a scan of one block.
+ *
+ * Lengths and characters are stored as variable length integers, so ASCII
+ * text takes one byte per character.
+ */
+public final class FrontCodedStrings {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private final byte[] data;
+
+    private final int size;
+
+    /** offset of each block in data */
+    private final int[] blockOffsets;
+
+    /** first string of each block */
+    private final String[] blockHeads;
+
+    /** length of the longest string */
+    private final int maxLength;
+
+    private FrontCodedStrings(byte[] data, int size) {
+        this.data = data;
+        this.size = size;
+        int numBlocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockOffsets = new int[numBlocks];
+        blockHeads = new String[numBlocks];
+        VarIntCursor cursor = new VarIntCursor(data, 0);
+        char[] buffer = new char[16];
+        int length = 0;
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            if ((i % BLOCK_SIZE) == 0) {
+                blockOffsets[i / BLOCK_SIZE] = cursor.getPosition();
+            }
+            int prefix = cursor.next();
+            int suffix = cursor.next();
+            length = prefix + suffix;
+            if (length > buffer.length) {
+                char[] grown = new char[Math.max(length, buffer.length * 2)];
+                System.arraycopy(buffer, 0, grown, 0, prefix);
+                buffer = grown;
+            }
+            for (int j = prefix; j < length; j++) {
+                buffer[j] = (char) cursor.next();
+            }
+            if ((i % BLOCK_SIZE) == 0) {
+                blockHeads[i / BLOCK_SIZE] = new String(buffer, 0, length);
+            }
+            max = Math.max(max, length);
+        }
+        maxLength = max;
+    }
+
+    /**
+     * @param sorted
+     *            strictly ascending strings
+     */
+    public static FrontCodedStrings build(List<String> sorted) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String previous = null;
+        int i = 0;
+        for (String s : sorted) {
+            if ((previous != null) && (previous.compareTo(s) >= 0)) {
+                throw new IllegalArgumentException("strings not strictly ascending: '" + previous + "', '" + s
+                        + "'");
+            }
+            int prefix = 0;
+            if ((i % BLOCK_SIZE) != 0) {
+                int limit = Math.min(previous.length(), s.length());
+                while ((prefix < limit) && (previous.charAt(prefix) == s.charAt(prefix))) {
+                    prefix++;
+                }
+            }
+            VarIntCursor.write(out, prefix);
+            VarIntCursor.write(out, s.length() - prefix);
+            for (int j = prefix; j < s.length(); j++) {
+                VarIntCursor.write(out, s.charAt(j));
+            }
+            previous = s;
+            i++;
+        }
+        return new FrontCodedStrings(out.toByteArray(), i);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the position of <code>s</code> in sort order, or -1 if it is not
+     *         in the set
+     */
+    public int indexOf(String s) {
+        int low = 0;
+        int high = blockHeads.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = blockHeads[mid].compareTo(s);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid * BLOCK_SIZE;
+            }
+        }
+        // in the block starting before s, if any
+        int block = low - 1;
+        if ((block < 0) || (s.length() > maxLength)) {
+            return -1;
+        }
+        VarIntCursor cursor = new VarIntCursor(data, blockOffsets[block]);
+        skip(cursor);
+        // length of the prefix the current string shares with s
+        String head = blockHeads[block];
+        int matched = commonPrefix(head, s);
+        int end = Math.min((block + 1) * BLOCK_SIZE, size);
+        for (int i = block * BLOCK_SIZE + 1; i < end; i++) {
+            int prefix = cursor.next();
+            int suffix = cursor.next();
+            if (prefix < matched) {
+                // the current string is greater than the previous one at a
+                // position where the previous one matched s
+                return -1;
+            }
+            if (prefix > matched) {
+                // same relation to s as the previous string, which is less
+                skipChars(cursor, suffix);
+                continue;
+            }
+            int length = prefix + suffix;
+            int j = prefix;
+            int cmp = 0;
+            while (j < length) {
+                char c = (char) cursor.next();
+                if (j >= s.length()) {
+                    cmp = 1;
+                    j++;
+                    break;
+                }
+                cmp = c - s.charAt(j);
+                if (cmp != 0) {
+                    j++;
+                    break;
+                }
+                j++;
+            }
+            skipChars(cursor, length - j);
+            if (cmp == 0) {
+                if (length == s.length()) {
+                    return i;
+                }
+                if (length > s.length()) {
+                    return -1;
+                }
+                matched = length;
+            } else if (cmp > 0) {
+                return -1;
+            } else {
+                matched = j - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the string at <code>index</code> in sort order
+     */
+    public String get(int index) {
+        if ((index < 0) || (index >= size)) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        int block = index / BLOCK_SIZE;
+        if ((index % BLOCK_SIZE) == 0) {
+            return blockHeads[block];
+        }
+        String head = blockHeads[block];
+        char[] buffer = new char[maxLength];
+        head.getChars(0, head.length(), buffer, 0);
+        VarIntCursor cursor = new VarIntCursor(data, blockOffsets[block]);
+        skip(cursor);
+        int length = 0;
+        for (int i = block * BLOCK_SIZE + 1; i <= index; i++) {
+            int prefix = cursor.next();
+            length = prefix + cursor.next();
+            for (int j = prefix; j < length; j++) {
+                buffer[j] = (char) cursor.next();
+            }
+        }
+        return new String(buffer, 0, length);
+    }
+
+    private static void skip(VarIntCursor cursor) {
+        cursor.next();
+        skipChars(cursor, cursor.next());
+    }
+
+    private static void skipChars(VarIntCursor cursor, int count) {
+        for (int i = 0; i < count; i++) {
+            cursor.next();
+        }
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int limit = Math.min(a.length(), b.length());
+        int i = 0;
+        while ((i < limit) && (a.charAt(i) == b.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return estimated heap bytes used
+     */
+    public long estimateBytes() {
+        long bytes = 16 + data.length + 16 + 4L * blockOffsets.length + 16 + 4L * blockHeads.length;
+        for (String head : blockHeads) {
+            bytes += 40 + head.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Write the set, as read by {@link #read(DataInput)}.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    public static FrontCodedStrings read(DataInput in) throws IOException {
+        int size = in.readInt();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new FrontCodedStrings(data, size);
+    }
+}
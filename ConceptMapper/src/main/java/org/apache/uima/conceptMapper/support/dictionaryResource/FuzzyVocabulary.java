@@ -0,0 +1,447 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.uima.conceptMapper.support.cache.BoundedConcurrentCache;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntries;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+
+/**
+ * The distinct tokens of the entries of a dictionary, stored in a character
+ * trie, for finding the dictionary tokens closest to a misspelled token.
+ *
+ * A fuzzy lookup runs a Levenshtein automaton for the looked up token over the
+ * trie. The automaton is the nondeterministic one of Wu and Manber, with one
+ * bit vector of pattern positions per number of edits, extended by
+ * transpositions of adjacent characters, so the distance is the optimal string
+ * alignment distance. Its states are advanced by a few bit operations per trie
+ * edge, and subtrees in which no state is active are skipped, so only a small
+ * part of the trie is visited for small edit distances.
+ */
+public class FuzzyVocabulary {
+
+    /** longest token that is looked up fuzzily, limited by the bit vector size */
+    public static final int MAX_FUZZY_LENGTH = 63;
+
+    /** number of lookup results cached by {@link #correct(String, int)} */
+    public static final int CORRECTION_CACHE_SIZE = 65536;
+
+    /** vocabularies built for dictionaries, shared by all annotators using them */
+    private static final Map<DictionaryResource, FuzzyVocabulary> sharedVocabularies = new WeakHashMap<DictionaryResource, FuzzyVocabulary>();
+
+    /** the tokens, sorted */
+    private final String[] words;
+
+    /** number of entries each token occurs in, to rank equally close tokens */
+    private final int[] frequencies;
+
+    /**
+     * character on the edge into each trie node. Node 0 is the root, and the
+     * nodes are numbered breadth first, so the children of a node are
+     * consecutive and sorted by character.
+     */
+    private final char[] labels;
+
+    /**
+     * first child of each node; the children of node n are the nodes from
+     * <code>childStart[n]</code> to <code>childStart[n + 1] - 1</code>
+     */
+    private final int[] childStart;
+
+    /** index of the token ending at each node, or -1 */
+    private final int[] wordAt;
+
+    /**
+     * results of recent lookups, keyed on the maximum number of edits
+     * (as a character) followed by the token
+     */
+    private final BoundedConcurrentCache<String, String> corrections = new BoundedConcurrentCache<String, String>(
+            CORRECTION_CACHE_SIZE);
+
+    /**
+     * @param words
+     *            distinct tokens, sorted
+     * @param frequencies
+     *            number of entries each token occurs in
+     */
+    public FuzzyVocabulary(String[] words, int[] frequencies) {
+        this.words = words;
+        this.frequencies = frequencies;
+        int capacity = 1;
+        for (String word : words) {
+            capacity += word.length();
+        }
+        // build a linked trie first, adding the children of each node in
+        // sort order to its last child
+        char[] linkedLabels = new char[capacity];
+        int[] firstChild = new int[capacity];
+        int[] nextSibling = new int[capacity];
+        int[] lastChild = new int[capacity];
+        int[] linkedWordAt = new int[capacity];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        Arrays.fill(lastChild, -1);
+        Arrays.fill(linkedWordAt, -1);
+        int nodeCount = 1;
+        for (int w = 0; w < words.length; w++) {
+            String word = words[w];
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                int child = lastChild[node];
+                if ((child < 0) || (linkedLabels[child] != c)) {
+                    int created = nodeCount++;
+                    linkedLabels[created] = c;
+                    if (child < 0) {
+                        firstChild[node] = created;
+                    } else {
+                        nextSibling[child] = created;
+                    }
+                    lastChild[node] = created;
+                    child = created;
+                }
+                node = child;
+            }
+            linkedWordAt[node] = w;
+        }
+
+        // renumber breadth first
+        labels = new char[nodeCount];
+        childStart = new int[nodeCount + 1];
+        wordAt = new int[nodeCount];
+        int[] order = lastChild;
+        order[0] = 0;
+        int tail = 1;
+        for (int head = 0; head < nodeCount; head++) {
+            int node = order[head];
+            labels[head] = linkedLabels[node];
+            wordAt[head] = linkedWordAt[node];
+            childStart[head] = tail;
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                order[tail++] = child;
+            }
+        }
+        childStart[nodeCount] = tail;
+    }
+
+    /**
+     * Collect the tokens of all entries of a dictionary.
+     */
+    public static FuzzyVocabulary build(DictionaryResource dict) {
+        HashMap<String, int[]> counts = new HashMap<String, int[]>();
+        IdentityHashMap<DictEntry, Boolean> seen = new IdentityHashMap<DictEntry, Boolean>();
+        Enumeration<String> keys = dict.keys();
+        while (keys.hasMoreElements()) {
+            DictEntriesByLength entriesByLength = dict.getEntries(keys.nextElement());
+            int shortest = entriesByLength.getShortest().intValue();
+            int longest = entriesByLength.getLongest().intValue();
+            for (int length = longest; length >= shortest; length--) {
+                DictEntries dictEntries = entriesByLength.getEntries(length);
+                if (dictEntries == null) {
+                    continue;
+                }
+                ArrayList<DictEntry> entries = dictEntries.getEntries();
+                for (int i = 0; i < entries.size(); i++) {
+                    DictEntry entry = entries.get(i);
+                    if (seen.put(entry, Boolean.TRUE) != null) {
+                        continue;
+                    }
+                    for (String element : entry.getElements()) {
+                        int[] count = counts.get(element);
+                        if (count == null) {
+                            count = new int[1];
+                            counts.put(element, count);
+                        }
+                        count[0]++;
+                    }
+                }
+            }
+        }
+        String[] words = counts.keySet().toArray(new String[counts.size()]);
+        Arrays.sort(words);
+        int[] frequencies = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            frequencies[i] = counts.get(words[i])[0];
+        }
+        return new FuzzyVocabulary(words, frequencies);
+    }
+
+    /**
+     * @return the vocabulary of a dictionary, built on first use and shared
+     *         by all callers passing the same dictionary
+     */
+    public static FuzzyVocabulary getShared(DictionaryResource dict) {
+        synchronized (sharedVocabularies) {
+            FuzzyVocabulary vocabulary = sharedVocabularies.get(dict);
+            if (vocabulary == null) {
+                vocabulary = build(dict);
+                sharedVocabularies.put(dict, vocabulary);
+            }
+            return vocabulary;
+        }
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    public int getNodeCount() {
+        return labels.length;
+    }
+
+    /**
+     * @return true if the token occurs in an entry
+     */
+    public boolean contains(String token) {
+        int node = 0;
+        for (int i = 0; i < token.length(); i++) {
+            node = child(node, token.charAt(i));
+            if (node < 0) {
+                return false;
+            }
+        }
+        return wordAt[node] >= 0;
+    }
+
+    /**
+     * @return the child of a node on the edge with a character, or -1
+     */
+    private int child(int node, char c) {
+        int child = Arrays.binarySearch(labels, childStart[node], childStart[node + 1], c);
+        return (child < 0) ? -1 : child;
+    }
+
+    /**
+     * Find the token closest to <code>token</code>: the one with the fewest
+     * edits (insertions, deletions, substitutions and transpositions of
+     * adjacent characters), among those the one occurring in most entries, and
+     * among those the first in sort order.
+     *
+     * @param maxEdits
+     *            maximum number of edits
+     * @return the closest token, the token itself if it occurs in an entry, or
+     *         null if there is no token within <code>maxEdits</code> or the
+     *         token is longer than {@link #MAX_FUZZY_LENGTH}
+     */
+    public String findClosest(String token, int maxEdits) {
+        if (contains(token)) {
+            return token;
+        }
+        if ((maxEdits <= 0) || (token.length() > MAX_FUZZY_LENGTH)) {
+            return null;
+        }
+        Search search = new Search(token, maxEdits);
+        search.run();
+        return (search.best < 0) ? null : words[search.best];
+    }
+
+    /**
+     * Same as {@link #findClosest(String, int)}, remembering the results of
+     * recent lookups, as the same words not in the dictionary occur in most
+     * documents. May be called from several threads.
+     *
+     * @return the closest token, or the token itself if there is none
+     */
+    public String correct(String token, int maxEdits) {
+        String key = ((char) maxEdits) + token;
+        String result = corrections.get(key);
+        if (result == null) {
+            result = findClosest(token, maxEdits);
+            if (result == null) {
+                result = token;
+            }
+            corrections.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the correction cache, e.g. to read its hit and miss counts
+     */
+    public BoundedConcurrentCache<String, String> getCorrectionCache() {
+        return corrections;
+    }
+
+    /**
+     * State of a fuzzy lookup: the automaton of the looked up token, and the
+     * best token found so far.
+     */
+    private class Search {
+        private final int maxEdits;
+
+        /** distinct characters of the token, sorted, and their position masks */
+        private final char[] chars;
+
+        private final long[] charMasks;
+
+        private final long validMask;
+
+        private final long acceptBit;
+
+        /** state vectors by depth in the trie and number of edits */
+        private final long[][] states;
+
+        /** position masks of the characters on the path to each depth */
+        private final long[] pathMasks;
+
+        int best = -1;
+
+        int bestDistance;
+
+        Search(String token, int maxEdits) {
+            this.maxEdits = maxEdits;
+            int length = token.length();
+            char[] sorted = token.toCharArray();
+            Arrays.sort(sorted);
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                if ((count == 0) || (sorted[count - 1] != sorted[i])) {
+                    sorted[count++] = sorted[i];
+                }
+            }
+            chars = Arrays.copyOf(sorted, count);
+            charMasks = new long[count];
+            for (int i = 0; i < length; i++) {
+                // bit i + 1: the token's character i is c
+                charMasks[Arrays.binarySearch(chars, token.charAt(i))] |= 1L << (i + 1);
+            }
+            validMask = (length == 63) ? -1L : (1L << (length + 1)) - 1;
+            acceptBit = 1L << length;
+            states = new long[length + maxEdits + 2][maxEdits + 1];
+            pathMasks = new long[length + maxEdits + 2];
+            // before reading any character, d edits can delete the first d characters
+            for (int d = 0; d <= maxEdits; d++) {
+                states[0][d] = ((d + 1 >= 64) ? -1L : (1L << (d + 1)) - 1) & validMask;
+            }
+            bestDistance = maxEdits + 1;
+        }
+
+        void run() {
+            // an empty token ends at the root, reached by deleting all
+            // characters of the looked up token
+            acceptNode(0, states[0]);
+            visit(0, 0);
+        }
+
+        /**
+         * Advance the automaton over the children of a node at a depth.
+         */
+        private void visit(int node, int depth) {
+            int first = childStart[node];
+            int end = childStart[node + 1];
+            if ((first == end) || (depth + 1 >= states.length)) {
+                return;
+            }
+            // characters not occurring in the token all lead to the same
+            // states; if there are none, only the children on the token's
+            // characters need to be visited
+            if (advance(depth, 0L) != 0L) {
+                for (int child = first; child < end; child++) {
+                    visitChild(child, depth, maskOf(labels[child]));
+                }
+            } else {
+                for (int i = 0; i < chars.length; i++) {
+                    int child = Arrays.binarySearch(labels, first, end, chars[i]);
+                    if (child >= 0) {
+                        first = child + 1;
+                        visitChild(child, depth, charMasks[i]);
+                    }
+                }
+            }
+        }
+
+        private void visitChild(int child, int depth, long mask) {
+            if (advance(depth, mask) == 0L) {
+                return;
+            }
+            acceptNode(child, states[depth + 1]);
+            pathMasks[depth + 1] = mask;
+            visit(child, depth + 1);
+        }
+
+        /**
+         * Accept the token ending at a node, if any, with the fewest edits in
+         * whose state the whole looked up token has been read.
+         */
+        private void acceptNode(int node, long[] state) {
+            int word = wordAt[node];
+            if (word >= 0) {
+                for (int d = 0; d <= Math.min(bestDistance, maxEdits); d++) {
+                    if ((state[d] & acceptBit) != 0) {
+                        accept(word, d);
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compute the states after reading a character at a depth, up to the
+         * best distance found so far, as tokens below are only of interest if
+         * they are as close.
+         *
+         * @param mask
+         *            positions of the character in the token
+         * @return the union of the states
+         */
+        private long advance(int depth, long mask) {
+            long[] current = states[depth];
+            long[] next = states[depth + 1];
+            int limit = Math.min(bestDistance, maxEdits);
+            long active = 0L;
+            for (int d = 0; d <= limit; d++) {
+                long state = (current[d] << 1) & mask;
+                if (d > 0) {
+                    // insertion, substitution, deletion
+                    state |= current[d - 1] | (current[d - 1] << 1) | (next[d - 1] << 1);
+                    if (depth > 0) {
+                        // transposition of this and the previous character
+                        state |= (states[depth - 1][d - 1] << 2) & pathMasks[depth] & (mask << 1);
+                    }
+                }
+                state &= validMask;
+                next[d] = state;
+                active |= state;
+            }
+            return active;
+        }
+
+        private long maskOf(char c) {
+            int i = Arrays.binarySearch(chars, c);
+            return (i < 0) ? 0L : charMasks[i];
+        }
+
+        private void accept(int word, int distance) {
+            if ((distance < bestDistance) || (frequencies[word] > frequencies[best])) {
+                // equally close tokens are visited in sort order
+                best = word;
+                bestDistance = distance;
+            }
+        }
+    }
+}
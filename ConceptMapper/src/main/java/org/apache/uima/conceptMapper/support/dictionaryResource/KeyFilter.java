@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Enumeration;
+
+/**
+ * Bloom filter over the keys (first tokens) of a dictionary, so that tokens
+ * which are no key can be rejected without probing the dictionary.
+ *
+ * Most tokens of a document are no dictionary key, so with dictionaries
+ * where a lookup is more expensive than hashing the token, checking the
+ * filter first saves most of the lookups. The filter never rejects a key;
+ * other tokens pass with the false positive rate the filter was built for.
+ * Each token is hashed once, the bit positions are derived from the two
+ * halves of the 64 bit hash.
+ */
+public final class KeyFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** default false positive rate of filters built for compiled dictionaries */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final int MAX_HASHES = 30;
+
+    private final long[] bits;
+
+    private final long numBits;
+
+    private final int numHashes;
+
+    private final int numKeys;
+
+    private KeyFilter(int numKeys, double falsePositiveRate) {
+        if ((falsePositiveRate <= 0.0) || (falsePositiveRate >= 1.0)) {
+            throw new IllegalArgumentException("false positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        int n = Math.max(numKeys, 1);
+        double ln2 = Math.log(2.0);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        // bit positions are reduced from 32 bit hashes
+        m = Math.min(Math.max(m, 64), 1L << 32);
+        this.bits = new long[(int) ((m + 63) >>> 6)];
+        this.numBits = bits.length * 64L;
+        this.numHashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) numBits / n * ln2)));
+        this.numKeys = numKeys;
+    }
+
+    private KeyFilter(long[] bits, int numHashes, int numKeys) {
+        this.bits = bits;
+        this.numBits = bits.length * 64L;
+        this.numHashes = numHashes;
+        this.numKeys = numKeys;
+    }
+
+    /**
+     * @param numKeys
+     *            number of keys which will be added
+     * @param falsePositiveRate
+     *            fraction of other tokens which should pass the filter,
+     *            between 0 and 1 (exclusive)
+     * @return an empty filter, to {@link #add(String)} the keys to
+     */
+    public static KeyFilter create(int numKeys, double falsePositiveRate) {
+        return new KeyFilter(numKeys, falsePositiveRate);
+    }
+
+    /**
+     * @param keys
+     *            the dictionary keys
+     * @param numKeys
+     *            number of keys
+     * @param falsePositiveRate
+     *            fraction of other tokens which should pass the filter,
+     *            between 0 and 1 (exclusive)
+     * @return a filter passing all keys
+     */
+    public static KeyFilter build(Enumeration<String> keys, int numKeys, double falsePositiveRate) {
+        KeyFilter filter = create(numKeys, falsePositiveRate);
+        while (keys.hasMoreElements()) {
+            filter.add(keys.nextElement());
+        }
+        return filter;
+    }
+
+    public void add(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            long bit = position(h1 + i * h2);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Write the filter in the binary form read by {@link #read(DataInput)}.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(numKeys);
+        out.writeInt(numHashes);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * @return a filter written by {@link #write(DataOutput)}
+     */
+    public static KeyFilter read(DataInput in) throws IOException {
+        int numKeys = in.readInt();
+        int numHashes = in.readInt();
+        long[] bits = new long[in.readInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new KeyFilter(bits, numHashes, numKeys);
+    }
+
+    /**
+     * @return false if <code>key</code> is certainly not a key of the
+     *         dictionary
+     */
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            long bit = position(h1 + i * h2);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** map a 32 bit hash onto the bits, without division */
+    private long position(int h) {
+        return ((h & 0xffffffffL) * numBits) >>> 32;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the characters, with the MurmurHash3 finalizer
+     * mixing all characters into both halves.
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return number of keys the filter was built from
+     */
+    public int getNumKeys() {
+        return numKeys;
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * @return the expected fraction of tokens which are no key passing the
+     *         filter
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1.0 - Math.exp(-(double) numHashes * numKeys / numBits), numHashes);
+    }
+
+    public String toString() {
+        return "KeyFilter(keys=" + numKeys + ", bits=" + numBits + ", hashes=" + numHashes
+                + ", falsePositiveRate=" + getExpectedFalsePositiveRate() + ")";
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs dictionary loading progress, and a summary of the time spent in each
+ * loading stage once loading is finished.
+ */
+public class LoggingDictionaryLoadListener implements DictionaryLoadListener {
+
+    private final Logger LOG = LoggerFactory.getLogger(LoggingDictionaryLoadListener.class);
+
+    public void loadStarted(long totalBytes) {
+        if (totalBytes >= 0) {
+            LOG.info("loading " + totalBytes + " bytes of dictionary");
+        }
+    }
+
+    public void loadProgress(DictionaryLoadStatistics statistics) {
+        LOG.info(statistics.progressString());
+    }
+
+    public void loadFinished(DictionaryLoadStatistics statistics) {
+        LOG.info(statistics.toString());
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntries;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+
+/**
+ * Index of the entries of an order independent dictionary on the multiset of
+ * their tokens, for matching windows of document tokens regardless of order.
+ *
+ * Each distinct token is given a random 64 bit hash, and the hash of a
+ * sequence of tokens is the sum of the hashes of its tokens. The sum is
+ * commutative, so all permutations of an entry have its hash, and the hash of
+ * a window is the difference of two prefix sums, so a {@link Matcher} sliding
+ * over the document tokens gets the hash of each window in constant time,
+ * without sorting it. Only windows whose hash is that of an entry are sorted
+ * and compared with the entries, to rule out hash collisions.
+ *
+ * Each entry is stored once, taken from the entries listed under its first
+ * (sorted) token, even though order independent dictionaries list it under
+ * each of its tokens. Entries with the same tokens keep the order in which the
+ * dictionary lists them.
+ */
+public class MultisetIndex {
+
+    /** odd constant spreading token numbers before mixing them into hashes */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** indexes built for dictionaries, shared by all annotators using them */
+    private static final Map<DictionaryResource, MultisetIndex> sharedIndexes = new WeakHashMap<DictionaryResource, MultisetIndex>();
+
+    /** number of each distinct token */
+    private final HashMap<String, Integer> tokenIds;
+
+    /** hash of each token */
+    private final long[] tokenHashes;
+
+    /** number of tokens of the longest entry containing each token */
+    private final int[] maxLengths;
+
+    /** number of tokens of the shortest entry */
+    private final int shortest;
+
+    /** number of tokens of the longest entry */
+    private final int longest;
+
+    /** the entries, grouped by hash */
+    private final DictEntry[] entries;
+
+    /**
+     * open addressing table of the distinct entry hashes; slot s holds the
+     * entries from <code>slotStart[s]</code> to
+     * <code>slotStart[s] + slotCount[s] - 1</code>, and is empty if the
+     * count is 0
+     */
+    private final long[] slotHashes;
+
+    private final int[] slotStart;
+
+    private final int[] slotCount;
+
+    private final int slotMask;
+
+    private MultisetIndex(HashMap<String, Integer> tokenIds, long[] tokenHashes, int[] maxLengths,
+            List<DictEntry> entryList, long[] entryHashes) {
+        this.tokenIds = tokenIds;
+        this.tokenHashes = tokenHashes;
+        this.maxLengths = maxLengths;
+        int numEntries = entryList.size();
+        int capacity = 2;
+        while (capacity < 2 * numEntries) {
+            capacity <<= 1;
+        }
+        slotMask = capacity - 1;
+        slotHashes = new long[capacity];
+        slotStart = new int[capacity];
+        slotCount = new int[capacity];
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        int[] slots = new int[numEntries];
+        for (int i = 0; i < numEntries; i++) {
+            int length = entryList.get(i).getElements().length;
+            min = Math.min(min, length);
+            max = Math.max(max, length);
+            int slot = findSlot(entryHashes[i]);
+            slotHashes[slot] = entryHashes[i];
+            slotCount[slot]++;
+            slots[i] = slot;
+        }
+        shortest = (numEntries == 0) ? 1 : min;
+        longest = max;
+        int start = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            slotStart[slot] = start;
+            start += slotCount[slot];
+        }
+        // place the entries in their groups, keeping their order
+        entries = new DictEntry[numEntries];
+        int[] filled = new int[capacity];
+        for (int i = 0; i < numEntries; i++) {
+            int slot = slots[i];
+            entries[slotStart[slot] + filled[slot]++] = entryList.get(i);
+        }
+    }
+
+    /**
+     * Collect the entries of a dictionary.
+     */
+    public static MultisetIndex build(DictionaryResource dict) {
+        HashMap<String, Integer> tokenIds = new HashMap<String, Integer>();
+        ArrayList<Integer> maxLengthList = new ArrayList<Integer>();
+        ArrayList<DictEntry> entryList = new ArrayList<DictEntry>();
+        long[] entryHashes = new long[1024];
+        IdentityHashMap<DictEntry, Boolean> seen = new IdentityHashMap<DictEntry, Boolean>();
+        Enumeration<String> keys = dict.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            DictEntriesByLength entriesByLength = dict.getEntries(key);
+            int shortest = entriesByLength.getShortest().intValue();
+            int longest = entriesByLength.getLongest().intValue();
+            for (int length = shortest; length <= longest; length++) {
+                DictEntries dictEntries = entriesByLength.getEntries(length);
+                if (dictEntries == null) {
+                    continue;
+                }
+                ArrayList<DictEntry> keyEntries = dictEntries.getEntries();
+                for (int i = 0; i < keyEntries.size(); i++) {
+                    DictEntry entry = keyEntries.get(i);
+                    String[] elements = entry.getElements();
+                    // take each entry from the list of its first token only
+                    if ((elements.length == 0) || (!elements[0].equals(key))
+                            || (seen.put(entry, Boolean.TRUE) != null)) {
+                        continue;
+                    }
+                    long hash = 0;
+                    for (String element : elements) {
+                        Integer id = tokenIds.get(element);
+                        if (id == null) {
+                            id = Integer.valueOf(tokenIds.size());
+                            tokenIds.put(element, id);
+                            maxLengthList.add(Integer.valueOf(0));
+                        }
+                        if (maxLengthList.get(id.intValue()).intValue() < elements.length) {
+                            maxLengthList.set(id.intValue(), Integer.valueOf(elements.length));
+                        }
+                        hash += tokenHash(id.intValue());
+                    }
+                    if (entryList.size() == entryHashes.length) {
+                        entryHashes = Arrays.copyOf(entryHashes, entryHashes.length * 2);
+                    }
+                    entryHashes[entryList.size()] = hash;
+                    entryList.add(entry);
+                }
+            }
+        }
+        long[] tokenHashes = new long[tokenIds.size()];
+        int[] maxLengths = new int[tokenIds.size()];
+        for (int id = 0; id < tokenHashes.length; id++) {
+            tokenHashes[id] = tokenHash(id);
+            maxLengths[id] = maxLengthList.get(id).intValue();
+        }
+        return new MultisetIndex(tokenIds, tokenHashes, maxLengths, entryList, entryHashes);
+    }
+
+    /**
+     * @return the index of a dictionary, built on first use and shared by all
+     *         callers passing the same dictionary
+     */
+    public static MultisetIndex getShared(DictionaryResource dict) {
+        synchronized (sharedIndexes) {
+            MultisetIndex index = sharedIndexes.get(dict);
+            if (index == null) {
+                index = build(dict);
+                sharedIndexes.put(dict, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * @return the hash of a token number, the finalizer of MurmurHash3 applied
+     *         to a multiple of a large odd constant
+     */
+    private static long tokenHash(int id) {
+        long h = (id + 1) * GOLDEN_GAMMA;
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+
+    /**
+     * @return the slot holding a hash, or the empty slot it would go to
+     */
+    private int findSlot(long hash) {
+        int slot = (int) (hash ^ (hash >>> 32)) & slotMask;
+        while ((slotCount[slot] != 0) && (slotHashes[slot] != hash)) {
+            slot = (slot + 1) & slotMask;
+        }
+        return slot;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public int getTokenCount() {
+        return tokenHashes.length;
+    }
+
+    /**
+     * @return number of tokens of the shortest entry
+     */
+    public int getShortest() {
+        return shortest;
+    }
+
+    /**
+     * @return number of tokens of the longest entry
+     */
+    public int getLongest() {
+        return longest;
+    }
+
+    /**
+     * @return a new matcher for sequences of tokens, to be used by a single
+     *         thread
+     */
+    public Matcher newMatcher() {
+        return new Matcher();
+    }
+
+    /**
+     * Finds the entries matching windows of a sequence of normalized tokens,
+     * which are added one at a time. Only the last tokens, as many as the
+     * longest entry has, are held.
+     */
+    public class Matcher {
+
+        private final int mask;
+
+        /** hash of the tokens before each position, i.e. prefix sums */
+        private final long[] prefixHashes;
+
+        /** number of tokens occurring in no entry before each position */
+        private final int[] prefixUnknown;
+
+        /** the tokens */
+        private final String[] tokens;
+
+        /** token numbers, -1 for tokens occurring in no entry */
+        private final int[] ids;
+
+        /** scratch buffer for sorting windows */
+        private final String[] sorted;
+
+        /** number of tokens added */
+        private int size;
+
+        Matcher() {
+            int capacity = 2;
+            while (capacity < longest + 2) {
+                capacity <<= 1;
+            }
+            mask = capacity - 1;
+            prefixHashes = new long[capacity];
+            prefixUnknown = new int[capacity];
+            tokens = new String[capacity];
+            ids = new int[capacity];
+            sorted = new String[longest];
+        }
+
+        /**
+         * Start a new sequence of tokens.
+         */
+        public void reset() {
+            size = 0;
+            prefixHashes[0] = 0;
+            prefixUnknown[0] = 0;
+        }
+
+        /**
+         * Append a token to the sequence.
+         */
+        public void add(String token) {
+            Integer id = tokenIds.get(token);
+            int slot = size & mask;
+            int next = (size + 1) & mask;
+            tokens[slot] = token;
+            if (id == null) {
+                ids[slot] = -1;
+                prefixHashes[next] = prefixHashes[slot];
+                prefixUnknown[next] = prefixUnknown[slot] + 1;
+            } else {
+                ids[slot] = id.intValue();
+                prefixHashes[next] = prefixHashes[slot] + tokenHashes[id.intValue()];
+                prefixUnknown[next] = prefixUnknown[slot];
+            }
+            size++;
+        }
+
+        /**
+         * @return number of tokens added since the last reset
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return number of tokens of the longest entry containing the token
+         *         at a position, 0 if it occurs in none
+         */
+        public int getMaxLength(int position) {
+            int id = ids[position & mask];
+            return (id < 0) ? 0 : maxLengths[id];
+        }
+
+        /**
+         * Find the entries consisting of the tokens of a window, in any order.
+         * The window must lie within the last tokens held.
+         *
+         * @param start
+         *            position of the first token of the window
+         * @param length
+         *            number of tokens of the window
+         * @param result
+         *            receives the matching entries
+         * @return number of entries compared with the window
+         */
+        public int match(int start, int length, List<DictEntry> result) {
+            int end = start + length;
+            if (prefixUnknown[end & mask] != prefixUnknown[start & mask]) {
+                return 0;
+            }
+            int slot = findSlot(prefixHashes[end & mask] - prefixHashes[start & mask]);
+            int count = slotCount[slot];
+            if (count == 0) {
+                return 0;
+            }
+            for (int i = 0; i < length; i++) {
+                sorted[i] = tokens[(start + i) & mask];
+            }
+            Arrays.sort(sorted, 0, length);
+            int first = slotStart[slot];
+            for (int i = first; i < first + count; i++) {
+                String[] elements = entries[i].getElements();
+                if (elements.length != length) {
+                    continue;
+                }
+                boolean match = true;
+                for (int j = 0; j < length; j++) {
+                    if (!elements[j].equals(sorted[j])) {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match) {
+                    result.add(entries[i]);
+                }
+            }
+            return count;
+        }
+    }
+}
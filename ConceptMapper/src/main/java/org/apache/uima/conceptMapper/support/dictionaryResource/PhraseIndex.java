@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+
+/**
+ * Hash index on the complete token sequence of the entries of a single
+ * length bucket, so that a phrase can be looked up without scanning a bucket
+ * of tens of thousands of entries.
+ *
+ * Entries with the same hash are chained in list order, so candidates are
+ * returned in the order of the indexed list.
+ */
+class PhraseIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** index of the first entry of each hash chain, -1 if empty */
+    private final int[] heads;
+
+    /** index of the next entry in the same chain, -1 at the end */
+    private final int[] next;
+
+    /** phrase hash of each entry */
+    private final int[] hashes;
+
+    /**
+     * @param entries
+     *            the entries to index; the index is only valid as long as
+     *            the list is not modified
+     */
+    PhraseIndex(List<DictEntry> entries) {
+        int size = entries.size();
+        int tableSize = Integer.highestOneBit(Math.max(size, 1)) << 1;
+        heads = new int[tableSize];
+        Arrays.fill(heads, -1);
+        next = new int[size];
+        hashes = new int[size];
+        // insert back to front, so that chains are in list order
+        for (int i = size - 1; i >= 0; i--) {
+            int hash = phraseHash(entries.get(i).getElements());
+            int slot = hash & (tableSize - 1);
+            hashes[i] = hash;
+            next[i] = heads[slot];
+            heads[slot] = i;
+        }
+    }
+
+    static int phraseHash(String[] elements) {
+        int hash = Arrays.hashCode(elements);
+        // spread the high bits, as the table is indexed by the low bits
+        return hash ^ (hash >>> 16);
+    }
+
+    /** @return number of entries indexed */
+    int size() {
+        return next.length;
+    }
+
+    /**
+     * @return the entries of <code>entries</code> whose phrase has the same
+     *         hash as <code>elements</code>, in list order
+     */
+    ArrayList<DictEntry> getCandidates(List<DictEntry> entries, String[] elements) {
+        int hash = phraseHash(elements);
+        ArrayList<DictEntry> result = new ArrayList<DictEntry>(2);
+        for (int i = heads[hash & (heads.length - 1)]; i >= 0; i = next[i]) {
+            if (hashes[i] == hash) {
+                result.add(entries.get(i));
+            }
+        }
+        return result;
+    }
+
+    /** @return estimated heap bytes used by the index */
+    long estimatedBytes() {
+        return 24 + 3 * 16 + 4L * (heads.length + next.length + hashes.length);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Hashtable;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+
+/**
+ * Reader of compiled dictionaries written by {@link SortedDictionaryWriter}.
+ *
+ * The entries are put into the same in-memory structure as those of an XML
+ * dictionary. Entries stored under several keys (order independent lookup)
+ * share their elements and properties, as when loaded from XML.
+ */
+public class SortedDictionaryReader {
+
+    private final DataInputStream in;
+
+    private final EntryPropertiesRoot entryPropertiesRoot;
+
+    /**
+     * Read the header of a dictionary.
+     *
+     * @param input
+     *            stream positioned at the magic number, not closed by this
+     *            class
+     * @throws IOException
+     *             if the stream does not hold a sorted dictionary of a
+     *             supported version
+     */
+    public SortedDictionaryReader(InputStream input) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        if (in.readInt() != SortedDictionaryWriter.MAGIC) {
+            throw new IOException("not a sorted compiled dictionary");
+        }
+        int version = in.readInt();
+        if (version != SortedDictionaryWriter.VERSION) {
+            throw new IOException("unsupported sorted compiled dictionary version " + version);
+        }
+        String[] propertyNames = new String[in.readInt()];
+        for (int i = 0; i < propertyNames.length; i++) {
+            propertyNames[i] = readString(in);
+        }
+        entryPropertiesRoot = new EntryPropertiesRoot(propertyNames);
+    }
+
+    public EntryPropertiesRoot getEntryPropertiesRoot() {
+        return entryPropertiesRoot;
+    }
+
+    /**
+     * Read all keys and their entries.
+     *
+     * @return the entries by key
+     */
+    public Hashtable<String, DictEntriesByLength> readEntries() throws IOException {
+        DictionaryResource_impl dict = new DictionaryResource_impl();
+        // first entry read for each entry ID
+        ArrayList<DictEntry> byID = new ArrayList<DictEntry>();
+        while (in.readBoolean()) {
+            String key = readString(in);
+            int numEntries = in.readInt();
+            for (int i = 0; i < numEntries; i++) {
+                DictEntry entry = readEntry(in, entryPropertiesRoot);
+                int entryID = entry.getProperties().getEntryID();
+                if (entryID >= 0) {
+                    while (byID.size() <= entryID) {
+                        byID.add(null);
+                    }
+                    DictEntry first = byID.get(entryID);
+                    if (first == null) {
+                        byID.set(entryID, entry);
+                    } else {
+                        entry = first;
+                    }
+                }
+                dict.putSharedEntry(key, entry, entry.getElements().length);
+            }
+        }
+        return dict.dictImpl;
+    }
+
+    /**
+     * Read the key filter following the entries.
+     *
+     * @return the key filter, or null if the dictionary has none
+     */
+    public KeyFilter readKeyFilter() throws IOException {
+        return in.readBoolean() ? KeyFilter.read(in) : null;
+    }
+
+    /**
+     * Read an entry written by
+     * {@link SortedDictionaryWriter#writeEntry(java.io.DataOutput, DictEntry, int)}.
+     *
+     * @param root
+     *            property names of the entry
+     */
+    public static DictEntry readEntry(DataInput in, EntryPropertiesRoot root) throws IOException {
+        EntryProperties props = root.newEntryProperties();
+        props.setEntryID(in.readInt());
+        String[] elements = new String[in.readInt()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = readString(in);
+        }
+        String unsorted = readString(in);
+        int numProperties = root.propertyNames().length;
+        for (int i = 0; i < numProperties; i++) {
+            props.setProperty(i, readString(in));
+        }
+        return new DictionaryResource_impl.DictEntryImpl(elements, unsorted, props);
+    }
+
+    /**
+     * Read a string written by
+     * {@link SortedDictionaryWriter#writeString(java.io.DataOutput, String)}.
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
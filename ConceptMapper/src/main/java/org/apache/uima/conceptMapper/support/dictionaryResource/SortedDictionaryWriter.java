@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+
+/**
+ * Writer of compiled dictionaries in the sorted, streamable format read by
+ * {@link SortedDictionaryReader}.
+ *
+ * Unlike the serialized Hashtable written by
+ * {@link DictionaryResource_impl#serializeEntries}, the dictionary is written
+ * one key at a time, in key order, so it can be produced from sorted runs
+ * without holding the whole dictionary in memory. The format is:
+ * <ul>
+ * <li>the magic number {@link #MAGIC} and the format version
+ * <li>the entry property names
+ * <li>for each key: a flag 1, the key, the number of entries and the entries,
+ * each as its entry ID, elements, unsorted text and property values
+ * <li>a flag 0, followed by a flag 1 and a {@link KeyFilter}, or a flag 0
+ * </ul>
+ * Strings are written as their UTF-8 length and bytes, -1 for null.
+ */
+public class SortedDictionaryWriter {
+
+    /** first bytes of a sorted compiled dictionary, "CMSD" */
+    public static final int MAGIC = 0x434d5344;
+
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+
+    private final int numProperties;
+
+    private String lastKey;
+
+    private int numKeys;
+
+    /**
+     * Write the header of the dictionary.
+     *
+     * @param output
+     *            stream to write the dictionary to, closed by
+     *            {@link #finish(KeyFilter)}
+     * @param root
+     *            the property names of all entries
+     */
+    public SortedDictionaryWriter(OutputStream output, EntryPropertiesRoot root) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        String[] propertyNames = root.propertyNames();
+        numProperties = propertyNames.length;
+        out.writeInt(numProperties);
+        for (String propertyName : propertyNames) {
+            writeString(out, propertyName);
+        }
+    }
+
+    /**
+     * Write the entries of a key. Keys must be written in ascending order,
+     * each once.
+     *
+     * @param entries
+     *            the entries of the key, in the order they are to be looked
+     *            up in
+     */
+    public void writeKey(String key, List<DictEntry> entries) throws IOException {
+        if ((lastKey != null) && (lastKey.compareTo(key) >= 0)) {
+            throw new IllegalArgumentException("keys out of order: '" + lastKey + "', '" + key + "'");
+        }
+        lastKey = key;
+        numKeys++;
+        out.writeBoolean(true);
+        writeString(out, key);
+        out.writeInt(entries.size());
+        for (DictEntry entry : entries) {
+            writeEntry(out, entry, numProperties);
+        }
+    }
+
+    /**
+     * @return number of keys written so far
+     */
+    public int getNumKeys() {
+        return numKeys;
+    }
+
+    /**
+     * Write the end of the entries and the key filter, and close the stream.
+     *
+     * @param keyFilter
+     *            filter over the keys written, or null
+     */
+    public void finish(KeyFilter keyFilter) throws IOException {
+        out.writeBoolean(false);
+        out.writeBoolean(keyFilter != null);
+        if (keyFilter != null) {
+            keyFilter.write(out);
+        }
+        out.close();
+    }
+
+    /**
+     * Write a dictionary entry, as read by
+     * {@link SortedDictionaryReader#readEntry(DataInput, EntryPropertiesRoot)}.
+     *
+     * @param numProperties
+     *            number of property values to write
+     */
+    public static void writeEntry(DataOutput out, DictEntry entry, int numProperties) throws IOException {
+        EntryProperties props = entry.getProperties();
+        out.writeInt(props.getEntryID());
+        String[] elements = entry.getElements();
+        out.writeInt(elements.length);
+        for (String element : elements) {
+            writeString(out, element);
+        }
+        writeString(out, entry.getUnsorted());
+        for (int i = 0; i < numProperties; i++) {
+            writeString(out, props.getProperty(i));
+        }
+    }
+
+    /**
+     * Write a string of any length, or null, as read by
+     * {@link SortedDictionaryReader#readString(DataInput)}.
+     */
+    public static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
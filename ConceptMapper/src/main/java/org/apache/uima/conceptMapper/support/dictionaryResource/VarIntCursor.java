@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Reads variable length integers from a byte array: 7 bits per byte, least
+ * significant first, the high bit set on all but the last byte.
+ */
+final class VarIntCursor {
+
+    private final byte[] data;
+
+    private int position;
+
+    VarIntCursor(byte[] data, int position) {
+        this.data = data;
+        this.position = position;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the next non-negative integer
+     */
+    int next() {
+        int b = data[position++];
+        if (b >= 0) {
+            return b;
+        }
+        int value = b & 0x7f;
+        int shift = 7;
+        while ((b = data[position++]) < 0) {
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        }
+        return value | (b << shift);
+    }
+
+    /**
+     * Write a non-negative integer as read by {@link #next()}.
+     */
+    static void write(ByteArrayOutputStream out, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value: " + value);
+        }
+        while (value > 0x7f) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.uima.conceptMapper.support.cache.BoundedConcurrentCache;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+
+/**
+ * Cache of the dictionary entries matching windows of normalized tokens, for
+ * the contiguous match strategy.
+ *
+ * The entries of a given length matching the tokens from a position on depend
+ * only on that many normalized tokens, so the result of looking up a window
+ * can be reused wherever the same window recurs, in the same or later
+ * documents. Each length looked up is cached as a window of its own, not
+ * together with the tokens following it, which differ from one occurrence of
+ * a phrase to the next. Windows without any match are cached as well.
+ *
+ * The cache is bounded in entries or in estimated bytes, and shared by all
+ * annotators looking up the same dictionary, which may use it from several
+ * threads. They must all ask for the same limits.
+ */
+public class WindowMatchCache {
+
+    /** estimated heap bytes of an object header, array header and reference */
+    private static final int OBJECT_HEADER = 12;
+
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int REFERENCE = 4;
+
+    /** caches by dictionary */
+    private static final Map<DictionaryResource, WindowMatchCache> sharedCaches = new WeakHashMap<DictionaryResource, WindowMatchCache>();
+
+    /** matches of a window without any */
+    public static final DictEntry[] NO_MATCHES = new DictEntry[0];
+
+    private final BoundedConcurrentCache<Window, DictEntry[]> cache;
+
+    /** the limits the cache was created with, 0 for the one not used */
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    /**
+     * @param maxEntries
+     *            maximum number of windows cached, if <code>maxBytes</code>
+     *            is 0
+     * @param maxBytes
+     *            maximum estimated size of the cached windows and matches in
+     *            bytes, or 0 to limit the number of windows
+     */
+    public WindowMatchCache(int maxEntries, long maxBytes) {
+        this.maxEntries = (maxBytes > 0) ? 0 : maxEntries;
+        this.maxBytes = Math.max(maxBytes, 0);
+        if (maxBytes > 0) {
+            cache = new BoundedConcurrentCache<Window, DictEntry[]>(maxBytes, 16,
+                    new BoundedConcurrentCache.Weigher<Window, DictEntry[]>() {
+                        public int weigh(Window key, DictEntry[] value) {
+                            return key.estimateBytes() + estimateBytes(value);
+                        }
+                    });
+        } else {
+            cache = new BoundedConcurrentCache<Window, DictEntry[]>(maxEntries);
+        }
+    }
+
+    /**
+     * @return the cache for a dictionary, created with the given limits by the
+     *         first caller and shared by all callers passing the same
+     *         dictionary
+     * @throws IllegalStateException
+     *             if the cache for the dictionary was created with other
+     *             limits
+     */
+    public static WindowMatchCache getShared(DictionaryResource dict, int maxEntries, long maxBytes) {
+        synchronized (sharedCaches) {
+            WindowMatchCache windowCache = sharedCaches.get(dict);
+            if (windowCache == null) {
+                windowCache = new WindowMatchCache(maxEntries, maxBytes);
+                sharedCaches.put(dict, windowCache);
+            } else if (!windowCache.hasLimits(maxEntries, maxBytes)) {
+                throw new IllegalStateException("lookup cache of the dictionary already created with "
+                        + describeLimits(windowCache.maxEntries, windowCache.maxBytes)
+                        + ", cannot share it with an annotator using " + describeLimits(maxEntries, maxBytes));
+            }
+            return windowCache;
+        }
+    }
+
+    /**
+     * @return true if the cache has the limits of a cache created with the
+     *         given ones
+     */
+    private boolean hasLimits(int maxEntries, long maxBytes) {
+        return (maxBytes > 0) ? (this.maxBytes == maxBytes) : ((this.maxBytes == 0) && (this.maxEntries == maxEntries));
+    }
+
+    private static String describeLimits(int maxEntries, long maxBytes) {
+        return (maxBytes > 0) ? ("lookupCacheMaxBytes " + maxBytes) : ("lookupCacheSize " + maxEntries);
+    }
+
+    /**
+     * @return the cached entries matching a window, in dictionary order, or
+     *         null if it is not cached
+     */
+    public DictEntry[] get(Window window) {
+        return cache.get(window);
+    }
+
+    public void put(Window window, DictEntry[] matches) {
+        cache.put(window, matches);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * @return the underlying cache, e.g. to read its size and hit rate
+     */
+    public BoundedConcurrentCache<Window, DictEntry[]> getCache() {
+        return cache;
+    }
+
+    public String toString() {
+        return "WindowMatchCache(" + cache + ")";
+    }
+
+    private static int stringBytes(String s) {
+        // header, hash, coder, array reference; Latin-1 array
+        return align(OBJECT_HEADER + 4 + 1 + REFERENCE) + align(ARRAY_HEADER + s.length());
+    }
+
+    private static int estimateBytes(DictEntry[] matches) {
+        return (matches == NO_MATCHES) ? 0 : align(ARRAY_HEADER + matches.length * REFERENCE);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    /**
+     * A window of normalized tokens, in document order or sorted for order
+     * independent lookup.
+     */
+    public static final class Window {
+        private final String[] tokens;
+
+        private final boolean sorted;
+
+        private final int hash;
+
+        /**
+         * @param tokens
+         *            the normalized tokens, as looked up; not copied
+         * @param sorted
+         *            true if the tokens are sorted for lookup, i.e. with
+         *            order independent lookup
+         */
+        public Window(String[] tokens, boolean sorted) {
+            this.tokens = tokens;
+            this.sorted = sorted;
+            this.hash = Arrays.hashCode(tokens) * 2 + (sorted ? 1 : 0);
+        }
+
+        public String[] getTokens() {
+            return tokens;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Window)) {
+                return false;
+            }
+            Window other = (Window) obj;
+            return (hash == other.hash) && (sorted == other.sorted) && Arrays.equals(tokens, other.tokens);
+        }
+
+        int estimateBytes() {
+            int bytes = align(OBJECT_HEADER + REFERENCE + 1 + 4) + align(ARRAY_HEADER + tokens.length * REFERENCE);
+            for (String token : tokens) {
+                bytes += stringBytes(token);
+            }
+            return bytes;
+        }
+    }
+}
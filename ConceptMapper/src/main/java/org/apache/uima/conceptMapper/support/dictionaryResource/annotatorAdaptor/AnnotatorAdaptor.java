@@ -18,12 +18,17 @@
  */
 package org.apache.uima.conceptMapper.support.dictionaryResource.annotatorAdaptor;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.Vector;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.FSIterator;
@@ -33,9 +38,12 @@ import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryLoaderException;
 import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryToken;
+import org.apache.uima.conceptMapper.support.tokenizer.OffsetTokenizer;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceManager;
 import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.resource.metadata.ConfigurationParameterSettings;
+import org.apache.uima.resource.metadata.NameValuePair;
 import org.apache.uima.util.InvalidXMLException;
 import org.apache.uima.util.XMLInputSource;
 import org.slf4j.Logger;
@@ -45,6 +53,22 @@ public class AnnotatorAdaptor {
 
     private final Logger LOG = LoggerFactory.getLogger(AnnotatorAdaptor.class);
 
+    /**
+     * System property which, if set to "false", disables calling the
+     * OffsetTokenizer directly and always runs the tokenizer descriptor
+     * through a CAS
+     */
+    public static final String INPROCESS_TOKENIZER_PROPERTY = "conceptMapper.inProcessTokenizer";
+
+    /** Name of the token type produced by the OffsetTokenizer */
+    private static final String OFFSET_TOKEN_TYPE = "org.apache.uima.conceptMapper.support.tokenizer.TokenAnnotation";
+
+    /** Name of the supertype of the token type produced by the OffsetTokenizer */
+    private static final String OFFSET_TOKEN_SUPERTYPE = "uima.tt.TokenAnnotation";
+
+    /** Name of the OffsetTokenizer token feature containing the normalized text */
+    private static final String OFFSET_TOKEN_TEXT_FEATURE = "text";
+
     private ResourceSpecifier aeSpecifier;
 
     private AnalysisEngine ae;
@@ -62,12 +86,25 @@ public class AnnotatorAdaptor {
 
     private String langID;
 
+    /**
+     * set if the tokenizer descriptor is the OffsetTokenizer, in which case it
+     * is called directly on the dictionary strings instead of through a CAS
+     */
+    private OffsetTokenizer inProcessTokenizer = null;
+
+    /** true if in-process tokens should be the normalized (text feature) form */
+    private boolean inProcessNormalize;
+
+    private ArrayList<String> inProcessTokens = new ArrayList<String>();
+
     public AnnotatorAdaptor(String analysisEngineDescriptorPath, Vector<DictionaryToken> result, String tokenTypeName,
             String tokenTextFeatureName, String langID) throws DictionaryLoaderException {
         super();
         try {
-            aeSpecifier = UIMAFramework.getXMLParser()
-                    .parseResourceSpecifier(new XMLInputSource(analysisEngineDescriptorPath));
+            aeSpecifier = parseDescriptor(analysisEngineDescriptorPath);
+            if (aeSpecifier == null) {
+                throw new FileNotFoundException("analysis engine descriptor not found: " + analysisEngineDescriptorPath);
+            }
             this.tokenTypeName = tokenTypeName;
             this.tokenTextFeatureName = tokenTextFeatureName;
             LOG.info("token type:  " + tokenTypeName + ": " + tokenTypeName + ", feat: " + tokenTextFeatureName);
@@ -81,7 +118,38 @@ public class AnnotatorAdaptor {
         }
     }
 
+    /**
+     * Parse an analysis engine descriptor, given as a file path or else as a
+     * path relative to the UIMA data path (system property uima.datapath) or
+     * the class path.
+     * 
+     * @return the parsed specifier, or null if the descriptor is not found
+     */
+    public static ResourceSpecifier parseDescriptor(String descriptorPath) throws IOException, InvalidXMLException {
+        XMLInputSource input;
+        if (new File(descriptorPath).isFile()) {
+            input = new XMLInputSource(descriptorPath);
+        } else {
+            ResourceManager resMgr = UIMAFramework.newDefaultResourceManager();
+            String dp = System.getProperty("uima.datapath");
+            if (null != dp) {
+                resMgr.setDataPath(dp);
+            }
+            URL url = resMgr.resolveRelativePath(descriptorPath);
+            if (url == null) {
+                return null;
+            }
+            input = new XMLInputSource(url);
+        }
+        return UIMAFramework.getXMLParser().parseResourceSpecifier(input);
+    }
+
     public void initCPM() throws DictionaryLoaderException {
+        inProcessTokenizer = createInProcessTokenizer();
+        if (inProcessTokenizer != null) {
+            LOG.info("tokenizing dictionary entries with in-process " + OffsetTokenizer.class.getName());
+            return;
+        }
         try {
             ResourceManager resMgr = UIMAFramework.newDefaultResourceManager();
             String dp = System.getProperty("uima.datapath");
@@ -97,7 +165,66 @@ public class AnnotatorAdaptor {
         }
     }
 
+    /**
+     * If the tokenizer descriptor is a plain OffsetTokenizer whose output can
+     * be reproduced without a CAS, create and configure an instance of it
+     * directly.
+     * 
+     * @return the configured tokenizer, or null if the descriptor has to be run
+     *         as an analysis engine
+     */
+    private OffsetTokenizer createInProcessTokenizer() {
+        if ("false".equalsIgnoreCase(System.getProperty(INPROCESS_TOKENIZER_PROPERTY))) {
+            return null;
+        }
+        if (!(aeSpecifier instanceof AnalysisEngineDescription)) {
+            return null;
+        }
+        AnalysisEngineDescription aeDescription = (AnalysisEngineDescription) aeSpecifier;
+        if ((!aeDescription.isPrimitive())
+                || (!OffsetTokenizer.class.getName().equals(aeDescription.getAnnotatorImplementationName()))) {
+            return null;
+        }
+        if ((!OFFSET_TOKEN_TYPE.equals(tokenTypeName)) && (!OFFSET_TOKEN_SUPERTYPE.equals(tokenTypeName))) {
+            return null;
+        }
+        if ((tokenTextFeatureName == null) || (tokenTextFeatureName.equals(""))) {
+            inProcessNormalize = false;
+        } else if (tokenTextFeatureName.equals(OFFSET_TOKEN_TEXT_FEATURE) && OFFSET_TOKEN_TYPE.equals(tokenTypeName)) {
+            inProcessNormalize = true;
+        } else {
+            return null;
+        }
+
+        ConfigurationParameterSettings settings = aeDescription.getAnalysisEngineMetaData()
+                .getConfigurationParameterSettings();
+        if ((settings.getSettingsForGroups() != null) && (!settings.getSettingsForGroups().isEmpty())) {
+            // parameter groups are resolved by the framework, leave them to it
+            return null;
+        }
+        NameValuePair[] parameterSettings = settings.getParameterSettings();
+        String[] names = new String[parameterSettings.length];
+        Object[] values = new Object[parameterSettings.length];
+        for (int i = 0; i < parameterSettings.length; i++) {
+            names[i] = parameterSettings[i].getName();
+            values[i] = parameterSettings[i].getValue();
+        }
+
+        OffsetTokenizer tokenizer = new OffsetTokenizer();
+        try {
+            tokenizer.processAllConfigurationParameters(names, values);
+        } catch (Exception e) {
+            LOG.warn("unable to configure in-process tokenizer, falling back to analysis engine: " + e.getMessage());
+            return null;
+        }
+        return tokenizer;
+    }
+
     public void runCPM(String text) {
+        if (inProcessTokenizer != null) {
+            runInProcess(text);
+            return;
+        }
         cas.setDocumentText(text);
         cas.setDocumentLanguage(langID);
 
@@ -110,6 +237,18 @@ public class AnnotatorAdaptor {
         cas.reset();
     }
 
+    private void runInProcess(String text) {
+        result.clear();
+        inProcessTokens.clear();
+        inProcessTokenizer.tokenize(text, inProcessNormalize, inProcessTokens);
+        for (String token : inProcessTokens) {
+            result.add(new DictionaryToken(token));
+        }
+        if (result.size() == 0) {
+            LOG.info("Dictionary tokenization of: '" + text + "' produced no tokens of type: '" + tokenTypeName + "'");
+        }
+    }
+
     private void processCAS(CAS cas) {
         if (cas == null) {
         } else {
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a result annotation created by ConceptMapper.
+ * Disabled by default, as there may be many per document.
+ */
+@Name("org.apache.uima.conceptMapper.Annotation")
+@Label("ConceptMapper Annotation")
+@Category({ "UIMA", "ConceptMapper" })
+@Description("A dictionary match annotated by ConceptMapper")
+@StackTrace(false)
+@Enabled(false)
+public class AnnotationEvent extends Event {
+
+    @Label("Begin")
+    public int begin;
+
+    @Label("End")
+    public int end;
+
+    @Label("Matched Tokens")
+    public int matchedTokens;
+
+    @Label("Entry ID")
+    public int entryId;
+
+    @Label("Search Strategy")
+    public int searchStrategy;
+}
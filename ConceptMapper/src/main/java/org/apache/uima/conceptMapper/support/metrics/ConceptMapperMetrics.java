@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics registry keeping counters and a document latency histogram, which
+ * can be read through JMX.
+ *
+ * Use {@link #getShared(String)} to obtain the registry for a name: all
+ * annotator instances configured with the same name (e.g. the instances of a
+ * multithreaded pipeline) report to the same registry, registered with the
+ * platform MBean server as
+ * <code>org.apache.uima.conceptMapper:type=ConceptMapperMetrics,name=<i>name</i></code>.
+ */
+public class ConceptMapperMetrics implements MetricsRegistry, ConceptMapperMetricsMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConceptMapperMetrics.class);
+
+    public static final String JMX_DOMAIN = "org.apache.uima.conceptMapper";
+
+    /** registries by name */
+    private static final Map<String, ConceptMapperMetrics> sharedRegistries = new HashMap<String, ConceptMapperMetrics>();
+
+    /** search strategies are numbered from 1 */
+    private static final int NUM_STRATEGIES = 4;
+
+    private final LongAdder documents = new LongAdder();
+
+    private final LongAdder spans = new LongAdder();
+
+    private final LongAdder tokens = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final LongAdder candidates = new LongAdder();
+
+    private final LongAdder[] matches = new LongAdder[NUM_STRATEGIES];
+
+    private final LatencyHistogram documentLatency = new LatencyHistogram();
+
+    public ConceptMapperMetrics() {
+        super();
+        for (int i = 0; i < NUM_STRATEGIES; i++) {
+            matches[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param name
+     *            name of the registry
+     * @return the registry for the name, created and registered with the
+     *         platform MBean server on first use
+     */
+    public static ConceptMapperMetrics getShared(String name) {
+        synchronized (sharedRegistries) {
+            ConceptMapperMetrics metrics = sharedRegistries.get(name);
+            if (metrics == null) {
+                metrics = new ConceptMapperMetrics();
+                sharedRegistries.put(name, metrics);
+                register(metrics, name);
+            }
+            return metrics;
+        }
+    }
+
+    private static void register(ConceptMapperMetrics metrics, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=ConceptMapperMetrics,name="
+                    + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(metrics, objectName);
+        } catch (JMException e) {
+            // metrics are still collected, just not visible through JMX
+            LOG.warn("could not register metrics MBean '" + name + "': " + e.getMessage());
+        }
+    }
+
+    public void documentProcessed(long elapsedNanos) {
+        documents.increment();
+        documentLatency.record(elapsedNanos);
+    }
+
+    public void spanProcessed(int tokenCount) {
+        spans.increment();
+        tokens.add(tokenCount);
+    }
+
+    public void dictionaryLookup(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    public void lookupCacheAccess(boolean hit) {
+        if (hit) {
+            cacheHits.increment();
+        } else {
+            cacheMisses.increment();
+        }
+    }
+
+    public void candidatesExamined(int count) {
+        candidates.add(count);
+    }
+
+    public void matchEmitted(int searchStrategy) {
+        matches[((searchStrategy > 0) && (searchStrategy < NUM_STRATEGIES)) ? searchStrategy : 0].increment();
+    }
+
+    public long getDocumentsProcessed() {
+        return documents.sum();
+    }
+
+    public long getSpansProcessed() {
+        return spans.sum();
+    }
+
+    public long getTokensProcessed() {
+        return tokens.sum();
+    }
+
+    public long getDictionaryLookups() {
+        return hits.sum() + misses.sum();
+    }
+
+    public long getDictionaryHits() {
+        return hits.sum();
+    }
+
+    public long getDictionaryMisses() {
+        return misses.sum();
+    }
+
+    public double getDictionaryHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return (total == 0) ? 0.0 : ((double) hitCount / total);
+    }
+
+    public long getLookupCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getLookupCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public double getLookupCacheHitRate() {
+        long hitCount = cacheHits.sum();
+        long total = hitCount + cacheMisses.sum();
+        return (total == 0) ? 0.0 : ((double) hitCount / total);
+    }
+
+    public long getCandidatesExamined() {
+        return candidates.sum();
+    }
+
+    /**
+     * @param searchStrategy
+     *            one of the <code>ConceptMapper.PARAMVALUE_*</code> constants
+     * @return number of matches found with the strategy
+     */
+    public long getMatches(int searchStrategy) {
+        return matches[((searchStrategy > 0) && (searchStrategy < NUM_STRATEGIES)) ? searchStrategy : 0].sum();
+    }
+
+    public long getContiguousMatches() {
+        return getMatches(1);
+    }
+
+    public long getSkipAnyMatches() {
+        return getMatches(2);
+    }
+
+    public long getSkipAnyAllowOverlapMatches() {
+        return getMatches(3);
+    }
+
+    public double getMeanDocumentMillis() {
+        return documentLatency.getMeanMillis();
+    }
+
+    public double getP50DocumentMillis() {
+        return documentLatency.getPercentileMillis(0.50);
+    }
+
+    public double getP95DocumentMillis() {
+        return documentLatency.getPercentileMillis(0.95);
+    }
+
+    public double getP99DocumentMillis() {
+        return documentLatency.getPercentileMillis(0.99);
+    }
+
+    public long[] getDocumentLatencyHistogram() {
+        return documentLatency.getCounts();
+    }
+
+    public long[] getDocumentLatencyBucketBoundsMicros() {
+        return documentLatency.getUpperBoundsMicros();
+    }
+
+    public LatencyHistogram getDocumentLatency() {
+        return documentLatency;
+    }
+
+    public void reset() {
+        documents.reset();
+        spans.reset();
+        tokens.reset();
+        hits.reset();
+        misses.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        candidates.reset();
+        for (LongAdder strategyMatches : matches) {
+            strategyMatches.reset();
+        }
+        documentLatency.reset();
+    }
+
+    public String toString() {
+        return "documents=" + getDocumentsProcessed() + ", spans=" + getSpansProcessed() + ", tokens="
+                + getTokensProcessed() + ", lookups=" + getDictionaryLookups() + ", hitRate=" + getDictionaryHitRate()
+                + ", cacheHitRate=" + getLookupCacheHitRate() + ", candidates=" + getCandidatesExamined() + ", matches=[" + getContiguousMatches() + ", "
+                + getSkipAnyMatches() + ", " + getSkipAnyAllowOverlapMatches() + "], meanMillis="
+                + getMeanDocumentMillis();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.metrics;
+
+/**
+ * JMX view of {@link ConceptMapperMetrics}.
+ */
+public interface ConceptMapperMetricsMBean {
+
+    public long getDocumentsProcessed();
+
+    public long getSpansProcessed();
+
+    public long getTokensProcessed();
+
+    public long getDictionaryLookups();
+
+    public long getDictionaryHits();
+
+    public long getDictionaryMisses();
+
+    /**
+     * @return fraction of lookups finding entries, 0 if there were none
+     */
+    public double getDictionaryHitRate();
+
+    public long getLookupCacheHits();
+
+    public long getLookupCacheMisses();
+
+    /**
+     * @return fraction of window lookups answered from the lookup cache, 0 if
+     *         there were none
+     */
+    public double getLookupCacheHitRate();
+
+    public long getCandidatesExamined();
+
+    public long getContiguousMatches();
+
+    public long getSkipAnyMatches();
+
+    public long getSkipAnyAllowOverlapMatches();
+
+    public double getMeanDocumentMillis();
+
+    public double getP50DocumentMillis();
+
+    public double getP95DocumentMillis();
+
+    public double getP99DocumentMillis();
+
+    /**
+     * @return document counts per latency bucket, see
+     *         {@link #getDocumentLatencyBucketBoundsMicros()}
+     */
+    public long[] getDocumentLatencyHistogram();
+
+    public long[] getDocumentLatencyBucketBoundsMicros();
+
+    /**
+     * Set all counters back to zero.
+     */
+    public void reset();
+
+}
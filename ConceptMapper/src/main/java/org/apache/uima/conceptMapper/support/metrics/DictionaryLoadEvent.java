@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the loading of a dictionary, from XML or
+ * compiled.
+ */
+@Name("org.apache.uima.conceptMapper.DictionaryLoad")
+@Label("ConceptMapper Dictionary Load")
+@Category({ "UIMA", "ConceptMapper", "Dictionary" })
+@Description("A dictionary loaded")
+public class DictionaryLoadEvent extends Event {
+
+    @Label("Resource")
+    public String resource;
+
+    @Label("Compiled")
+    public boolean compiled;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytesRead;
+
+    @Label("Entries")
+    @Description("Number of variants loaded, 0 for compiled dictionaries")
+    public int entries;
+
+    @Label("Keys")
+    public int keys;
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a document processed by ConceptMapper.
+ */
+@Name("org.apache.uima.conceptMapper.Document")
+@Label("ConceptMapper Document")
+@Category({ "UIMA", "ConceptMapper" })
+@Description("A document processed by ConceptMapper")
+@StackTrace(false)
+public class DocumentEvent extends Event {
+
+    @Label("Document Length")
+    @Description("Number of characters in the document")
+    public int documentLength;
+
+    @Label("Spans")
+    public int spans;
+
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Candidates Scanned")
+    @Description("Number of dictionary entries compared against the document")
+    public long candidatesScanned;
+
+    @Label("Matches Found")
+    public int matchesFound;
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of durations with power of two microsecond buckets:
+ * bucket 0 counts durations below 1 microsecond, bucket <i>i</i> those below
+ * 2<sup><i>i</i></sup> microseconds, and the last bucket everything longer.
+ */
+public class LatencyHistogram {
+
+    /** 2^30 microseconds is about 18 minutes */
+    private static final int NUM_BUCKETS = 32;
+
+    private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = (micros <= 0) ? 0 : (64 - Long.numberOfLeadingZeros(micros));
+        buckets[Math.min(bucket, NUM_BUCKETS - 1)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return mean duration in milliseconds, 0 if nothing was recorded
+     */
+    public double getMeanMillis() {
+        long n = count.sum();
+        return (n == 0) ? 0.0 : (totalNanos.sum() / 1e6 / n);
+    }
+
+    /**
+     * @return counts per bucket
+     */
+    public long[] getCounts() {
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @return the exclusive upper bound of each bucket in microseconds, the
+     *         last bucket being unbounded (<code>Long.MAX_VALUE</code>)
+     */
+    public long[] getUpperBoundsMicros() {
+        long[] bounds = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS - 1; i++) {
+            bounds[i] = 1L << i;
+        }
+        bounds[NUM_BUCKETS - 1] = Long.MAX_VALUE;
+        return bounds;
+    }
+
+    /**
+     * @param fraction
+     *            e.g. 0.99 for the 99th percentile
+     * @return upper bound in milliseconds of the bucket holding the
+     *         percentile, 0 if nothing was recorded
+     */
+    public double getPercentileMillis(double fraction) {
+        long[] counts = getCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+        long target = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return (1L << (NUM_BUCKETS - 1)) / 1000.0;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalNanos.reset();
+    }
+}
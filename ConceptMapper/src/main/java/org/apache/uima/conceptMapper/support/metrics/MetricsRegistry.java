@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.metrics;
+
+/**
+ * Receives runtime events from ConceptMapper, e.g. to count them or to
+ * forward them to a monitoring system.
+ *
+ * Implementations may be called from several annotator instances (threads) at
+ * once and must be thread safe. They should be cheap, as they are called for
+ * every token looked up.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * A document has been processed.
+     *
+     * @param elapsedNanos
+     *            time spent in <code>process</code> for the document
+     */
+    public void documentProcessed(long elapsedNanos);
+
+    /**
+     * A span (e.g. a sentence) has been processed.
+     *
+     * @param tokenCount
+     *            number of tokens in the span
+     */
+    public void spanProcessed(int tokenCount);
+
+    /**
+     * A token has been looked up in the dictionary.
+     *
+     * @param hit
+     *            true if there are entries for the token
+     */
+    public void dictionaryLookup(boolean hit);
+
+    /**
+     * The matches for a window of tokens have been looked up in the window
+     * lookup cache.
+     *
+     * @param hit
+     *            true if they were cached
+     */
+    public void lookupCacheAccess(boolean hit);
+
+    /**
+     * Dictionary entries have been compared against the document tokens.
+     *
+     * @param count
+     *            number of entries examined
+     */
+    public void candidatesExamined(int count);
+
+    /**
+     * A result annotation has been created.
+     *
+     * @param searchStrategy
+     *            the search strategy which found the match, one of the
+     *            <code>ConceptMapper.PARAMVALUE_*</code> constants
+     */
+    public void matchEmitted(int searchStrategy);
+
+}
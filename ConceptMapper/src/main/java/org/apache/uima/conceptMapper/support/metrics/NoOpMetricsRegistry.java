@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.metrics;
+
+/**
+ * Registry ignoring all events, used when metrics are disabled.
+ */
+public final class NoOpMetricsRegistry implements MetricsRegistry {
+
+    public static final NoOpMetricsRegistry INSTANCE = new NoOpMetricsRegistry();
+
+    private NoOpMetricsRegistry() {
+    }
+
+    public void documentProcessed(long elapsedNanos) {
+    }
+
+    public void spanProcessed(int tokenCount) {
+    }
+
+    public void dictionaryLookup(boolean hit) {
+    }
+
+    public void lookupCacheAccess(boolean hit) {
+    }
+
+    public void candidatesExamined(int count) {
+    }
+
+    public void matchEmitted(int searchStrategy) {
+    }
+}
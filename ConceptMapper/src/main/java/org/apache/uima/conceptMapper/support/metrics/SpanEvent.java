@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event for the matching of a single span (e.g. a sentence).
+ * Only spans taking at least 1 ms are recorded by default.
+ */
+@Name("org.apache.uima.conceptMapper.Span")
+@Label("ConceptMapper Span")
+@Category({ "UIMA", "ConceptMapper" })
+@Description("Dictionary matching within a span")
+@StackTrace(false)
+@Threshold("1 ms")
+public class SpanEvent extends Event {
+
+    @Label("Span Begin")
+    @Description("Character offset of the start of the span")
+    public int spanBegin;
+
+    @Label("Span End")
+    public int spanEnd;
+
+    @Label("Span Length")
+    @Description("Number of tokens in the span")
+    public int spanLength;
+
+    @Label("Candidates Scanned")
+    @Description("Number of dictionary entries compared against the span")
+    public long candidatesScanned;
+
+    @Label("Matches Found")
+    public int matchesFound;
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.stemmer;
+
+/**
+ * Base class for {@link CharBufferStemmer}s, implementing the <code>String</code> based methods of
+ * the {@link Stemmer} interface on top of {@link #stem(char[], int)}. Instances keep a reusable
+ * buffer and are therefore not thread safe.
+ */
+public abstract class AbstractCharBufferStemmer implements CharBufferStemmer {
+
+  private char[] buffer = new char[64];
+
+  public String stem(String token) {
+    int length = token.length();
+    if (buffer.length < length) {
+      buffer = new char[Math.max(length, buffer.length * 2)];
+    }
+    token.getChars(0, length, buffer, 0);
+    int stemLength = stem(buffer, length);
+    if (isUnchanged(token, stemLength)) {
+      return token;
+    }
+    return new String(buffer, 0, stemLength);
+  }
+
+  private boolean isUnchanged(String token, int stemLength) {
+    if (stemLength != token.length()) {
+      return false;
+    }
+    for (int i = 0; i < stemLength; i++) {
+      if (buffer[i] != token.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stem the characters of <code>text</code> between <code>start</code> (inclusive) and
+   * <code>end</code> (exclusive).
+   * 
+   * @return the stem
+   */
+  public String stem(CharSequence text, int start, int end) {
+    int length = end - start;
+    if (buffer.length < length) {
+      buffer = new char[Math.max(length, buffer.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      buffer[i] = text.charAt(start + i);
+    }
+    return new String(buffer, 0, stem(buffer, length));
+  }
+
+  public void initialize(String dictionary) {
+    // no dictionary needed
+  }
+
+  /**
+   * @return true if the first <code>length</code> characters of <code>buffer</code> end with
+   *         <code>suffix</code>
+   */
+  protected static boolean endsWith(char[] buffer, int length, String suffix) {
+    int suffixLength = suffix.length();
+    if (suffixLength > length) {
+      return false;
+    }
+    int offset = length - suffixLength;
+    for (int i = 0; i < suffixLength; i++) {
+      if (buffer[offset + i] != suffix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the first <code>length</code> characters of <code>buffer</code> are exactly
+   *         <code>word</code>
+   */
+  protected static boolean equals(char[] buffer, int length, String word) {
+    return (length == word.length()) && endsWith(buffer, length, word);
+  }
+
+  /**
+   * Replace the last <code>suffixLength</code> characters of the token by
+   * <code>replacement</code>.
+   * 
+   * @return the new length
+   */
+  protected static int replaceSuffix(char[] buffer, int length, int suffixLength, String replacement) {
+    int offset = length - suffixLength;
+    replacement.getChars(0, replacement.length(), buffer, offset);
+    return offset + replacement.length();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.stemmer;
+
+import java.io.FileNotFoundException;
+import java.text.ParseException;
+
+import org.apache.uima.conceptMapper.support.cache.BoundedConcurrentCache;
+
+/**
+ * Stemmer decorator which remembers the stems of recently seen tokens.
+ *
+ * Token frequencies are highly skewed, so most calls can be answered from the cache instead of
+ * running the (possibly expensive) underlying stemmer. Each <code>CachingStemmer</code> has a
+ * cache of its own, as stemmers of the same class may be initialized differently, e.g. with
+ * another dictionary, and yield other stems. The cache is thread safe, but the underlying stemmer
+ * is called directly on a miss, so a <code>CachingStemmer</code> is used from several threads
+ * only if its stemmer is thread safe.
+ */
+public class CachingStemmer implements Stemmer {
+
+  private final Stemmer stemmer;
+
+  private final BoundedConcurrentCache<String, String> cache;
+
+  /**
+   * Wrap a stemmer, with a new cache.
+   *
+   * @param stemmer
+   *          the stemmer to wrap
+   * @param maxEntries
+   *          maximum number of stems to cache
+   */
+  public CachingStemmer(Stemmer stemmer, int maxEntries) {
+    this(stemmer, new BoundedConcurrentCache<String, String>(maxEntries));
+  }
+
+  /**
+   * @param stemmer
+   *          the stemmer to wrap
+   * @param cache
+   *          the cache to use, mapping tokens to their stems; it must only be shared with caching
+   *          stemmers whose stemmers yield the same stems
+   */
+  public CachingStemmer(Stemmer stemmer, BoundedConcurrentCache<String, String> cache) {
+    super();
+    this.stemmer = stemmer;
+    this.cache = cache;
+  }
+
+  public String stem(String token) {
+    String result = cache.get(token);
+    if (result == null) {
+      result = stemmer.stem(token);
+      if (result != null) {
+        cache.put(token, result);
+      }
+    }
+    return result;
+  }
+
+  public void initialize(String dictionary) throws FileNotFoundException, ParseException {
+    stemmer.initialize(dictionary);
+    // the stems may differ with the new dictionary
+    cache.clear();
+  }
+
+  /**
+   * @return the wrapped stemmer
+   */
+  public Stemmer getStemmer() {
+    return stemmer;
+  }
+
+  /**
+   * @return the cache, e.g. to read its hit and miss counts
+   */
+  public BoundedConcurrentCache<String, String> getCache() {
+    return cache;
+  }
+
+  public String toString() {
+    return "CachingStemmer(" + stemmer.getClass().getName() + ", " + cache + ")";
+  }
+}
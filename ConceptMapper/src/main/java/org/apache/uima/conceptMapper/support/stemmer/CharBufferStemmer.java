@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.stemmer;
+
+/**
+ * Stemmer which can work directly on a character buffer, without creating intermediate
+ * <code>String</code>s.
+ * 
+ * Callers holding the token in a <code>char[]</code> (e.g. while tokenizing or normalizing) should
+ * use {@link #stem(char[], int)}; {@link Stemmer#stem(String)} remains available for all other
+ * uses.
+ */
+public interface CharBufferStemmer extends Stemmer {
+
+  /**
+   * Stem the token held in the first <code>length</code> characters of <code>buffer</code>, in
+   * place. The stem is never longer than the token.
+   * 
+   * @param buffer
+   *          buffer holding the token, starting at index 0; overwritten with the stem
+   * @param length
+   *          length of the token
+   * @return length of the stem
+   */
+  public int stem(char[] buffer, int length);
+
+}
@@ -0,0 +1,383 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.stemmer;
+
+/**
+ * The English (Porter2) stemming algorithm, as defined by the Snowball project, working in place
+ * on a character buffer.
+ *
+ * Expects lowercase input; other characters are treated as consonants. Not thread safe.
+ */
+public class EnglishPorter2Stemmer extends AbstractCharBufferStemmer {
+
+  /** words with irregular stems, checked before any other processing */
+  private static final String[][] EXCEPTIONS1 = { { "skis", "ski" }, { "skies", "sky" },
+      { "dying", "die" }, { "lying", "lie" }, { "tying", "tie" }, { "idly", "idl" },
+      { "gently", "gentl" }, { "ugly", "ugli" }, { "early", "earli" }, { "only", "onli" },
+      { "singly", "singl" }, { "sky", "sky" }, { "news", "news" }, { "howe", "howe" },
+      { "atlas", "atlas" }, { "cosmos", "cosmos" }, { "bias", "bias" }, { "andes", "andes" } };
+
+  /** words left alone after step 1a */
+  private static final String[] EXCEPTIONS2 = { "inning", "outing", "canning", "herring", "earring",
+      "proceed", "exceed", "succeed" };
+
+  /** prefixes after which R1 starts, overriding the usual definition */
+  private static final String[] R1_PREFIXES = { "gener", "commun", "arsen" };
+
+  /** step 2 suffixes and their replacements, longest first */
+  private static final String[][] STEP2 = { { "ization", "ize" }, { "ational", "ate" },
+      { "fulness", "ful" }, { "ousness", "ous" }, { "iveness", "ive" }, { "tional", "tion" },
+      { "biliti", "ble" }, { "lessli", "less" }, { "entli", "ent" }, { "ation", "ate" },
+      { "alism", "al" }, { "aliti", "al" }, { "ousli", "ous" }, { "iviti", "ive" },
+      { "fulli", "ful" }, { "enci", "ence" }, { "anci", "ance" }, { "abli", "able" },
+      { "izer", "ize" }, { "ator", "ate" }, { "alli", "al" }, { "bli", "ble" }, { "ogi", "og" },
+      { "li", "" } };
+
+  /** step 3 suffixes and their replacements, longest first */
+  private static final String[][] STEP3 = { { "ational", "ate" }, { "tional", "tion" },
+      { "alize", "al" }, { "icate", "ic" }, { "iciti", "ic" }, { "ative", "" }, { "ical", "ic" },
+      { "ness", "" }, { "ful", "" } };
+
+  /** step 4 suffixes, longest first */
+  private static final String[] STEP4 = { "ement", "ance", "ence", "able", "ible", "ment", "ant",
+      "ent", "ism", "ate", "iti", "ous", "ive", "ize", "ion", "al", "er", "ic" };
+
+  /** start of region R1 of the current word */
+  private int p1;
+
+  /** start of region R2 of the current word */
+  private int p2;
+
+  public int stem(char[] b, int length) {
+    for (String[] exception : EXCEPTIONS1) {
+      if (equals(b, length, exception[0])) {
+        return replaceSuffix(b, length, length, exception[1]);
+      }
+    }
+    if (length < 3) {
+      return length;
+    }
+
+    // prelude
+    int len = length;
+    if (b[0] == '\'') {
+      System.arraycopy(b, 1, b, 0, len - 1);
+      len--;
+    }
+    boolean foundY = false;
+    for (int i = 0; i < len; i++) {
+      if ((b[i] == 'y') && ((i == 0) || isVowel(b[i - 1]))) {
+        b[i] = 'Y';
+        foundY = true;
+      }
+    }
+    markRegions(b, len);
+
+    len = step0(b, len);
+    len = step1a(b, len);
+    if (!isException2(b, len)) {
+      len = step1b(b, len);
+      step1c(b, len);
+      len = step2(b, len);
+      len = step3(b, len);
+      len = step4(b, len);
+      len = step5(b, len);
+    }
+
+    // postlude
+    if (foundY) {
+      for (int i = 0; i < len; i++) {
+        if (b[i] == 'Y') {
+          b[i] = 'y';
+        }
+      }
+    }
+    return len;
+  }
+
+  private static boolean isVowel(char c) {
+    switch (c) {
+    case 'a':
+    case 'e':
+    case 'i':
+    case 'o':
+    case 'u':
+    case 'y':
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private static boolean isDouble(char[] b, int len) {
+    if (len < 2) {
+      return false;
+    }
+    char c = b[len - 1];
+    if (c != b[len - 2]) {
+      return false;
+    }
+    switch (c) {
+    case 'b':
+    case 'd':
+    case 'f':
+    case 'g':
+    case 'm':
+    case 'n':
+    case 'p':
+    case 'r':
+    case 't':
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private static boolean isValidLiEnding(char c) {
+    switch (c) {
+    case 'c':
+    case 'd':
+    case 'e':
+    case 'g':
+    case 'h':
+    case 'k':
+    case 'm':
+    case 'n':
+    case 'r':
+    case 't':
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * @return true if the word ends in a short syllable: a non-vowel other than w, x or Y preceded
+   *         by a vowel preceded by a non-vowel, or a two letter word of a vowel and a non-vowel
+   */
+  private static boolean endsWithShortSyllable(char[] b, int len) {
+    if (len == 2) {
+      return isVowel(b[0]) && (!isVowel(b[1]));
+    }
+    if (len > 2) {
+      char last = b[len - 1];
+      return (!isVowel(last)) && (last != 'w') && (last != 'x') && (last != 'Y')
+              && isVowel(b[len - 2]) && (!isVowel(b[len - 3]));
+    }
+    return false;
+  }
+
+  private static boolean containsVowel(char[] b, int end) {
+    for (int i = 0; i < end; i++) {
+      if (isVowel(b[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the position after the first non-vowel following a vowel, starting at
+   *         <code>from</code>, or <code>len</code> if there is none
+   */
+  private static int regionStart(char[] b, int len, int from) {
+    int i = from;
+    while ((i < len) && (!isVowel(b[i]))) {
+      i++;
+    }
+    i++;
+    while ((i < len) && isVowel(b[i])) {
+      i++;
+    }
+    return (i < len) ? i + 1 : len;
+  }
+
+  private void markRegions(char[] b, int len) {
+    p1 = -1;
+    for (String prefix : R1_PREFIXES) {
+      if ((len >= prefix.length()) && startsWith(b, prefix)) {
+        p1 = prefix.length();
+        break;
+      }
+    }
+    if (p1 < 0) {
+      p1 = regionStart(b, len, 0);
+    }
+    p2 = regionStart(b, len, p1);
+  }
+
+  private static boolean startsWith(char[] b, String prefix) {
+    for (int i = 0; i < prefix.length(); i++) {
+      if (b[i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isException2(char[] b, int len) {
+    for (String exception : EXCEPTIONS2) {
+      if (equals(b, len, exception)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** remove possessive apostrophes */
+  private int step0(char[] b, int len) {
+    if (endsWith(b, len, "'s'")) {
+      return len - 3;
+    }
+    if (endsWith(b, len, "'s")) {
+      return len - 2;
+    }
+    if (endsWith(b, len, "'")) {
+      return len - 1;
+    }
+    return len;
+  }
+
+  /** plurals */
+  private int step1a(char[] b, int len) {
+    if (endsWith(b, len, "sses")) {
+      return len - 2;
+    }
+    if (endsWith(b, len, "ied") || endsWith(b, len, "ies")) {
+      // "i" if preceded by more than one letter, otherwise "ie"
+      return (len > 4) ? len - 2 : len - 1;
+    }
+    if (endsWith(b, len, "us") || endsWith(b, len, "ss")) {
+      return len;
+    }
+    if (endsWith(b, len, "s") && containsVowel(b, len - 2)) {
+      return len - 1;
+    }
+    return len;
+  }
+
+  /** past tense and gerunds */
+  private int step1b(char[] b, int len) {
+    if (endsWith(b, len, "eedly")) {
+      return (len - 5 >= p1) ? len - 3 : len;
+    }
+    if (endsWith(b, len, "eed")) {
+      return (len - 3 >= p1) ? len - 1 : len;
+    }
+    int suffixLength;
+    if (endsWith(b, len, "ingly")) {
+      suffixLength = 5;
+    } else if (endsWith(b, len, "edly")) {
+      suffixLength = 4;
+    } else if (endsWith(b, len, "ing")) {
+      suffixLength = 3;
+    } else if (endsWith(b, len, "ed")) {
+      suffixLength = 2;
+    } else {
+      return len;
+    }
+    if (!containsVowel(b, len - suffixLength)) {
+      return len;
+    }
+    len -= suffixLength;
+    if (endsWith(b, len, "at") || endsWith(b, len, "bl") || endsWith(b, len, "iz")) {
+      b[len++] = 'e';
+    } else if (isDouble(b, len)) {
+      len--;
+    } else if ((len == p1) && endsWithShortSyllable(b, len)) {
+      b[len++] = 'e';
+    }
+    return len;
+  }
+
+  /** final y after a consonant */
+  private void step1c(char[] b, int len) {
+    if ((len > 2) && ((b[len - 1] == 'y') || (b[len - 1] == 'Y')) && (!isVowel(b[len - 2]))) {
+      b[len - 1] = 'i';
+    }
+  }
+
+  private int step2(char[] b, int len) {
+    for (String[] rule : STEP2) {
+      String suffix = rule[0];
+      if (endsWith(b, len, suffix)) {
+        int stemEnd = len - suffix.length();
+        if (stemEnd < p1) {
+          return len;
+        }
+        if (suffix.equals("ogi") && ((stemEnd == 0) || (b[stemEnd - 1] != 'l'))) {
+          return len;
+        }
+        if (suffix.equals("li") && ((stemEnd == 0) || (!isValidLiEnding(b[stemEnd - 1])))) {
+          return len;
+        }
+        return replaceSuffix(b, len, suffix.length(), rule[1]);
+      }
+    }
+    return len;
+  }
+
+  private int step3(char[] b, int len) {
+    for (String[] rule : STEP3) {
+      String suffix = rule[0];
+      if (endsWith(b, len, suffix)) {
+        int stemEnd = len - suffix.length();
+        if (stemEnd < p1) {
+          return len;
+        }
+        if (suffix.equals("ative") && (stemEnd < p2)) {
+          return len;
+        }
+        return replaceSuffix(b, len, suffix.length(), rule[1]);
+      }
+    }
+    return len;
+  }
+
+  private int step4(char[] b, int len) {
+    for (String suffix : STEP4) {
+      if (endsWith(b, len, suffix)) {
+        int stemEnd = len - suffix.length();
+        if (stemEnd < p2) {
+          return len;
+        }
+        if (suffix.equals("ion") && ((stemEnd == 0) || ((b[stemEnd - 1] != 's') && (b[stemEnd - 1] != 't')))) {
+          return len;
+        }
+        return stemEnd;
+      }
+    }
+    return len;
+  }
+
+  private int step5(char[] b, int len) {
+    if (endsWith(b, len, "e")) {
+      int stemEnd = len - 1;
+      if ((stemEnd >= p2) || ((stemEnd >= p1) && (!endsWithShortSyllable(b, stemEnd)))) {
+        return stemEnd;
+      }
+    } else if (endsWith(b, len, "l")) {
+      int stemEnd = len - 1;
+      if ((stemEnd >= p2) && (stemEnd > 0) && (b[stemEnd - 1] == 'l')) {
+        return stemEnd;
+      }
+    }
+    return len;
+  }
+}
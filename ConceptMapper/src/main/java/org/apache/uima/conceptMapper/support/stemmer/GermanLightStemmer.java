@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.stemmer;
+
+/**
+ * Light stemmer for German, following J. Savoy, "Light Stemming Approaches for the French,
+ * Portuguese, German and Hungarian Languages" (2006). Removes common inflectional suffixes and
+ * folds umlauts and accented vowels, working in place on a character buffer.
+ *
+ * Expects lowercase input. Not thread safe.
+ */
+public class GermanLightStemmer extends AbstractCharBufferStemmer {
+
+  public int stem(char[] b, int length) {
+    for (int i = 0; i < length; i++) {
+      switch (b[i]) {
+      case '\u00e4':
+      case '\u00e0':
+      case '\u00e1':
+      case '\u00e2':
+        b[i] = 'a';
+        break;
+      case '\u00f6':
+      case '\u00f2':
+      case '\u00f3':
+      case '\u00f4':
+        b[i] = 'o';
+        break;
+      case '\u00ef':
+      case '\u00ec':
+      case '\u00ed':
+      case '\u00ee':
+        b[i] = 'i';
+        break;
+      case '\u00fc':
+      case '\u00f9':
+      case '\u00fa':
+      case '\u00fb':
+        b[i] = 'u';
+        break;
+      default:
+        break;
+      }
+    }
+    return step2(b, step1(b, length));
+  }
+
+  /** @return true if <code>c</code> may precede an "s" or "st" ending */
+  private static boolean isStEnding(char c) {
+    switch (c) {
+    case 'b':
+    case 'd':
+    case 'f':
+    case 'g':
+    case 'h':
+    case 'k':
+    case 'l':
+    case 'm':
+    case 'n':
+    case 't':
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private static int step1(char[] b, int len) {
+    if ((len > 5) && endsWith(b, len, "ern")) {
+      return len - 3;
+    }
+    if ((len > 4) && (endsWith(b, len, "em") || endsWith(b, len, "en") || endsWith(b, len, "er")
+            || endsWith(b, len, "es"))) {
+      return len - 2;
+    }
+    if ((len > 3) && (b[len - 1] == 'e')) {
+      return len - 1;
+    }
+    if ((len > 3) && (b[len - 1] == 's') && isStEnding(b[len - 2])) {
+      return len - 1;
+    }
+    return len;
+  }
+
+  private static int step2(char[] b, int len) {
+    if ((len > 5) && endsWith(b, len, "est")) {
+      return len - 3;
+    }
+    if ((len > 4) && (endsWith(b, len, "er") || endsWith(b, len, "en"))) {
+      return len - 2;
+    }
+    if ((len > 4) && endsWith(b, len, "st") && isStEnding(b[len - 3])) {
+      return len - 2;
+    }
+    return len;
+  }
+}
@@ -19,14 +19,17 @@
 
 package org.apache.uima.conceptMapper.support.tokenizer;
 
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.analysis_engine.ResultSpecification;
 import org.apache.uima.analysis_engine.annotator.AnnotatorConfigurationException;
 import org.apache.uima.UimaContext;
+import org.apache.uima.conceptMapper.support.stemmer.CachingStemmer;
 import org.apache.uima.conceptMapper.support.stemmer.Stemmer;
+import org.apache.uima.conceptMapper.support.tokens.CaseFoldStep;
+import org.apache.uima.conceptMapper.support.tokens.NormalizationChain;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
@@ -42,7 +45,9 @@ import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
  * The tokenizer will optionally perform stemming and case normalization on the tokens, and the set
  * of characters that delimit tokens may be specified. The default stemmer is the Snowball Porter
  * stemmer, but any stemmer may be supplied to the tokenizer as long as it implements the
- * {@link org.apache.uima.conceptMapper.support.stemmer.Stemmer Stemmer}interface.
+ * {@link org.apache.uima.conceptMapper.support.stemmer.Stemmer Stemmer}interface. Stemmers implementing
+ * {@link org.apache.uima.conceptMapper.support.stemmer.CharBufferStemmer CharBufferStemmer} are applied to a
+ * reused character buffer, without intermediate strings.
  * 
  */
 public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
@@ -60,15 +65,35 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
   /** Configuration parameter key/label for the stemmer class spec */
   public static final String PARAM_STEMMER_CLASS = "Stemmer";
 
+  /**
+   * Configuration parameter key/label for the number of stems to cache. If greater than zero, the
+   * stemmer given by {@link #PARAM_STEMMER_CLASS} is wrapped in a {@link CachingStemmer}, with a
+   * cache of its own.
+   */
+  public static final String PARAM_STEMMER_CACHE_SIZE = "stemmerCacheSize";
+
   /** Configuration parameter key/label for the token delimiters string */
   public static final String PARAM_TOKEN_DELIM = "tokenDelimiters";
 
+  /**
+   * Configuration parameter key/label for the flag to only set the text feature of tokens that
+   * case folding or stemming applies to. Tokens left without text are to be read via their covered
+   * text.
+   */
+  public static final String PARAM_SKIP_UNNORMALIZED_TEXT = "skipUnnormalizedText";
+
   /** The current offset into {@link TextToken.text} */
   private int offset;
 
   /** The total length of {@link TextToken.text} */
   private int length;
 
+  /** Start offset of the token found by the last call to {@link #nextTokenBounds()} */
+  private int tokenStart;
+
+  /** case folding and stemming applied to the token text, built on first use */
+  private NormalizationChain normalizationChain;
+
   /** Base whitespace token delimiters */
   private String wsDelim = " \t\n\r\f";
 
@@ -83,6 +108,12 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
    */
   private String delim = wsDelim + extraDelim;
 
+  /**
+   * Lookup table over the Basic Multilingual Plane, true for every character in {@link #delim}.
+   * Built whenever the delimiters change.
+   */
+  private boolean[] delimTable = buildDelimTable(delim);
+
   /** Case folding flag for folding tokens with initial cap. */
   private boolean caseFoldInitCap = false;
 
@@ -98,29 +129,17 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
   /** Stemming on/off flag. If true, tokens will be stemmed by the tokenizer. */
   private boolean stemTokens = false;
 
-  /**
-   * regular expression pattern used to identify terms with an initial capital letter followed by
-   * all lowercase letters.
-   */
-  private Pattern capPat = null;
+  /** Number of stems to cache, 0 to disable caching */
+  private int stemmerCacheSize = 0;
 
-  /**
-   * regular expression pattern used to identify terms with at least one digit character in them.
-   */
-  private Pattern hasDigit = null;
+  /** If true, the text feature is only set for tokens changed by case folding or stemming */
+  private boolean skipUnnormalizedText = false;
 
   /**
-   * Create a new <code>OffsetTokenizer</code>. Initializes the default stemmer and sets up the
-   * regular expressions for the various case folding options.
+   * Create a new <code>OffsetTokenizer</code>.
    */
   public OffsetTokenizer() {
-    try {
-      capPat = Pattern.compile("^[A-Z][a-z]+$");
-      hasDigit = Pattern.compile("[0-9]");
-    } catch (PatternSyntaxException e) {
-      e.printStackTrace();
-    }
-
+    super();
   }
 
 
@@ -157,6 +176,7 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
    */
   public void setStemmer(Stemmer stemmer) {
     this.stemmer = stemmer;
+    normalizationChain = null;
   }
 
   public TokenAnnotation newToken(JCas jcas) {
@@ -166,29 +186,84 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
 
 
   public TokenAnnotation nextToken(JCas jcas) {
-    StringBuilder token = new StringBuilder();
-    // System.out.println("in NextToken");
+    if (!nextTokenBounds()) {
+      return null;
+    }
+    TokenAnnotation returnVal = newToken(jcas);
+    returnVal.setBegin(tokenStart);
+    returnVal.setEnd(offset);
+    // only materialize the token text if it will be stored
+    if ((!skipUnnormalizedText) || shouldStem() || shouldFoldCase(getText(), tokenStart, offset)) {
+      returnVal.setText(normalizedToken());
+    }
+    return returnVal;
+  }
+
+  /**
+   * Advance to the next token without creating any objects. On success, the token spans from
+   * {@link #tokenStart} to the current {@link #offset}.
+   * 
+   * @return true if another token was found, false at the end of the text
+   */
+  protected boolean nextTokenBounds() {
+    final String text = getText();
+    final boolean[] table = delimTable;
     // skip any delimiters
-    while ((offset < length) && (getDelim().indexOf(getText().charAt((offset))) >= 0)) {
+    while ((offset < length) && isDelimiter(table, text.charAt(offset))) {
       offset += 1;
     }
+    if (offset >= length) {
+      return false;
+    }
+    tokenStart = offset;
+    while ((offset < length) && (!isDelimiter(table, text.charAt(offset)))) {
+      offset += 1;
+    }
+    return true;
+  }
+
+  /**
+   * @return the case folded and stemmed text of the current token
+   */
+  private String normalizedToken() {
+    if (normalizationChain == null) {
+      normalizationChain = NormalizationChain.create(getNormalizationSteps(), getStemmer());
+    }
+    return normalizationChain.normalize(getText(), tokenStart, offset);
+  }
 
-    if (offset < length) {
-      int start = offset;
-      while ((offset < length) && (getDelim().indexOf(getText().charAt((offset))) < 0)) {
-        token.append(getText().charAt(offset));
-        offset += 1;
+  /**
+   * @return the names of the {@link NormalizationChain} steps corresponding to the case folding
+   *         and stemming settings
+   */
+  private String[] getNormalizationSteps() {
+    List<String> steps = new ArrayList<String>();
+    if (caseFoldAll) {
+      steps.add(NormalizationChain.STEP_IGNOREALL);
+    } else {
+      if (caseFoldInitCap) {
+        steps.add(NormalizationChain.STEP_INSENSITIVE);
+      }
+      if (caseFoldDigit) {
+        steps.add(NormalizationChain.STEP_DIGITFOLD);
       }
-      TokenAnnotation returnVal = newToken(jcas);
-      // System.out.println("token = " + token.toString() + " fold = " +
-      // foldCase(token.toString()));
-      returnVal.setText(stem(foldCase(token.toString())));
-      returnVal.setBegin(start);
-      returnVal.setEnd(offset);
-
-      return returnVal;
     }
-    return null;
+    if (shouldStem()) {
+      steps.add(NormalizationChain.STEP_STEM);
+    }
+    return steps.toArray(new String[steps.size()]);
+  }
+
+  private static boolean isDelimiter(boolean[] table, char c) {
+    return table[c];
+  }
+
+  private static boolean[] buildDelimTable(String delimiters) {
+    boolean[] table = new boolean[Character.MAX_VALUE + 1];
+    for (int i = 0; i < delimiters.length(); i++) {
+      table[delimiters.charAt(i)] = true;
+    }
+    return table;
   }
 
 
@@ -216,8 +291,16 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
 
 
   public boolean shouldFoldCase(String token) {
-    return (caseFoldAll || (caseFoldInitCap && capPat.matcher(token).matches()) || (caseFoldDigit && hasDigit
-            .matcher(token).find()));
+    return shouldFoldCase(token, 0, token.length());
+  }
+
+  /**
+   * Same as {@link #shouldFoldCase(String)}, applied to the characters of <code>text</code>
+   * between <code>start</code> (inclusive) and <code>end</code> (exclusive).
+   */
+  public boolean shouldFoldCase(CharSequence text, int start, int end) {
+    return (caseFoldAll || (caseFoldInitCap && CaseFoldStep.isInitCap(text, start, end)) || (caseFoldDigit && CaseFoldStep
+            .hasDigit(text, start, end)));
   }
 
   public boolean shouldStem() {
@@ -232,7 +315,7 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
    *          The new set of delimiters.
    */
   protected void setDelim(String delim) {
-    this.delim = wsDelim + delim;
+    overrideDelim(wsDelim + delim);
   }
 
   /**
@@ -243,6 +326,9 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
    *          The new set of delimiters.
    */
   protected void overrideDelim(String delim) {
+    if (!delim.equals(this.delim)) {
+      delimTable = buildDelimTable(delim);
+    }
     this.delim = delim;
   }
 
@@ -254,6 +340,7 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
    */
   private void setStemming(boolean flag) {
     stemTokens = flag;
+    normalizationChain = null;
   }
 
   /**
@@ -264,6 +351,7 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
    */
   private void setCaseFoldInitCap(boolean flag) {
     caseFoldInitCap = flag;
+    normalizationChain = null;
   }
 
   /**
@@ -274,6 +362,7 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
    */
   private void setCaseFoldDigit(boolean flag) {
     caseFoldDigit = flag;
+    normalizationChain = null;
   }
 
   /**
@@ -285,6 +374,7 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
    */
   private void setCaseFoldAll(boolean flag) {
     caseFoldAll = flag;
+    normalizationChain = null;
   }
 
   /**
@@ -363,6 +453,10 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
     for (int i = 0; i < configParameterNames.length; i++) {
       processConfigurationParameter(configParameterNames[i], configParameters[i]);
     }
+    // wrap once all parameters are known, as they may come in any order
+    if ((stemmerCacheSize > 0) && (getStemmer() != null) && (!(getStemmer() instanceof CachingStemmer))) {
+      setStemmer(new CachingStemmer(getStemmer(), stemmerCacheSize));
+    }
   }
 
 
@@ -418,6 +512,26 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
     }
   }
 
+  /**
+   * Tokenize a string directly, without going through a CAS. Uses the same delimiters, case
+   * folding and stemming as {@link #process(JCas)}.
+   * 
+   * @param documentText
+   *          the text to tokenize
+   * @param normalize
+   *          if true, the tokens are case folded and stemmed as for the text feature of the token
+   *          annotations, otherwise the tokens are returned as they appear in the text (as with the
+   *          covered text of the annotations)
+   * @param tokens
+   *          list to add the tokens to
+   */
+  public void tokenize(String documentText, boolean normalize, List<String> tokens) {
+    setText(documentText);
+    while (nextTokenBounds()) {
+      tokens.add(normalize ? normalizedToken() : getText().substring(tokenStart, offset));
+    }
+  }
+
   /**
    * @param configParameterName
    * @param configParameterValue
@@ -452,6 +566,12 @@ public class OffsetTokenizer  extends JCasAnnotator_ImplBase {
       if (tokenDelimiters != null) {
         this.setDelim(tokenDelimiters);
       }
+    } else if ((configParameterName.equals(PARAM_STEMMER_CACHE_SIZE)) && (configParameterValue != null)) {
+      stemmerCacheSize = Integer.parseInt(configParameterValue.toString());
+    } else if ((configParameterName.equals(PARAM_SKIP_UNNORMALIZED_TEXT))
+            && (configParameterValue != null)) {
+      // accept both Boolean and String valued parameter declarations
+      skipUnnormalizedText = Boolean.parseBoolean(configParameterValue.toString());
     }
   }
 
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+/**
+ * Trims tokens and folds their case, diacritics and compatibility characters
+ * using {@link AccentFolder}.
+ */
+public final class AccentFoldStep implements NormalizationStep {
+
+    /** copy of the token being folded, as folding may lengthen it */
+    private char[] source = new char[64];
+
+    public void apply(TokenBuffer token) {
+        token.trim();
+        int length = token.getLength();
+        if (source.length < length) {
+            source = new char[Math.max(length, source.length * 2)];
+        }
+        System.arraycopy(token.getChars(), 0, source, 0, length);
+        char[] chars = token.ensureCapacity(length * AccentFolder.MAX_EXPANSION);
+        token.setLength(AccentFolder.fold(source, 0, length, chars));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Table driven folding of compatibility characters, diacritics and case.
+ *
+ * Each character of the Basic Multilingual Plane is mapped to its NFKD
+ * compatibility decomposition, lowercased, stripped of combining diacritical
+ * marks and recomposed (NFC). A few letters with diacritics that have no
+ * decomposition (o and l with stroke, d and h with bar, dotless i) and the
+ * ligatures ae, oe and sharp s are folded explicitly. The mappings are computed once,
+ * so folding a token is a single table lookup per character. Characters
+ * outside the BMP are left unchanged.
+ *
+ * Since characters are folded one at a time, compositions spanning several
+ * input characters (e.g. conjoining Hangul jamo) are not performed.
+ */
+public final class AccentFolder {
+
+    /** table value marking characters whose folded form is not a single char */
+    private static final char EXPANDED = '\uffff';
+
+    /** folded form of each BMP character, or {@link #EXPANDED} */
+    private static final char[] TABLE = new char[Character.MAX_VALUE + 1];
+
+    /** characters mapped to {@link #EXPANDED}, sorted */
+    private static final char[] EXPANSION_KEYS;
+
+    /** folded forms of {@link #EXPANSION_KEYS}, empty for removed characters */
+    private static final String[] EXPANSION_VALUES;
+
+    /** maximum number of characters a single character folds to */
+    public static final int MAX_EXPANSION;
+
+    static {
+        Map<Character, String> extra = new TreeMap<Character, String>();
+        extra.put('\u00df', "ss");
+        extra.put('\u00e6', "ae");
+        extra.put('\u00c6', "ae");
+        extra.put('\u0153', "oe");
+        extra.put('\u0152', "oe");
+        extra.put('\u00f8', "o");
+        extra.put('\u00d8', "o");
+        extra.put('\u0142', "l");
+        extra.put('\u0141', "l");
+        extra.put('\u0111', "d");
+        extra.put('\u0110', "d");
+        extra.put('\u0127', "h");
+        extra.put('\u0126', "h");
+        extra.put('\u0131', "i");
+
+        TreeMap<Character, String> expansions = new TreeMap<Character, String>();
+        int maxExpansion = 1;
+        for (int i = 0; i <= Character.MAX_VALUE; i++) {
+            char c = (char) i;
+            String folded = extra.get(c);
+            if (folded == null) {
+                folded = Character.isSurrogate(c) ? String.valueOf(c) : foldChar(c);
+            }
+            if ((folded.length() == 1) && (folded.charAt(0) != EXPANDED)) {
+                TABLE[i] = folded.charAt(0);
+            } else {
+                TABLE[i] = EXPANDED;
+                expansions.put(c, folded);
+                maxExpansion = Math.max(maxExpansion, folded.length());
+            }
+        }
+        EXPANSION_KEYS = new char[expansions.size()];
+        EXPANSION_VALUES = new String[expansions.size()];
+        int n = 0;
+        for (Map.Entry<Character, String> entry : expansions.entrySet()) {
+            EXPANSION_KEYS[n] = entry.getKey().charValue();
+            EXPANSION_VALUES[n] = entry.getValue();
+            n++;
+        }
+        MAX_EXPANSION = maxExpansion;
+    }
+
+    private AccentFolder() {
+    }
+
+    /**
+     * Compute the folded form of a single character, used to build the table.
+     */
+    private static String foldChar(char c) {
+        String s = String.valueOf(c);
+        if ((!isDiacritic(c)) && (Character.toLowerCase(c) == c) && Normalizer.isNormalized(s, Normalizer.Form.NFKD)) {
+            return s;
+        }
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFKD).toLowerCase(Locale.ROOT);
+        StringBuilder stripped = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char d = decomposed.charAt(i);
+            if (!isDiacritic(d)) {
+                stripped.append(d);
+            }
+        }
+        return Normalizer.normalize(stripped, Normalizer.Form.NFC);
+    }
+
+    /**
+     * @return true for the combining diacritical marks. Other nonspacing marks,
+     *         e.g. Indic vowel signs, carry meaning and are kept.
+     */
+    private static boolean isDiacritic(char c) {
+        return ((c >= '\u0300') && (c <= '\u036f')) || ((c >= '\u1ab0') && (c <= '\u1aff'))
+                || ((c >= '\u1dc0') && (c <= '\u1dff')) || ((c >= '\u20d0') && (c <= '\u20ff'))
+                || ((c >= '\ufe20') && (c <= '\ufe2f'));
+    }
+
+    /**
+     * Fold the characters of <code>token</code> from <code>start</code>
+     * (inclusive) to <code>end</code> (exclusive) into <code>out</code>.
+     *
+     * @param out
+     *            buffer receiving the folded characters, starting at index 0;
+     *            must hold at least <code>(end - start) * MAX_EXPANSION</code>
+     *            characters
+     * @return the number of characters written
+     */
+    public static int fold(CharSequence token, int start, int end, char[] out) {
+        final char[] table = TABLE;
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = token.charAt(i);
+            char folded = table[c];
+            if (folded != EXPANDED) {
+                out[length++] = folded;
+            } else {
+                String expansion = EXPANSION_VALUES[Arrays.binarySearch(EXPANSION_KEYS, c)];
+                for (int j = 0; j < expansion.length(); j++) {
+                    out[length++] = expansion.charAt(j);
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Same as {@link #fold(CharSequence, int, int, char[])}, reading from a
+     * character array, which must not be <code>out</code>.
+     */
+    public static int fold(char[] token, int start, int end, char[] out) {
+        final char[] table = TABLE;
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = token[i];
+            char folded = table[c];
+            if (folded != EXPANDED) {
+                out[length++] = folded;
+            } else {
+                String expansion = EXPANSION_VALUES[Arrays.binarySearch(EXPANSION_KEYS, c)];
+                for (int j = 0; j < expansion.length(); j++) {
+                    out[length++] = expansion.charAt(j);
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return the folded form of <code>token</code>
+     */
+    public static String fold(String token) {
+        char[] out = new char[token.length() * MAX_EXPANSION];
+        return new String(out, 0, fold(token, 0, token.length(), out));
+    }
+}
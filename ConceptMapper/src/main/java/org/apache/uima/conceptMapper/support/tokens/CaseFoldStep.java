@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+/**
+ * Lowercases (and trims) tokens, either all of them or only those of a given
+ * shape.
+ */
+public final class CaseFoldStep implements NormalizationStep {
+
+    /** fold every token */
+    public static final int FOLD_ALL = 0;
+
+    /** fold only ASCII capital letters followed by ASCII lowercase letters */
+    public static final int FOLD_INIT_CAP = 1;
+
+    /** fold only tokens containing an ASCII digit */
+    public static final int FOLD_DIGIT = 2;
+
+    private final int mode;
+
+    /**
+     * @param mode
+     *            one of {@link #FOLD_ALL}, {@link #FOLD_INIT_CAP} and
+     *            {@link #FOLD_DIGIT}
+     */
+    public CaseFoldStep(int mode) {
+        super();
+        this.mode = mode;
+    }
+
+    public void apply(TokenBuffer token) {
+        char[] chars = token.getChars();
+        int length = token.getLength();
+        switch (mode) {
+        case FOLD_INIT_CAP:
+            // only the initial capital needs folding
+            if (isInitCap(chars, length)) {
+                chars[0] += 'a' - 'A';
+            }
+            return;
+        case FOLD_DIGIT:
+            if (!hasDigit(chars, length)) {
+                return;
+            }
+            break;
+        default:
+            break;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if ((c >= 'A') && (c <= 'Z')) {
+                chars[i] = (char) (c + ('a' - 'A'));
+            } else if (c >= 0x80) {
+                // leave the full Unicode case mapping to the JDK
+                token.set(token.toString().trim().toLowerCase());
+                return;
+            }
+        }
+        token.trim();
+    }
+
+    /**
+     * @return true if the token is an ASCII capital letter followed by one or
+     *         more ASCII lowercase letters
+     */
+    public static boolean isInitCap(char[] chars, int length) {
+        if ((length < 2) || (chars[0] < 'A') || (chars[0] > 'Z')) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            if ((chars[i] < 'a') || (chars[i] > 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #isInitCap(char[], int)}, applied to the characters of
+     * <code>text</code> between <code>start</code> (inclusive) and
+     * <code>end</code> (exclusive).
+     */
+    public static boolean isInitCap(CharSequence text, int start, int end) {
+        if ((end - start < 2) || (text.charAt(start) < 'A') || (text.charAt(start) > 'Z')) {
+            return false;
+        }
+        for (int i = start + 1; i < end; i++) {
+            char c = text.charAt(i);
+            if ((c < 'a') || (c > 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the token contains at least one ASCII digit
+     */
+    public static boolean hasDigit(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if ((chars[i] >= '0') && (chars[i] <= '9')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #hasDigit(char[], int)}, applied to the characters of
+     * <code>text</code> between <code>start</code> (inclusive) and
+     * <code>end</code> (exclusive).
+     */
+    public static boolean hasDigit(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if ((c >= '0') && (c <= '9')) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+/**
+ * Replaces every decimal digit by '0', so that e.g. "T2" and "T3" normalize to
+ * the same form.
+ */
+public final class DigitMaskStep implements NormalizationStep {
+
+    public void apply(TokenBuffer token) {
+        char[] chars = token.getChars();
+        int length = token.getLength();
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (((c > '0') && (c <= '9')) || ((c >= 0x80) && Character.isDigit(c))) {
+                chars[i] = '0';
+            }
+        }
+    }
+}
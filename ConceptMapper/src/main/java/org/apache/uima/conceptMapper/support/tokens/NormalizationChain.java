@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.uima.conceptMapper.support.stemmer.Stemmer;
+
+/**
+ * A sequence of {@link NormalizationStep}s applied to each token.
+ * 
+ * The chain is assembled once, from a list of step names, into a fixed
+ * composition of steps; normalizing a token copies it into a reused
+ * {@link TokenBuffer}, runs the steps on it in place and creates at most the
+ * resulting string. Built-in step names are:
+ * <ul>
+ * <li><code>insensitive</code>, <code>digitfold</code>,
+ * <code>ignoreall</code>: case folding as for the <code>caseMatch</code>
+ * parameter</li>
+ * <li><code>accentfold</code>: case, diacritic and compatibility folding (see
+ * {@link AccentFolder})</li>
+ * <li><code>stem</code>: stemming with the configured stemmer</li>
+ * <li><code>digitmask</code>: replace all digits by '0'</li>
+ * </ul>
+ * Any other name is taken as the class name of a {@link NormalizationStep}.
+ * 
+ * Chains keep working storage and are not thread safe.
+ */
+public final class NormalizationChain {
+
+    public static final String STEP_INSENSITIVE = "insensitive";
+
+    public static final String STEP_DIGITFOLD = "digitfold";
+
+    public static final String STEP_IGNOREALL = "ignoreall";
+
+    public static final String STEP_ACCENTFOLD = "accentfold";
+
+    public static final String STEP_STEM = "stem";
+
+    public static final String STEP_DIGITMASK = "digitmask";
+
+    /** the composed steps, null for the empty chain */
+    private final NormalizationStep step;
+
+    private final String[] stepNames;
+
+    private final TokenBuffer token = new TokenBuffer();
+
+    private NormalizationChain(NormalizationStep step, String[] stepNames) {
+        super();
+        this.step = step;
+        this.stepNames = stepNames;
+    }
+
+    /**
+     * Assemble a chain.
+     * 
+     * @param stepNames
+     *            names of the steps, in the order they are to be applied
+     * @param stemmer
+     *            the stemmer used by the <code>stem</code> step, may be null
+     *            if there is none
+     * @return the chain
+     * @throws IllegalArgumentException
+     *             if a step name is neither built in nor the name of a
+     *             {@link NormalizationStep} class, or the <code>stem</code>
+     *             step is used without a stemmer
+     */
+    public static NormalizationChain create(String[] stepNames, Stemmer stemmer) {
+        NormalizationStep composed = null;
+        for (String stepName : stepNames) {
+            NormalizationStep next = createStep(stepName, stemmer);
+            composed = (composed == null) ? next : new Composition(composed, next);
+        }
+        return new NormalizationChain(composed, stepNames.clone());
+    }
+
+    /**
+     * @param caseMatch
+     *            value of the <code>caseMatch</code> parameter, may be null
+     * @param stem
+     *            true if tokens are to be stemmed after case folding
+     * @return the step names equivalent to the given case matching and
+     *         stemming settings
+     */
+    public static String[] defaultStepNames(String caseMatch, boolean stem) {
+        List<String> names = new ArrayList<String>();
+        if (caseMatch != null) {
+            for (String caseStep : new String[] { STEP_INSENSITIVE, STEP_DIGITFOLD, STEP_IGNOREALL, STEP_ACCENTFOLD }) {
+                if (caseMatch.equalsIgnoreCase(caseStep)) {
+                    names.add(caseStep);
+                }
+            }
+        }
+        if (stem) {
+            names.add(STEP_STEM);
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    private static NormalizationStep createStep(String stepName, Stemmer stemmer) {
+        if (stepName.equalsIgnoreCase(STEP_INSENSITIVE)) {
+            return new CaseFoldStep(CaseFoldStep.FOLD_INIT_CAP);
+        } else if (stepName.equalsIgnoreCase(STEP_DIGITFOLD)) {
+            return new CaseFoldStep(CaseFoldStep.FOLD_DIGIT);
+        } else if (stepName.equalsIgnoreCase(STEP_IGNOREALL)) {
+            return new CaseFoldStep(CaseFoldStep.FOLD_ALL);
+        } else if (stepName.equalsIgnoreCase(STEP_ACCENTFOLD)) {
+            return new AccentFoldStep();
+        } else if (stepName.equalsIgnoreCase(STEP_DIGITMASK)) {
+            return new DigitMaskStep();
+        } else if (stepName.equalsIgnoreCase(STEP_STEM)) {
+            if (stemmer == null) {
+                throw new IllegalArgumentException("normalization step '" + STEP_STEM + "' requires a stemmer");
+            }
+            return new StemStep(stemmer);
+        }
+        try {
+            return (NormalizationStep) Class.forName(stepName).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("unknown normalization step: '" + stepName + "'", e);
+        }
+    }
+
+    /**
+     * @return the normalized token, <code>text</code> itself if unchanged
+     */
+    public String normalize(String text) {
+        if (step == null) {
+            return text;
+        }
+        token.set(text);
+        step.apply(token);
+        return token.contentEquals(text) ? text : token.toString();
+    }
+
+    /**
+     * @return the normalized form of the characters of <code>text</code> from
+     *         <code>start</code> (inclusive) to <code>end</code> (exclusive)
+     */
+    public String normalize(CharSequence text, int start, int end) {
+        token.set(text, start, end);
+        if (step != null) {
+            step.apply(token);
+        }
+        return token.toString();
+    }
+
+    /**
+     * @return true if the chain has no steps
+     */
+    public boolean isEmpty() {
+        return step == null;
+    }
+
+    public String[] getStepNames() {
+        return stepNames.clone();
+    }
+
+    public String toString() {
+        return "NormalizationChain" + Arrays.toString(stepNames);
+    }
+
+    /**
+     * Two steps applied in sequence. Chains are built as a left nested
+     * composition of fixed steps, so each call site sees only a few step
+     * classes and the whole chain can be inlined.
+     */
+    private static final class Composition implements NormalizationStep {
+
+        private final NormalizationStep first;
+
+        private final NormalizationStep second;
+
+        Composition(NormalizationStep first, NormalizationStep second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        public void apply(TokenBuffer token) {
+            first.apply(token);
+            second.apply(token);
+        }
+    }
+}
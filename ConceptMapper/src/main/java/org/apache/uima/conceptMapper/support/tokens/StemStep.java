@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+import org.apache.uima.conceptMapper.support.stemmer.CharBufferStemmer;
+import org.apache.uima.conceptMapper.support.stemmer.Stemmer;
+
+/**
+ * Trims and stems tokens. {@link CharBufferStemmer}s stem the token in place,
+ * other stemmers are called with the token as a <code>String</code>.
+ */
+public final class StemStep implements NormalizationStep {
+
+    private final Stemmer stemmer;
+
+    /** the stemmer, if it works on character buffers, otherwise null */
+    private final CharBufferStemmer bufferStemmer;
+
+    public StemStep(Stemmer stemmer) {
+        super();
+        this.stemmer = stemmer;
+        this.bufferStemmer = (stemmer instanceof CharBufferStemmer) ? (CharBufferStemmer) stemmer : null;
+    }
+
+    public void apply(TokenBuffer token) {
+        token.trim();
+        if (bufferStemmer != null) {
+            token.setLength(bufferStemmer.stem(token.getChars(), token.getLength()));
+        } else {
+            token.set(stemmer.stem(token.toString()));
+        }
+    }
+
+    public Stemmer getStemmer() {
+        return stemmer;
+    }
+}
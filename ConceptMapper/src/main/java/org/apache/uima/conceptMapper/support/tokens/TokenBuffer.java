@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+/**
+ * Reusable, growable character buffer holding the token being normalized by a
+ * {@link NormalizationChain}. Steps modify the characters in place and adjust
+ * the length, growing the buffer when a step can make the token longer.
+ */
+public final class TokenBuffer {
+
+    private char[] chars = new char[64];
+
+    private int length;
+
+    /**
+     * @return the buffer holding the token in its first {@link #getLength()}
+     *         characters. The array is replaced when the buffer grows, so it
+     *         must be fetched again after {@link #ensureCapacity(int)}.
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Make room for at least <code>capacity</code> characters, keeping the
+     * current token.
+     * 
+     * @return the (possibly new) character array
+     */
+    public char[] ensureCapacity(int capacity) {
+        if (chars.length < capacity) {
+            char[] newChars = new char[Math.max(capacity, chars.length * 2)];
+            System.arraycopy(chars, 0, newChars, 0, length);
+            chars = newChars;
+        }
+        return chars;
+    }
+
+    /**
+     * Replace the token with the characters of <code>text</code> from
+     * <code>start</code> (inclusive) to <code>end</code> (exclusive).
+     */
+    public void set(CharSequence text, int start, int end) {
+        length = 0;
+        ensureCapacity(end - start);
+        if (text instanceof String) {
+            ((String) text).getChars(start, end, chars, 0);
+        } else {
+            for (int i = start; i < end; i++) {
+                chars[i - start] = text.charAt(i);
+            }
+        }
+        length = end - start;
+    }
+
+    public void set(String text) {
+        set(text, 0, text.length());
+    }
+
+    /**
+     * Remove leading and trailing characters up to and including space, as
+     * {@link String#trim()} does.
+     */
+    public void trim() {
+        int start = 0;
+        int end = length;
+        while ((start < end) && (chars[start] <= ' ')) {
+            start++;
+        }
+        while ((end > start) && (chars[end - 1] <= ' ')) {
+            end--;
+        }
+        if (start > 0) {
+            System.arraycopy(chars, start, chars, 0, end - start);
+        }
+        length = end - start;
+    }
+
+    /**
+     * @return true if the token consists of the same characters as
+     *         <code>text</code>
+     */
+    public boolean contentEquals(String text) {
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
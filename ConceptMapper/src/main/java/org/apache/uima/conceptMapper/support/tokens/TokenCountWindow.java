@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Counts of the tokens in a fixed size window sliding forward over a list of
+ * normalized tokens, to check whether all tokens of a dictionary entry occur
+ * close to each other without scanning the window.
+ *
+ * Moving the window only updates the counts of the tokens entering and
+ * leaving it, so sliding it over a span takes time linear in the length of
+ * the span, whatever the size of the window.
+ */
+public class TokenCountWindow {
+
+    private final List<String> tokens;
+
+    private final int size;
+
+    /** number of occurrences in the window of each token, absent if none */
+    private final HashMap<String, int[]> counts = new HashMap<String, int[]>();
+
+    /** position of the first token in the window */
+    private int start;
+
+    /** position after the last token in the window */
+    private int end;
+
+    /**
+     * @param tokens
+     *            the tokens to slide over
+     * @param size
+     *            number of consecutive tokens in the window, positive
+     */
+    public TokenCountWindow(List<String> tokens, int size) {
+        super();
+        if (size <= 0) {
+            throw new IllegalArgumentException("window size must be positive: " + size);
+        }
+        this.tokens = tokens;
+        this.size = size;
+    }
+
+    /**
+     * Move the window forward, to start at a position.
+     *
+     * @param position
+     *            position of the first token of the window, not before that of
+     *            the previous call
+     */
+    public void moveTo(int position) {
+        if (position < start) {
+            throw new IllegalArgumentException("window cannot move back from " + start + " to " + position);
+        }
+        if (position >= end) {
+            counts.clear();
+            start = position;
+            end = position;
+        }
+        while (start < position) {
+            String token = tokens.get(start++);
+            int[] count = counts.get(token);
+            if (--count[0] == 0) {
+                counts.remove(token);
+            }
+        }
+        int newEnd = Math.min(tokens.size(), position + size);
+        while (end < newEnd) {
+            String token = tokens.get(end++);
+            int[] count = counts.get(token);
+            if (count == null) {
+                counts.put(token, new int[] { 1 });
+            } else {
+                count[0]++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of occurrences of a token in the window
+     */
+    public int count(String token) {
+        int[] count = counts.get(token);
+        return (count == null) ? 0 : count[0];
+    }
+
+    /**
+     * @return true if each of the tokens occurs in the window at least as many
+     *         times as among <code>contained</code>
+     */
+    public boolean containsAll(String[] contained) {
+        for (int i = 0; i < contained.length; i++) {
+            int[] count = counts.get(contained[i]);
+            if (count == null) {
+                return false;
+            }
+            int needed = 1;
+            for (int j = 0; j < i; j++) {
+                if (contained[j].equals(contained[i])) {
+                    needed++;
+                }
+            }
+            if (count[0] < needed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the position after the last token of the window
+     */
+    public int getEnd() {
+        return end;
+    }
+}
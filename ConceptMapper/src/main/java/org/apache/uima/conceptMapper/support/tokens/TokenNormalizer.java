@@ -16,23 +16,29 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-
 package org.apache.uima.conceptMapper.support.tokens;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 import org.apache.uima.analysis_engine.annotator.AnnotatorContextException;
+import org.apache.uima.conceptMapper.support.stemmer.CachingStemmer;
+import org.apache.uima.conceptMapper.support.stemmer.Stemmer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Normalizes tokens for dictionary lookup, using a {@link NormalizationChain}
+ * built from the case matching mode and stemmer, or from an explicit list of
+ * steps. The same normalizer is used to load the dictionary and to match
+ * documents, so both are always normalized alike.
+ */
 public class TokenNormalizer {
 
     private final Logger LOG = LoggerFactory.getLogger(TokenNormalizer.class);
 
-    private static Pattern CapPat = Pattern.compile("^[A-Z][a-z]+$");
-
-    private static Pattern HasDigit = Pattern.compile("[0-9]");
-
     private boolean caseFoldAll;
 
     private boolean caseFoldInitCap;
@@ -45,11 +51,31 @@ public class TokenNormalizer {
 
     private String CASE_IGNORE = "ignoreall";
 
-    //TODO need serious cleanup
+    private String CASE_FOLD_ACCENTS = "accentfold";
+
+    /** fold compatibility characters, diacritics and case of every token */
+    private boolean foldAccents;
+
+    /** stemmer applied after case folding, null for none */
+    private Stemmer stemmer;
+
+    /** explicitly configured normalization steps, null to derive them from the settings above */
+    private String[] normalizationSteps;
+
+    /** chain applied by {@link #normalize(String)}, null until built */
+    private NormalizationChain chain;
+
+    /** chain applied by {@link #foldCase(String)}, null until built */
+    private NormalizationChain foldChain;
+
+    /** normalized forms of the tokens seen in the current document */
+    private HashMap<String, String> cache;
+
+    private int maxCacheEntries;
+
     public TokenNormalizer(String caseMatch) throws AnnotatorContextException {
         super();
 
-
         this.setCaseFoldInitCap(false);
         this.setCaseFoldDigit(false);
         this.setCaseFoldAll(false);
@@ -64,6 +90,9 @@ public class TokenNormalizer {
             } else if (caseMatch.equalsIgnoreCase(CASE_IGNORE)) {
                 this.setCaseFoldAll(true);
                 LOG.info("case match set to: setCaseFoldAll");
+            } else if (caseMatch.equalsIgnoreCase(CASE_FOLD_ACCENTS)) {
+                this.setFoldAccents(true);
+                LOG.info("case match set to: setFoldAccents");
             } else {
                 LOG.error("unrecognized case match type: " + caseMatch);
             }
@@ -77,6 +106,7 @@ public class TokenNormalizer {
 
     public void setCaseFoldAll(boolean caseFoldAll) {
         this.caseFoldAll = caseFoldAll;
+        resetChains();
     }
 
     public boolean isCaseFoldDigit() {
@@ -85,6 +115,7 @@ public class TokenNormalizer {
 
     public void setCaseFoldDigit(boolean caseFoldDigit) {
         this.caseFoldDigit = caseFoldDigit;
+        resetChains();
     }
 
     public boolean isCaseFoldInitCap() {
@@ -93,11 +124,140 @@ public class TokenNormalizer {
 
     public void setCaseFoldInitCap(boolean caseFoldInitCap) {
         this.caseFoldInitCap = caseFoldInitCap;
+        resetChains();
+    }
+
+    public boolean isFoldAccents() {
+        return foldAccents;
+    }
+
+    /**
+     * @param foldAccents
+     *            if true, every token is folded by {@link AccentFolder},
+     *            removing diacritics and compatibility variants as well as case
+     */
+    public void setFoldAccents(boolean foldAccents) {
+        this.foldAccents = foldAccents;
+        resetChains();
+    }
+
+    public Stemmer getStemmer() {
+        return stemmer;
+    }
+
+    /**
+     * @param stemmer
+     *            stemmer to apply to case folded tokens, or null for none
+     */
+    public void setStemmer(Stemmer stemmer) {
+        this.stemmer = stemmer;
+        resetChains();
+    }
+
+    /**
+     * Replace the normalization derived from the case folding and stemming
+     * settings by an explicit chain of steps.
+     * 
+     * @param normalizationSteps
+     *            step names as accepted by {@link NormalizationChain}, or null
+     *            to go back to the default
+     * @throws IllegalArgumentException
+     *             if a step is unknown
+     */
+    public void setNormalizationSteps(String[] normalizationSteps) {
+        this.normalizationSteps = normalizationSteps;
+        resetChains();
+        // fail early on configuration errors
+        getChain();
+    }
+
+    /**
+     * @return the chain applied by {@link #normalize(String)}
+     */
+    public NormalizationChain getChain() {
+        if (chain == null) {
+            String[] steps = normalizationSteps;
+            if (steps == null) {
+                steps = getDefaultSteps(true);
+            }
+            chain = NormalizationChain.create(steps, stemmer);
+            LOG.info("normalization: " + chain);
+        }
+        return chain;
+    }
+
+    /**
+     * @return a description of how tokens are normalized, equal for
+     *         normalizers which normalize tokens the same way, e.g. to check
+     *         that dictionaries compiled separately can be combined
+     */
+    public String getDescription() {
+        StringBuilder description = new StringBuilder();
+        description.append("steps=").append(
+                Arrays.toString((normalizationSteps == null) ? getDefaultSteps(true) : normalizationSteps));
+        description.append(", fold=").append(Arrays.toString(getDefaultSteps(false)));
+        if (stemmer != null) {
+            Stemmer baseStemmer = (stemmer instanceof CachingStemmer) ? ((CachingStemmer) stemmer).getStemmer()
+                    : stemmer;
+            description.append(", stemmer=").append(baseStemmer.getClass().getName());
+        }
+        return description.toString();
+    }
+
+    private void resetChains() {
+        chain = null;
+        foldChain = null;
+        clearCache();
+    }
+
+    /**
+     * @param stem
+     *            true to include stemming, if there is a stemmer
+     * @return the normalization steps equivalent to the current settings
+     */
+    private String[] getDefaultSteps(boolean stem) {
+        List<String> steps = new ArrayList<String>();
+        if (foldAccents) {
+            steps.add(NormalizationChain.STEP_ACCENTFOLD);
+        } else if (caseFoldAll) {
+            steps.add(NormalizationChain.STEP_IGNOREALL);
+        } else {
+            if (caseFoldInitCap) {
+                steps.add(NormalizationChain.STEP_INSENSITIVE);
+            }
+            if (caseFoldDigit) {
+                steps.add(NormalizationChain.STEP_DIGITFOLD);
+            }
+        }
+        if (stem && (stemmer != null)) {
+            steps.add(NormalizationChain.STEP_STEM);
+        }
+        return steps.toArray(new String[steps.size()]);
+    }
+
+    /**
+     * Set the size of the cache of normalized forms, which is emptied by
+     * {@link #clearCache()}, typically at the start of each document. Once
+     * full, no further tokens are added until it is cleared.
+     * 
+     * @param maxCacheEntries
+     *            maximum number of cached tokens, 0 to disable caching
+     */
+    public void setCacheSize(int maxCacheEntries) {
+        this.maxCacheEntries = maxCacheEntries;
+        cache = (maxCacheEntries > 0) ? new HashMap<String, String>() : null;
+    }
+
+    public void clearCache() {
+        if (cache != null) {
+            cache.clear();
+        }
     }
 
     public boolean shouldFoldCase(String token) {
-        return (caseFoldAll || (caseFoldInitCap && CapPat.matcher(token).matches())
-                || (caseFoldDigit && HasDigit.matcher(token).find()));
+        int length = token.length();
+        return (foldAccents || caseFoldAll || (caseFoldInitCap && CaseFoldStep.isInitCap(token, 0, length))
+                || (caseFoldDigit && CaseFoldStep.hasDigit(token, 0, length)));
     }
 
     /**
@@ -111,13 +271,32 @@ public class TokenNormalizer {
      * @return The case folded string
      */
     public String foldCase(String token) {
-        if (shouldFoldCase(token)) {
-            return token.trim().toLowerCase();
+        if (foldChain == null) {
+            foldChain = NormalizationChain.create(getDefaultSteps(false), null);
         }
-        return token;
+        return foldChain.normalize(token);
     }
 
+    /**
+     * Apply the normalization chain (by default case folding, then stemming) to
+     * the token. Results are cached if a cache size has been set.
+     * 
+     * @param token
+     *            The string to normalize
+     * 
+     * @return The normalized string
+     */
     public String normalize(String token) {
-        return foldCase(token);
+        if (cache == null) {
+            return getChain().normalize(token);
+        }
+        String result = cache.get(token);
+        if (result == null) {
+            result = getChain().normalize(token);
+            if (cache.size() < maxCacheEntries) {
+                cache.put(token, result);
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+import org.apache.uima.cas.text.AnnotationFS;
+
+/**
+ * Tokens addressed by their position in a span or document, of which only
+ * those from {@link #getStart()} up to {@link #getEnd()} can be accessed.
+ */
+public interface TokenRange {
+
+    /**
+     * @return position of the first token which can be accessed
+     */
+    public int getStart();
+
+    /**
+     * @return position after the last token which can be accessed
+     */
+    public int getEnd();
+
+    /**
+     * @param position
+     *            position of a token, from {@link #getStart()} up to
+     *            {@link #getEnd()}
+     * @return the token
+     * @throws IndexOutOfBoundsException
+     *             if the token cannot be accessed
+     */
+    public AnnotationFS get(int position);
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+import java.util.Iterator;
+
+import org.apache.uima.cas.text.AnnotationFS;
+
+/**
+ * Bounded window over a stream of token annotations, e.g. an iterator over the
+ * token index of a document.
+ *
+ * Tokens are addressed by their position in the stream and read from the
+ * iterator only when first needed. Tokens before the position passed to
+ * {@link #release(int)} are dropped, so the window only holds the tokens
+ * between the current match start and the farthest lookahead, at most the
+ * length of the longest dictionary entry, instead of all tokens of the
+ * document. Only the tokens held, from the first one not released up to the
+ * last one read, can be accessed.
+ */
+public class TokenWindow implements TokenRange {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Iterator<?> tokens;
+
+    /** ring buffer holding the tokens from {@link #first} to {@link #end} */
+    private AnnotationFS[] buffer = new AnnotationFS[INITIAL_CAPACITY];
+
+    /** position of the oldest token held */
+    private int first;
+
+    /** number of tokens read from the iterator */
+    private int end;
+
+    /**
+     * @param tokens
+     *            iterator returning the token annotations in document order
+     */
+    public TokenWindow(Iterator<?> tokens) {
+        super();
+        this.tokens = tokens;
+    }
+
+    /**
+     * Read tokens until the window reaches a position or the stream ends.
+     *
+     * @param position
+     *            number of tokens wanted from the start of the stream
+     * @return the number of tokens read, at most <code>position</code> unless
+     *         more had been read before
+     */
+    public int fill(int position) {
+        while ((end < position) && tokens.hasNext()) {
+            if (end - first == buffer.length) {
+                grow();
+            }
+            buffer[end & (buffer.length - 1)] = (AnnotationFS) tokens.next();
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Drop the tokens before a position, which must not be accessed any more.
+     */
+    public void release(int position) {
+        int newFirst = Math.min(position, end);
+        for (int i = first; i < newFirst; i++) {
+            buffer[i & (buffer.length - 1)] = null;
+        }
+        first = Math.max(first, newFirst);
+    }
+
+    /**
+     * @return position of the first token not released
+     */
+    public int getStart() {
+        return first;
+    }
+
+    /**
+     * @return number of tokens read from the iterator, the position after the
+     *         last token held
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    public AnnotationFS get(int position) {
+        if ((position < first) || (position >= end)) {
+            throw new IndexOutOfBoundsException("token " + position + " not in window [" + first + ", " + end + ")");
+        }
+        return buffer[position & (buffer.length - 1)];
+    }
+
+    /**
+     * @return the number of tokens currently held
+     */
+    public int getHeldCount() {
+        return end - first;
+    }
+
+    /**
+     * @return the size of the buffer, the largest number of tokens held at
+     *         once so far rounded up to a power of two
+     */
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    private void grow() {
+        AnnotationFS[] grown = new AnnotationFS[buffer.length << 1];
+        for (int i = first; i < end; i++) {
+            grown[i & (grown.length - 1)] = buffer[i & (buffer.length - 1)];
+        }
+        buffer = grown;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.dictionaryCompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.CompiledDictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntries;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryProperties;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryPropertiesRoot;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryPropertiesTable;
+import org.junit.Test;
+
+/**
+ * The test dictionaries were compiled, before entry IDs were introduced, from the entries heart
+ * (canonical HEART), heart attack (MI) and lung (LUNG), with and without order independent
+ * lookup.
+ */
+public class DictionaryMergerTest {
+
+  private static final String WITHOUT_IDS = "heart-without-ids.dict";
+
+  private static final String WITHOUT_IDS_ORDER_INDEPENDENT = "heart-without-ids-oi.dict";
+
+  @Test
+  public void mergesDictionaryCompiledWithoutEntryIDs() throws Exception {
+    DictionaryMerger merger = new DictionaryMerger();
+    merger.add(read(WITHOUT_IDS), null);
+    merger.add(read(WITHOUT_IDS), null);
+
+    assertEquals(Arrays.asList("heart -> [heart] HEART id=-1", "heart -> [heart, attack] MI id=-1",
+            "lung -> [lung] LUNG id=-1"), entries(merger.merge()));
+    assertEquals(3, merger.getDuplicates());
+  }
+
+  @Test
+  public void mergesOrderIndependentDictionaryCompiledWithoutEntryIDs() throws Exception {
+    DictionaryMerger merger = new DictionaryMerger();
+    merger.add(read(WITHOUT_IDS_ORDER_INDEPENDENT), null);
+    merger.add(read(WITHOUT_IDS_ORDER_INDEPENDENT), null);
+
+    // an entry stored under each of its tokens is no duplicate of itself
+    assertEquals(Arrays.asList("attack -> [attack, heart] MI id=-1", "heart -> [heart] HEART id=-1",
+            "heart -> [attack, heart] MI id=-1", "lung -> [lung] LUNG id=-1"),
+            entries(merger.merge()));
+    assertEquals(3, merger.getDuplicates());
+  }
+
+  @Test
+  public void doesNotIdentifyEntriesBySharedEntryID() throws Exception {
+    DictionaryMerger merger = new DictionaryMerger();
+    merger.add(dictionary(0, 0, 0), null);
+    merger.add(dictionary(0, 1, 2), null);
+
+    assertEquals(Arrays.asList("heart -> [heart] HEART id=-1", "heart -> [heart, attack] MI id=-1",
+            "lung -> [lung] LUNG id=-1"), entries(merger.merge()));
+    assertEquals(3, merger.getDuplicates());
+  }
+
+  @Test
+  public void shiftsUniqueEntryIDs() throws Exception {
+    DictionaryMerger merger = new DictionaryMerger();
+    merger.add(dictionary(0, 1, 2), null);
+    merger.add(dictionary(0, 0, 0), null);
+    merger.add(read(WITHOUT_IDS), null);
+
+    assertEquals(Arrays.asList("heart -> [heart] HEART id=0", "heart -> [heart, attack] MI id=1",
+            "lung -> [lung] LUNG id=2"), entries(merger.merge()));
+    assertEquals(6, merger.getDuplicates());
+  }
+
+  @Test
+  public void writesEntryPropertiesTableOfMergedDictionary() throws Exception {
+    DictionaryMerger merger = new DictionaryMerger();
+    merger.add(dictionary(0, 1, 2), null);
+    merger.add(dictionary(5, 3, 4), null);
+    DictionaryResource merged = merger.merge();
+    assertTrue(EntryPropertiesTable.hasUniqueEntryIDs(merged));
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    EntryPropertiesTable.write(merged, output);
+    EntryPropertiesTable table = new EntryPropertiesTable(new ByteArrayInputStream(
+            output.toByteArray()));
+    assertEquals("HEART", table.getProperty(0, "canonical"));
+    assertEquals("MI", table.getProperty(1, "canonical"));
+    assertEquals("LUNG", table.getProperty(2, "canonical"));
+    assertNull(table.getEntryProperties(3));
+  }
+
+  @Test(expected = IOException.class)
+  public void refusesEntryPropertiesTableWithoutEntryIDs() throws Exception {
+    DictionaryMerger merger = new DictionaryMerger();
+    merger.add(read(WITHOUT_IDS), null);
+    DictionaryResource merged = merger.merge();
+    assertFalse(EntryPropertiesTable.hasUniqueEntryIDs(merged));
+
+    EntryPropertiesTable.write(merged, new ByteArrayOutputStream());
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsNegativeEntryIDInTable() throws Exception {
+    byte[] table = "#entryID\tcanonical\n-1\tLUNG\n".getBytes("UTF-8");
+    new EntryPropertiesTable(new ByteArrayInputStream(table));
+  }
+
+  private static DictionaryResource read(String name) throws Exception {
+    InputStream input = DictionaryMergerTest.class.getResourceAsStream(name);
+    CompiledDictionaryResource_impl dictionary = new CompiledDictionaryResource_impl();
+    dictionary.read(input);
+    return dictionary;
+  }
+
+  /**
+   * @return a dictionary of the test entries, with the given entry IDs
+   */
+  private static DictionaryResource dictionary(int heartID, int heartAttackID, int lungID) {
+    EntryPropertiesRoot root = new EntryPropertiesRoot(new String[] { "canonical" });
+    DictionaryResource_impl dictionary = new DictionaryResource_impl();
+    put(dictionary, root, new String[] { "heart" }, "HEART", heartID);
+    put(dictionary, root, new String[] { "heart", "attack" }, "MI", heartAttackID);
+    put(dictionary, root, new String[] { "lung" }, "LUNG", lungID);
+    dictionary.finishEntries(root);
+    return dictionary;
+  }
+
+  private static void put(DictionaryResource_impl dictionary, EntryPropertiesRoot root,
+          String[] elements, String canonical, int entryID) {
+    EntryProperties props = root.newEntryProperties();
+    props.setProperty("canonical", canonical);
+    props.setEntryID(entryID);
+    dictionary.putEntry(elements[0], elements, null, elements.length, props);
+  }
+
+  /**
+   * @return the entries of a dictionary, by key and length
+   */
+  private static List<String> entries(DictionaryResource dictionary) {
+    List<String> entries = new ArrayList<String>();
+    List<String> keys = Collections.list(dictionary.keys());
+    Collections.sort(keys);
+    for (String key : keys) {
+      DictEntriesByLength entriesByLength = dictionary.getEntries(key);
+      int longest = entriesByLength.getLongest().intValue();
+      for (int length = entriesByLength.getShortest().intValue(); length <= longest; length++) {
+        DictEntries lengthEntries = entriesByLength.getEntries(length);
+        if (lengthEntries == null) {
+          continue;
+        }
+        for (DictEntry entry : lengthEntries.getEntries()) {
+          entries.add(key + " -> " + Arrays.toString(entry.getElements()) + " "
+                  + entry.getProperties().getProperty("canonical") + " id="
+                  + entry.getProperties().getEntryID());
+        }
+      }
+    }
+    return entries;
+  }
+}
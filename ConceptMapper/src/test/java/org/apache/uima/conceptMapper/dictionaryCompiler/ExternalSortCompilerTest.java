@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.dictionaryCompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.CompiledDictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntries;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource_impl;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryProperties;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryPropertiesRoot;
+import org.apache.uima.conceptMapper.support.dictionaryResource.EntryPropertiesTable;
+import org.apache.uima.conceptMapper.support.dictionaryResource.SortedDictionaryReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExternalSortCompilerTest {
+
+  private static final String[] TOKENS = { "acute", "attack", "cardiac", "failure", "heart", "left",
+      "lung", "right", "ventricle" };
+
+  private static final int NUM_ENTRIES = 500;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void compilesSameEntriesAsInMemoryDictionary() throws Exception {
+    assertCompilesSameEntries(1L << 30, false);
+  }
+
+  @Test
+  public void compilesSameEntriesThroughManyRuns() throws Exception {
+    // a run per entry, more runs than are merged at once
+    assertCompilesSameEntries(1, false);
+  }
+
+  @Test
+  public void compilesEntriesStoredUnderSeveralKeys() throws Exception {
+    assertCompilesSameEntries(4096, true);
+  }
+
+  @Test
+  public void writesEntryPropertiesTable() throws Exception {
+    File output = new File(folder.getRoot(), "test.dict");
+    ExternalSortCompiler compiler = new ExternalSortCompiler(output, 4096, 0.01);
+    DictionaryResource_impl dictionary = new DictionaryResource_impl();
+    add(compiler, dictionary, false);
+    compiler.finish(dictionary.getEntryPropertiesRoot());
+
+    FileInputStream input = new FileInputStream(output.getPath()
+            + CompileDictionary.ENTRY_PROPERTIES_TABLE_SUFFIX);
+    EntryPropertiesTable table = new EntryPropertiesTable(input);
+    input.close();
+    for (int id = 0; id < NUM_ENTRIES; id++) {
+      assertEquals("C" + id, table.getProperty(id, "code"));
+    }
+  }
+
+  @Test
+  public void writesKeyFilter() throws Exception {
+    File output = new File(folder.getRoot(), "test.dict");
+    ExternalSortCompiler compiler = new ExternalSortCompiler(output, 4096, 0.01);
+    DictionaryResource_impl dictionary = new DictionaryResource_impl();
+    add(compiler, dictionary, false);
+    compiler.finish(dictionary.getEntryPropertiesRoot());
+
+    CompiledDictionaryResource_impl compiled = new CompiledDictionaryResource_impl();
+    compiled.read(new FileInputStream(output));
+    for (String key : Collections.list(dictionary.keys())) {
+      assertTrue(key, compiled.getKeyFilter().mightContain(key));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFormat() throws Exception {
+    new SortedDictionaryReader(new ByteArrayInputStream(new byte[16]));
+  }
+
+  private void assertCompilesSameEntries(long memoryBudget, boolean severalKeys) throws Exception {
+    File output = new File(folder.getRoot(), "test.dict");
+    ExternalSortCompiler compiler = new ExternalSortCompiler(output, memoryBudget, 0);
+    DictionaryResource_impl dictionary = new DictionaryResource_impl();
+    add(compiler, dictionary, severalKeys);
+    int numKeys = compiler.finish(dictionary.getEntryPropertiesRoot());
+
+    CompiledDictionaryResource_impl compiled = new CompiledDictionaryResource_impl();
+    compiled.read(new FileInputStream(output));
+    assertEquals(Collections.list(dictionary.keys()).size(), numKeys);
+    assertEquals(entries(dictionary), entries(compiled));
+    // only the dictionary and its entry properties table are left
+    assertEquals(2, folder.getRoot().list().length);
+    assertFalse(entries(compiled).isEmpty());
+  }
+
+  /**
+   * Add the same random entries to a compiler and a dictionary, in entry ID order.
+   *
+   * @param severalKeys
+   *          store each entry under each of its distinct tokens, as with order independent lookup
+   */
+  private static void add(ExternalSortCompiler compiler, DictionaryResource_impl dictionary,
+          boolean severalKeys) throws IOException {
+    Random random = new Random(3);
+    EntryPropertiesRoot root = new EntryPropertiesRoot(new String[] { "canonical", "code" });
+    for (int id = 0; id < NUM_ENTRIES; id++) {
+      String[] elements = new String[1 + random.nextInt(4)];
+      for (int i = 0; i < elements.length; i++) {
+        elements[i] = TOKENS[random.nextInt(TOKENS.length)];
+      }
+      EntryProperties props = root.newEntryProperties();
+      props.setProperty("canonical", Arrays.toString(elements));
+      props.setProperty("code", "C" + id);
+      props.setEntryID(id);
+      String unsorted = Arrays.toString(elements);
+      String[] keys = severalKeys ? distinct(elements) : new String[] { elements[0] };
+      for (String key : keys) {
+        compiler.add(key, elements, unsorted, props);
+      }
+      dictionary.putEntry(keys, elements, unsorted, elements.length, props);
+    }
+    dictionary.finishEntries(root);
+  }
+
+  private static String[] distinct(String[] elements) {
+    List<String> distinct = new ArrayList<String>();
+    for (String element : elements) {
+      if (!distinct.contains(element)) {
+        distinct.add(element);
+      }
+    }
+    return distinct.toArray(new String[distinct.size()]);
+  }
+
+  /**
+   * @return the entries of a dictionary, by key and length
+   */
+  private static List<String> entries(DictionaryResource dictionary) {
+    List<String> entries = new ArrayList<String>();
+    List<String> keys = Collections.list(dictionary.keys());
+    Collections.sort(keys);
+    for (String key : keys) {
+      DictEntriesByLength entriesByLength = dictionary.getEntries(key);
+      int longest = entriesByLength.getLongest().intValue();
+      for (int length = entriesByLength.getShortest().intValue(); length <= longest; length++) {
+        DictEntries lengthEntries = entriesByLength.getEntries(length);
+        if (lengthEntries == null) {
+          continue;
+        }
+        for (DictEntry entry : lengthEntries.getEntries()) {
+          EntryProperties props = entry.getProperties();
+          entries.add(key + " -> " + Arrays.toString(entry.getElements()) + " " + entry.getUnsorted()
+                  + " " + props.getProperty("canonical") + " " + props.getProperty("code") + " id="
+                  + props.getEntryID());
+        }
+      }
+    }
+    return entries;
+  }
+}
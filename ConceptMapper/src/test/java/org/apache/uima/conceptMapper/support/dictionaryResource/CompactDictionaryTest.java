@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntries;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntriesByLength;
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+import org.junit.Test;
+
+public class CompactDictionaryTest {
+
+    @Test
+    public void readsWrittenEntries() throws Exception {
+        DictionaryResource_impl dictionary = dictionary();
+        CompiledDictionaryResource_impl read = writeAndRead(dictionary, 0.01);
+
+        assertNotNull(read.getCompactDictionary());
+        assertEquals(entries(dictionary), entries(read));
+        assertEquals(Arrays.asList(dictionary.getEntryPropertiesRoot().propertyNames()),
+                Arrays.asList(read.getEntryPropertiesRoot().propertyNames()));
+        assertNull(read.getEntries("kidney"));
+    }
+
+    @Test
+    public void storesEntryOfSeveralKeysOnce() throws Exception {
+        CompactDictionary compact = writeAndRead(dictionary(), 0.01).getCompactDictionary();
+        assertEquals(4, compact.getNumKeys());
+        assertEquals(5, compact.getNumEntries());
+    }
+
+    @Test
+    public void writesKeyFilterOnRequest() throws Exception {
+        CompactDictionary filtered = writeAndRead(dictionary(), 0.01).getCompactDictionary();
+        assertTrue(filtered.getKeyFilter().mightContain("heart"));
+        assertFalse(filtered.getKeyFilter().mightContain("kidney"));
+        assertNull(writeAndRead(dictionary(), 0).getCompactDictionary().getKeyFilter());
+    }
+
+    /**
+     * @return a dictionary with entries of several lengths, an entry stored
+     *         under each of its tokens and non-ASCII text
+     */
+    private static DictionaryResource_impl dictionary() {
+        EntryPropertiesRoot root = new EntryPropertiesRoot(new String[] { "canonical", "code" });
+        DictionaryResource_impl dictionary = new DictionaryResource_impl();
+        put(dictionary, root, new String[] { "heart" }, new String[] { "heart" }, "HEART", "C1", 0);
+        put(dictionary, root, new String[] { "heart" }, new String[] { "heart", "attack" }, "MI", "C2", 1);
+        put(dictionary, root, new String[] { "attack", "heart" }, new String[] { "attack", "heart" }, "MI",
+                "C2", 2);
+        put(dictionary, root, new String[] { "m\u00fcdigkeit" }, new String[] { "m\u00fcdigkeit" },
+                "FATIGUE", null, 3);
+        put(dictionary, root, new String[] { "lung" }, new String[] { "lung" }, "LUNG", "C3", 4);
+        dictionary.finishEntries(root);
+        return dictionary;
+    }
+
+    private static void put(DictionaryResource_impl dictionary, EntryPropertiesRoot root, String[] keys,
+            String[] elements, String canonical, String code, int entryID) {
+        EntryProperties props = root.newEntryProperties();
+        props.setProperty("canonical", canonical);
+        if (code != null) {
+            props.setProperty("code", code);
+        }
+        props.setEntryID(entryID);
+        dictionary.putEntry(keys, elements, canonical.toLowerCase(), elements.length, props);
+    }
+
+    private static CompiledDictionaryResource_impl writeAndRead(DictionaryResource dictionary,
+            double keyFilterFalsePositiveRate) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CompactDictionary.write(dictionary, output, keyFilterFalsePositiveRate);
+        CompiledDictionaryResource_impl read = new CompiledDictionaryResource_impl();
+        read.read(new ByteArrayInputStream(output.toByteArray()));
+        return read;
+    }
+
+    /**
+     * @return the entries of a dictionary, by key and length
+     */
+    private static List<String> entries(DictionaryResource dictionary) {
+        List<String> entries = new ArrayList<String>();
+        List<String> keys = Collections.list(dictionary.keys());
+        Collections.sort(keys);
+        for (String key : keys) {
+            DictEntriesByLength entriesByLength = dictionary.getEntries(key);
+            int longest = entriesByLength.getLongest().intValue();
+            for (int length = entriesByLength.getShortest().intValue(); length <= longest; length++) {
+                DictEntries lengthEntries = entriesByLength.getEntries(length);
+                if (lengthEntries == null) {
+                    continue;
+                }
+                for (DictEntry entry : lengthEntries.getEntries()) {
+                    EntryProperties props = entry.getProperties();
+                    entries.add(key + " -> " + Arrays.toString(entry.getElements()) + " " + entry.getUnsorted()
+                            + " " + props.getProperty("canonical") + " " + props.getProperty("code") + " id="
+                            + props.getEntryID());
+                }
+            }
+        }
+        return entries;
+    }
+}
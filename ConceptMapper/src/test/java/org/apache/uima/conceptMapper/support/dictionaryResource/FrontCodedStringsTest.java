@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class FrontCodedStringsTest {
+
+    @Test
+    public void findsStringsByPosition() {
+        List<String> sorted = strings();
+        FrontCodedStrings strings = FrontCodedStrings.build(sorted);
+        assertEquals(sorted.size(), strings.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), strings.get(i));
+            assertEquals(sorted.get(i), i, strings.indexOf(sorted.get(i)));
+        }
+    }
+
+    @Test
+    public void doesNotFindOtherStrings() {
+        List<String> sorted = strings();
+        FrontCodedStrings strings = FrontCodedStrings.build(sorted);
+        for (String s : sorted) {
+            assertEquals(-1, strings.indexOf(s + "\u0000"));
+            assertEquals(-1, strings.indexOf(s + "zzz"));
+        }
+        assertEquals(-1, strings.indexOf("\uffff"));
+    }
+
+    @Test
+    public void readsWrittenStrings() throws Exception {
+        List<String> sorted = strings();
+        FrontCodedStrings read = writeAndRead(FrontCodedStrings.build(sorted));
+        assertEquals(sorted.size(), read.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), read.get(i));
+            assertEquals(i, read.indexOf(sorted.get(i)));
+        }
+    }
+
+    @Test
+    public void holdsNoStrings() throws Exception {
+        FrontCodedStrings strings = writeAndRead(FrontCodedStrings.build(Collections.<String> emptyList()));
+        assertEquals(0, strings.size());
+        assertEquals(-1, strings.indexOf("heart"));
+    }
+
+    /**
+     * @return sorted strings sharing prefixes, including the empty string,
+     *         long and non-ASCII strings, over several blocks
+     */
+    private static List<String> strings() {
+        Random random = new Random(7);
+        TreeSet<String> strings = new TreeSet<String>();
+        strings.add("");
+        strings.add("herz\u00e4\u00f6\u00fc");
+        strings.add("\u4e2d\u6587");
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longString.append((char) ('a' + (i % 26)));
+        }
+        strings.add(longString.toString());
+        strings.add(longString.toString() + "x");
+        while (strings.size() < 500) {
+            StringBuilder s = new StringBuilder("heart");
+            int length = random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                s.append((char) ('a' + random.nextInt(4)));
+            }
+            strings.add(s.toString());
+        }
+        return new ArrayList<String>(strings);
+    }
+
+    private static FrontCodedStrings writeAndRead(FrontCodedStrings strings) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        strings.write(output);
+        output.close();
+        return FrontCodedStrings.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
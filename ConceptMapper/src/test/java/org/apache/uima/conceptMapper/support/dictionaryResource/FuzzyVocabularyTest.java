@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class FuzzyVocabularyTest {
+
+    private static final String ALPHABET = "abcd";
+
+    @Test
+    public void findsSameTokensAsBruteForceSearch() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            TreeSet<String> distinct = new TreeSet<String>();
+            int size = 1 + random.nextInt(60);
+            while (distinct.size() < size) {
+                distinct.add(randomWord(random, 7));
+            }
+            String[] words = distinct.toArray(new String[distinct.size()]);
+            int[] frequencies = new int[words.length];
+            for (int i = 0; i < frequencies.length; i++) {
+                frequencies[i] = 1 + random.nextInt(3);
+            }
+            FuzzyVocabulary vocabulary = new FuzzyVocabulary(words, frequencies);
+            for (int lookup = 0; lookup < 200; lookup++) {
+                String token = randomWord(random, 9);
+                int maxEdits = random.nextInt(4);
+                assertEquals(token + " within " + maxEdits + " of " + Arrays.toString(words),
+                        bruteForceClosest(words, frequencies, token, maxEdits),
+                        vocabulary.findClosest(token, maxEdits));
+            }
+        }
+    }
+
+    @Test
+    public void countsTranspositionAsOneEdit() {
+        FuzzyVocabulary vocabulary = new FuzzyVocabulary(new String[] { "heart" }, new int[] { 1 });
+        assertEquals("heart", vocabulary.findClosest("haert", 1));
+        assertNull(vocabulary.findClosest("hreat", 1));
+    }
+
+    @Test
+    public void findsEmptyToken() {
+        FuzzyVocabulary vocabulary = new FuzzyVocabulary(new String[] { "", "lung" }, new int[] { 1, 1 });
+        assertEquals("", vocabulary.findClosest("x", 1));
+        assertEquals("", vocabulary.findClosest("", 1));
+        assertNull(vocabulary.findClosest("xy", 1));
+    }
+
+    @Test
+    public void doesNotLookUpLongTokens() {
+        char[] chars = new char[FuzzyVocabulary.MAX_FUZZY_LENGTH];
+        Arrays.fill(chars, 'a');
+        String longest = new String(chars);
+        FuzzyVocabulary vocabulary = new FuzzyVocabulary(new String[] { longest }, new int[] { 1 });
+        assertEquals(longest, vocabulary.findClosest(longest.substring(1), 1));
+        assertNull(vocabulary.findClosest(longest + "a", 1));
+    }
+
+    private static String randomWord(Random random, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return the closest word as specified by
+     *         {@link FuzzyVocabulary#findClosest(String, int)}, comparing the
+     *         token with each word
+     */
+    private static String bruteForceClosest(String[] words, int[] frequencies, String token, int maxEdits) {
+        int best = -1;
+        int bestDistance = maxEdits + 1;
+        for (int i = 0; i < words.length; i++) {
+            int distance = distance(words[i], token);
+            if ((distance < bestDistance) || ((distance == bestDistance) && (best >= 0)
+                    && (frequencies[i] > frequencies[best]))) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return (best < 0) ? null : words[best];
+    }
+
+    /**
+     * @return the optimal string alignment distance: the number of
+     *         insertions, deletions, substitutions and transpositions of
+     *         adjacent characters, no substring being edited twice
+     */
+    private static int distance(String left, String right) {
+        int[][] d = new int[left.length() + 1][right.length() + 1];
+        for (int i = 0; i <= left.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= right.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= left.length(); i++) {
+            for (int j = 1; j <= right.length(); j++) {
+                int cost = (left.charAt(i - 1) == right.charAt(j - 1)) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if ((i > 1) && (j > 1) && (left.charAt(i - 1) == right.charAt(j - 2))
+                        && (left.charAt(i - 2) == right.charAt(j - 1))) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[left.length()][right.length()];
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class KeyFilterTest {
+
+    private static final int NUM_KEYS = 20000;
+
+    @Test
+    public void passesAllKeys() {
+        KeyFilter filter = KeyFilter.build(Collections.enumeration(keys()), NUM_KEYS, 0.01);
+        for (String key : keys()) {
+            assertTrue(key, filter.mightContain(key));
+        }
+        assertEquals(NUM_KEYS, filter.getNumKeys());
+    }
+
+    @Test
+    public void keepsFalsePositiveRate() {
+        for (double rate : new double[] { 0.1, 0.01, 0.001 }) {
+            KeyFilter filter = KeyFilter.build(Collections.enumeration(keys()), NUM_KEYS, rate);
+            int passed = 0;
+            int tokens = 200000;
+            for (int i = 0; i < tokens; i++) {
+                if (filter.mightContain("token" + i)) {
+                    passed++;
+                }
+            }
+            double measured = (double) passed / tokens;
+            assertTrue("false positive rate " + measured + " for " + rate, measured < 1.5 * rate);
+            // the number of hashes is rounded, so the rate is not met exactly
+            assertTrue(filter.getExpectedFalsePositiveRate() < 1.1 * rate);
+        }
+    }
+
+    @Test
+    public void readsWrittenFilter() throws Exception {
+        KeyFilter filter = KeyFilter.build(Collections.enumeration(keys()), NUM_KEYS, 0.01);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        filter.write(output);
+        output.close();
+        KeyFilter read = KeyFilter.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(filter.getNumKeys(), read.getNumKeys());
+        assertEquals(filter.getNumBits(), read.getNumBits());
+        assertEquals(filter.getNumHashes(), read.getNumHashes());
+        for (int i = 0; i < 10000; i++) {
+            String token = (i % 2 == 0) ? ("key" + i) : ("token" + i);
+            assertEquals(token, filter.mightContain(token), read.mightContain(token));
+        }
+    }
+
+    private static List<String> keys() {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < NUM_KEYS; i++) {
+            keys.add("key" + i);
+        }
+        return keys;
+    }
+}
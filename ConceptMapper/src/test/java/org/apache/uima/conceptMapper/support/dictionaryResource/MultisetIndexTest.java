@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.conceptMapper.support.dictionaryResource.DictionaryResource.DictEntry;
+import org.junit.Test;
+
+public class MultisetIndexTest {
+
+    private static final String[] TOKENS = { "acute", "attack", "failure", "heart", "left", "lung" };
+
+    @Test
+    public void matchesSameEntriesAsSortedComparison() {
+        Random random = new Random(5);
+        List<DictEntry> entries = new ArrayList<DictEntry>();
+        MultisetIndex index = MultisetIndex.build(dictionary(random, entries));
+        assertEquals(entries.size(), index.size());
+
+        MultisetIndex.Matcher matcher = index.newMatcher();
+        for (int round = 0; round < 50; round++) {
+            matcher.reset();
+            List<String> document = new ArrayList<String>();
+            for (int position = 0; position < 40; position++) {
+                // a few tokens occur in no entry
+                String token = (random.nextInt(10) == 0) ? "of" : TOKENS[random.nextInt(TOKENS.length)];
+                matcher.add(token);
+                document.add(token);
+                for (int length = 1; length <= Math.min(index.getLongest(), document.size()); length++) {
+                    int start = document.size() - length;
+                    List<DictEntry> matched = new ArrayList<DictEntry>();
+                    matcher.match(start, length, matched);
+                    assertEquals(document.subList(start, document.size()).toString(),
+                            naiveMatches(entries, document.subList(start, document.size())), matched);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void recordsLongestEntryOfEachToken() {
+        EntryPropertiesRoot root = new EntryPropertiesRoot(new String[] { "canonical" });
+        DictionaryResource_impl dictionary = new DictionaryResource_impl();
+        put(dictionary, root, new String[] { "heart" });
+        put(dictionary, root, new String[] { "attack", "heart" });
+        put(dictionary, root, new String[] { "lung" });
+        dictionary.finishEntries(root);
+        MultisetIndex index = MultisetIndex.build(dictionary);
+        assertEquals(3, index.size());
+        assertEquals(1, index.getShortest());
+        assertEquals(2, index.getLongest());
+
+        MultisetIndex.Matcher matcher = index.newMatcher();
+        matcher.reset();
+        for (String token : new String[] { "heart", "lung", "of" }) {
+            matcher.add(token);
+        }
+        assertEquals(2, matcher.getMaxLength(0));
+        assertEquals(1, matcher.getMaxLength(1));
+        assertEquals(0, matcher.getMaxLength(2));
+    }
+
+    /**
+     * @return an order independent dictionary of random entries, each stored
+     *         under each of its distinct tokens
+     */
+    private static DictionaryResource dictionary(Random random, List<DictEntry> entries) {
+        EntryPropertiesRoot root = new EntryPropertiesRoot(new String[] { "canonical" });
+        DictionaryResource_impl dictionary = new DictionaryResource_impl();
+        for (int i = 0; i < 200; i++) {
+            String[] elements = new String[1 + random.nextInt(4)];
+            for (int j = 0; j < elements.length; j++) {
+                elements[j] = TOKENS[random.nextInt(TOKENS.length)];
+            }
+            Arrays.sort(elements);
+            entries.add(put(dictionary, root, elements));
+        }
+        dictionary.finishEntries(root);
+        return dictionary;
+    }
+
+    private static DictEntry put(DictionaryResource_impl dictionary, EntryPropertiesRoot root, String[] elements) {
+        EntryProperties props = root.newEntryProperties();
+        props.setProperty("canonical", Arrays.toString(elements));
+        List<String> keys = new ArrayList<String>();
+        for (String element : elements) {
+            if (!keys.contains(element)) {
+                keys.add(element);
+            }
+        }
+        dictionary.putEntry(keys.toArray(new String[keys.size()]), elements, null, elements.length, props);
+        // the entry object shared by all keys
+        List<DictEntry> stored = dictionary.getEntries(elements[0]).getEntries(elements.length).getEntries();
+        return stored.get(stored.size() - 1);
+    }
+
+    /**
+     * @return the entries whose sorted tokens are those of the window, in the
+     *         order they were added
+     */
+    private static List<DictEntry> naiveMatches(List<DictEntry> entries, List<String> window) {
+        String[] sorted = window.toArray(new String[window.size()]);
+        Arrays.sort(sorted);
+        List<DictEntry> matches = new ArrayList<DictEntry>();
+        for (DictEntry entry : entries) {
+            if (Arrays.equals(entry.getElements(), sorted)) {
+                matches.add(entry);
+            }
+        }
+        return matches;
+    }
+}
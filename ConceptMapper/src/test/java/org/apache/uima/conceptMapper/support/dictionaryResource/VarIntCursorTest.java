@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+public class VarIntCursorTest {
+
+    private static final int[] VALUES = { 0, 1, 0x7f, 0x80, 0x3fff, 0x4000, 0x1fffff, 0x200000, 0xfffffff,
+            0x10000000, Integer.MAX_VALUE };
+
+    @Test
+    public void readsWrittenValues() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int value : VALUES) {
+            VarIntCursor.write(out, value);
+        }
+        byte[] data = out.toByteArray();
+        VarIntCursor cursor = new VarIntCursor(data, 0);
+        for (int value : VALUES) {
+            assertEquals(value, cursor.next());
+        }
+        assertEquals(data.length, cursor.getPosition());
+    }
+
+    @Test
+    public void writesSevenBitsPerByte() {
+        assertEquals(1, length(0x7f));
+        assertEquals(2, length(0x80));
+        assertEquals(2, length(0x3fff));
+        assertEquals(3, length(0x4000));
+        assertEquals(5, length(Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeValue() {
+        VarIntCursor.write(new ByteArrayOutputStream(), -1);
+    }
+
+    private static int length(int value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VarIntCursor.write(out, value);
+        return out.size();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.dictionaryResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class WindowMatchCacheTest {
+
+    @Test
+    public void sharesCacheOfDictionary() {
+        DictionaryResource dictionary = new DictionaryResource_impl();
+        WindowMatchCache cache = WindowMatchCache.getShared(dictionary, 1000, 0);
+        assertSame(cache, WindowMatchCache.getShared(dictionary, 1000, 0));
+        assertNotSame(cache, WindowMatchCache.getShared(new DictionaryResource_impl(), 1000, 0));
+        assertEquals(1000, cache.getCache().getMaxEntries());
+    }
+
+    @Test
+    public void limitsInBytesOverrideLimitInEntries() {
+        DictionaryResource dictionary = new DictionaryResource_impl();
+        WindowMatchCache cache = WindowMatchCache.getShared(dictionary, 1000, 1 << 20);
+        assertSame(cache, WindowMatchCache.getShared(dictionary, 0, 1 << 20));
+        assertEquals(1 << 20, cache.getCache().getMaxWeight());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsOtherLimitInEntries() {
+        DictionaryResource dictionary = new DictionaryResource_impl();
+        WindowMatchCache.getShared(dictionary, 1000, 0);
+        WindowMatchCache.getShared(dictionary, 2000, 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsLimitInBytesForCacheLimitedInEntries() {
+        DictionaryResource dictionary = new DictionaryResource_impl();
+        WindowMatchCache.getShared(dictionary, 1000, 0);
+        WindowMatchCache.getShared(dictionary, 1000, 1 << 20);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.stemmer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CachingStemmerTest {
+
+  /**
+   * Stemmer appending its dictionary to each token, recording the tokens it is called with.
+   */
+  private static class RecordingStemmer implements Stemmer {
+    private final List<String> calls = new ArrayList<String>();
+
+    private String suffix = "";
+
+    public String stem(String token) {
+      calls.add(token);
+      return token + suffix;
+    }
+
+    public void initialize(String dictionary) {
+      suffix = dictionary;
+    }
+  }
+
+  @Test
+  public void stemsEachTokenOnce() {
+    RecordingStemmer stemmer = new RecordingStemmer();
+    CachingStemmer caching = new CachingStemmer(stemmer, 100);
+    for (int i = 0; i < 3; i++) {
+      assertEquals("lung", caching.stem("lung"));
+      assertEquals("heart", caching.stem("heart"));
+    }
+    assertEquals(2, stemmer.calls.size());
+    assertEquals(4, caching.getCache().getHitCount());
+  }
+
+  @Test
+  public void boundsCacheSize() {
+    RecordingStemmer stemmer = new RecordingStemmer();
+    CachingStemmer caching = new CachingStemmer(stemmer, 100);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("token" + i, caching.stem("token" + i));
+    }
+    assertTrue(caching.getCache().size() <= 100);
+    assertEquals(1000, stemmer.calls.size());
+  }
+
+  @Test
+  public void forgetsStemsWhenInitialized() throws Exception {
+    RecordingStemmer stemmer = new RecordingStemmer();
+    CachingStemmer caching = new CachingStemmer(stemmer, 100);
+    assertEquals("lung", caching.stem("lung"));
+    caching.initialize("s");
+    assertEquals("lungs", caching.stem("lung"));
+  }
+
+  @Test
+  public void doesNotShareCacheWithStemmersOfSameClass() throws Exception {
+    RecordingStemmer plural = new RecordingStemmer();
+    plural.initialize("s");
+    CachingStemmer first = new CachingStemmer(new RecordingStemmer(), 100);
+    CachingStemmer second = new CachingStemmer(plural, 100);
+    assertEquals("lung", first.stem("lung"));
+    assertEquals("lungs", second.stem("lung"));
+  }
+}
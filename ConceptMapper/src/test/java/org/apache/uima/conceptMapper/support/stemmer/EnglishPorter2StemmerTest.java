@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.stemmer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * The expected stems are those of the Snowball English stemmer.
+ */
+public class EnglishPorter2StemmerTest {
+
+  private final EnglishPorter2Stemmer stemmer = new EnglishPorter2Stemmer();
+
+  @Test
+  public void removesSuffixes() {
+    assertStems("consign", "consign", "consigned", "consignment");
+    assertStems("consist", "consistency", "consistently");
+    assertStems("consol", "consolation", "consolingly");
+    assertStems("consolid", "consolidated");
+    assertStems("conspicu", "conspicuously");
+    assertStems("generat", "generate", "generation");
+    assertStems("generous", "generously");
+    assertStems("knight", "knightly");
+    assertStems("kneel", "kneeling");
+    assertStems("caress", "caresses");
+    assertStems("cat", "cats");
+    assertStems("agre", "agreed");
+    assertStems("disabl", "disabled");
+  }
+
+  @Test
+  public void replacesFinalY() {
+    assertStems("consolatori", "consolatory");
+    assertStems("conspiraci", "conspiracy");
+    assertStems("knackeri", "knackeries");
+    assertStems("poni", "ponies");
+  }
+
+  @Test
+  public void undoublesFinalConsonant() {
+    assertStems("knit", "knitting");
+    assertStems("mat", "matting");
+    assertStems("mate", "mating");
+    assertStems("mill", "milling");
+    assertStems("mess", "messing");
+  }
+
+  @Test
+  public void keepsExceptions() {
+    assertStems("ski", "skis");
+    assertStems("sky", "sky", "skies");
+    assertStems("die", "dying");
+    assertStems("lie", "lying");
+    assertStems("idl", "idly");
+    assertStems("gentl", "gently");
+    assertStems("ugli", "ugly");
+    assertStems("earli", "early");
+    assertStems("onli", "only");
+    assertStems("news", "news");
+    assertStems("atlas", "atlas");
+    assertStems("cosmos", "cosmos");
+    assertStems("inning", "inning", "innings");
+    assertStems("proceed", "proceed");
+    assertStems("exceed", "exceed");
+    assertStems("succeed", "succeed");
+  }
+
+  @Test
+  public void usesRegionsOfExceptionalPrefixes() {
+    assertStems("communism", "communism");
+    assertStems("arsenal", "arsenal");
+  }
+
+  @Test
+  public void stemsBufferInPlace() {
+    // only the first length characters of the buffer are stemmed
+    char[] buffer = "consolations".toCharArray();
+    assertEquals("consol", new String(buffer, 0, stemmer.stem(buffer, 11)));
+    assertEquals("consol", stemmer.stem("a consolation", 2, 13));
+  }
+
+  private void assertStems(String stem, String... tokens) {
+    for (String token : tokens) {
+      assertEquals(token, stem, stemmer.stem(token));
+    }
+  }
+}
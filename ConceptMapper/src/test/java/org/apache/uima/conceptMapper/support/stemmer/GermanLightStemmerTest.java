@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.stemmer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class GermanLightStemmerTest {
+
+  private final GermanLightStemmer stemmer = new GermanLightStemmer();
+
+  @Test
+  public void removesInflectionalSuffixes() {
+    assertStems("kind", "kinder", "kindern");
+    assertStems("katz", "katzen");
+    assertStems("haus", "hauses");
+    assertStems("lieblich", "lieblichen");
+    assertStems("freundlich", "freundlich");
+  }
+
+  @Test
+  public void foldsUmlauts() {
+    assertStems("haus", "h\u00e4user");
+    assertStems("gart", "g\u00e4rten");
+    assertStems("buch", "b\u00fccher");
+    assertStems("schon", "sch\u00f6nste");
+  }
+
+  private void assertStems(String stem, String... tokens) {
+    for (String token : tokens) {
+      assertEquals(token, stem, stemmer.stem(token));
+    }
+  }
+}
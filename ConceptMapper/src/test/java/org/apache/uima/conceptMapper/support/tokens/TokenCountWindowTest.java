@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.conceptMapper.support.tokens;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TokenCountWindowTest {
+
+    private static final String[] TOKENS = { "heart", "attack", "lung", "left" };
+
+    @Test
+    public void containsSameTokensAsWindowScan() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            List<String> tokens = randomTokens(random, random.nextInt(30));
+            int size = 1 + random.nextInt(8);
+            TokenCountWindow window = new TokenCountWindow(tokens, size);
+            for (int position = 0; position < tokens.size(); position += 1 + random.nextInt(size + 1)) {
+                window.moveTo(position);
+                List<String> scanned = tokens.subList(position, Math.min(tokens.size(), position + size));
+                assertEquals(position, window.getStart());
+                assertEquals(position + scanned.size(), window.getEnd());
+                for (String token : TOKENS) {
+                    assertEquals(countOf(scanned, token), window.count(token));
+                }
+                for (int i = 0; i < 10; i++) {
+                    String[] contained = randomTokens(random, 1 + random.nextInt(4)).toArray(new String[0]);
+                    assertEquals(tokens + " " + position + " " + Arrays.toString(contained),
+                            containsAll(scanned, contained), window.containsAll(contained));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void requiresRepeatedTokensAsOftenAsContained() {
+        TokenCountWindow window = new TokenCountWindow(Arrays.asList("heart", "attack", "heart", "lung"), 3);
+        window.moveTo(0);
+        assertEquals(true, window.containsAll(new String[] { "heart", "heart" }));
+        window.moveTo(1);
+        assertEquals(false, window.containsAll(new String[] { "heart", "heart" }));
+        assertEquals(true, window.containsAll(new String[] { "heart", "lung" }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void doesNotMoveBack() {
+        TokenCountWindow window = new TokenCountWindow(Arrays.asList("heart", "attack"), 1);
+        window.moveTo(1);
+        window.moveTo(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyWindow() {
+        new TokenCountWindow(Arrays.asList("heart"), 0);
+    }
+
+    private static List<String> randomTokens(Random random, int count) {
+        List<String> tokens = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            tokens.add(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return tokens;
+    }
+
+    private static int countOf(List<String> tokens, String token) {
+        int count = 0;
+        for (String t : tokens) {
+            if (t.equals(token)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if each token occurs among <code>tokens</code> as often as
+     *         among <code>contained</code>, removing the tokens matched
+     */
+    private static boolean containsAll(List<String> tokens, String[] contained) {
+        List<String> remaining = new ArrayList<String>(tokens);
+        for (String token : contained) {
+            if (!remaining.remove(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}